@@ -0,0 +1,543 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import com.buildingsmart.tech.ifcowl.vo.AttributeVO;
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+import com.buildingsmart.tech.ifcowl.vo.TypeVO;
+
+/**
+ * The answers of the ontology that the conversion needs for every attribute
+ * value, computed once per schema: the property of every attribute of every
+ * entity, and for every range class whether it is an ENUMERATION, SELECT or
+ * LIST, its XSD type, its list content type and its enumeration individuals.
+ * {@link RDFWriter} looks these up instead of querying the ontology for each
+ * value.
+ * <p>
+ * The ontology can be a plain Model without a reasoner: the transitive
+ * closure of rdfs:subClassOf is computed here once, which gives the same
+ * answers as an OntModel with a transitive reasoner.
+ * <p>
+ * The table is filled when it is created, so it can be shared by conversions
+ * on several threads. Classes that are not the range of an attribute or a
+ * TYPE of the schema are added on first use.
+ */
+public class AttributeTable {
+
+    private static final String EXPRESS_NS = "https://w3id.org/express#";
+    private static final String LIST_NS = "https://w3id.org/list#";
+    private static final String[] LIST_CONTENT_TYPES = {"STRING", "REAL", "INTEGER", "BINARY", "BOOLEAN", "LOGICAL", "NUMBER"};
+    private static final String[][] XSD_TYPES = {{"STRING", "string"}, {"REAL", "double"}, {"INTEGER", "integer"},
+            {"BINARY", "hexBinary"}, {"BOOLEAN", "boolean"}, {"LOGICAL", "logical"}, {"NUMBER", "double"}};
+    private static final Resource[] CLASS_TYPES = {OWL.Class, RDFS.Class, OWL.Restriction};
+    private static final Resource[] PROPERTY_TYPES = {RDF.Property, OWL.ObjectProperty, OWL.DatatypeProperty,
+            OWL.AnnotationProperty, OWL.OntologyProperty, OWL.FunctionalProperty, OWL.InverseFunctionalProperty,
+            OWL.TransitiveProperty, OWL.SymmetricProperty};
+
+    private final Model ontology;
+    private final String ontNS;
+    // every class with all its superclasses, itself included
+    private final Map<Resource, Set<Resource>> superClasses;
+    private final Resource enumerationClass;
+    private final Resource selectClass;
+    private final Resource listClass;
+    private final Property hasContents;
+    private final Property hasNext;
+    private final Map<String, Attribute[]> attributes = new ConcurrentHashMap<>();
+    private final Map<String, Range> ranges = new ConcurrentHashMap<>();
+    // the ranges of getSchemaRange by name, to look them up without their URI
+    private final Map<String, Range> schemaRanges = new ConcurrentHashMap<>();
+
+    /**
+     * A table that was read from a {@link SchemaSnapshot}, without the
+     * ontology: it only knows the classes that were put in the snapshot.
+     */
+    AttributeTable(String ontNS, Map<String, Attribute[]> attributes, Map<String, Range> ranges) {
+        this.ontology = null;
+        this.ontNS = ontNS;
+        this.superClasses = Collections.emptyMap();
+        this.enumerationClass = ResourceFactory.createResource(EXPRESS_NS + "ENUMERATION");
+        this.selectClass = ResourceFactory.createResource(EXPRESS_NS + "SELECT");
+        this.listClass = ResourceFactory.createResource(LIST_NS + "OWLList");
+        this.hasContents = ResourceFactory.createProperty(LIST_NS + "hasContents");
+        this.hasNext = ResourceFactory.createProperty(LIST_NS + "hasNext");
+        this.attributes.putAll(attributes);
+        this.ranges.putAll(ranges);
+    }
+
+    /**
+     * @param ontology the ifcOWL ontology together with the ontologies it
+     *                 imports, with or without inferred triples
+     */
+    public AttributeTable(Model ontology, Map<String, EntityVO> ent, Map<String, TypeVO> typ, String ontNS) {
+        this.ontology = ontology;
+        this.ontNS = ontNS;
+        superClasses = computeSuperClasses(ontology);
+        enumerationClass = ontology.createResource(EXPRESS_NS + "ENUMERATION");
+        selectClass = ontology.createResource(EXPRESS_NS + "SELECT");
+        listClass = ontology.createResource(LIST_NS + "OWLList");
+        hasContents = getProperty(LIST_NS + "hasContents");
+        hasNext = getProperty(LIST_NS + "hasNext");
+        for (EntityVO evo : ent.values()) {
+            getAttributes(evo);
+            getRange(ontNS + evo.getName());
+        }
+        for (TypeVO tvo : typ.values())
+            getRange(ontNS + tvo.getName());
+    }
+
+    /**
+     * @return the attribute at an index of the derived attribute list of an
+     * entity, or null if the entity has no such attribute
+     */
+    public Attribute getAttribute(EntityVO evo, int index) {
+        if (evo == null)
+            return null;
+        Attribute[] list = getAttributes(evo);
+        return index < list.length ? list[index] : null;
+    }
+
+    /**
+     * @return the range information of a class or property range, or null
+     * for null
+     */
+    public Range getRange(Resource resource) {
+        if (resource == null)
+            return null;
+        if (resource.isAnon())
+            return ontology == null ? null : createRange(resource);
+        return getRange(resource.getURI());
+    }
+
+    /**
+     * @return the range information of a resource of the ontology, or null if
+     * the ontology does not contain it
+     */
+    public Range getRange(String uri) {
+        Range range = ranges.get(uri);
+        if (range == null && ontology != null) {
+            synchronized (ontology) {
+                range = ranges.get(uri);
+                if (range == null) {
+                    Resource resource = ontology.createResource(uri);
+                    if (!ontology.containsResource(resource))
+                        return null;
+                    range = createRange(resource);
+                    ranges.put(uri, range);
+                }
+            }
+        }
+        return range;
+    }
+
+    /**
+     * @return the range information of a class of the IFC schema, e.g. of
+     * IfcWall for the name IfcWall
+     */
+    public Range getSchemaRange(String name) {
+        Range range = schemaRanges.get(name);
+        if (range == null) {
+            range = getRange(ontNS + name);
+            if (range != null)
+                schemaRanges.put(name, range);
+        }
+        return range;
+    }
+
+    public Property getHasContents() {
+        return hasContents;
+    }
+
+    public Property getHasNext() {
+        return hasNext;
+    }
+
+    private Attribute[] getAttributes(EntityVO evo) {
+        Attribute[] list = attributes.get(evo.getName());
+        if (list == null && ontology == null)
+            return new Attribute[0];
+        if (list == null) {
+            synchronized (ontology) {
+                list = attributes.get(evo.getName());
+                if (list == null) {
+                    list = createAttributes(evo);
+                    attributes.put(evo.getName(), list);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the attributes of every entity that has been looked up, by
+     * entity name
+     */
+    Map<String, Attribute[]> getAttributeLists() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * @return the information of every range that has been looked up, by URI
+     */
+    Map<String, Range> getRanges() {
+        return Collections.unmodifiableMap(ranges);
+    }
+
+    private Attribute[] createAttributes(EntityVO evo) {
+        List<AttributeVO> derived = evo.getDerivedAttributeList();
+        if (derived == null)
+            return new Attribute[0];
+        Attribute[] list = new Attribute[derived.size()];
+        for (int i = 0; i < list.length; i++) {
+            Property property = getProperty(ontNS + derived.get(i).getLowerCaseName());
+            Range range = null;
+            if (property != null) {
+                Statement s = property.getProperty(RDFS.range);
+                range = s == null ? null : getRange(s.getResource());
+            }
+            list[i] = new Attribute(property, range);
+        }
+        return list;
+    }
+
+    private Range createRange(Resource resource) {
+        if (!hasType(resource, CLASS_TYPES))
+            return new Range(resource, false, false, false, false, null, null, null, Collections.emptyList());
+        String xsdType = getXSDTypeFromRange(resource);
+        Property valueProperty = null;
+        if (xsdType != null)
+            valueProperty = getProperty(EXPRESS_NS + "has" + Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1));
+        boolean enumeration = hasSuperClass(resource, enumerationClass);
+        boolean list = hasSuperClass(resource, listClass);
+        return new Range(resource, true, enumeration, hasSuperClass(resource, selectClass), list,
+                xsdType, valueProperty, getListContentType(resource, list),
+                enumeration ? listIndividuals(resource) : Collections.emptyList());
+    }
+
+    private Resource getListContentType(Resource range, boolean list) {
+        String resourceURI = range.getURI();
+        for (String type : LIST_CONTENT_TYPES) {
+            if ((EXPRESS_NS + type + "_List").equalsIgnoreCase(resourceURI)
+                    || hasSuperClass(range, ontology.createResource(EXPRESS_NS + type + "_List")))
+                return getOntologyResource(EXPRESS_NS + type);
+        }
+        if (list && range.getLocalName().length() > 5) {
+            String listvaluepropURI = ontNS + range.getLocalName().substring(0, range.getLocalName().length() - 5);
+            return getOntologyResource(listvaluepropURI);
+        }
+        return null;
+    }
+
+    /**
+     * Because the superclasses are closed transitively, checking the class
+     * itself also covers what checking each of its superclasses would find.
+     */
+    private String getXSDTypeFromRange(Resource range) {
+        for (String[] type : XSD_TYPES) {
+            if ((EXPRESS_NS + type[0]).equalsIgnoreCase(range.getURI())
+                    || hasSuperClass(range, ontology.createResource(EXPRESS_NS + type[0])))
+                return type[1];
+        }
+        return null;
+    }
+
+    private List<EnumIndividual> listIndividuals(Resource enumeration) {
+        List<EnumIndividual> individuals = new ArrayList<>();
+        StmtIterator it = ontology.listStatements(null, RDF.type, enumeration);
+        while (it.hasNext()) {
+            Resource individual = it.next().getSubject();
+            Statement label = individual.getProperty(RDFS.label);
+            individuals.add(new EnumIndividual(individual, label == null ? null : label.getString()));
+        }
+        individuals.sort((a, b) -> a.getNode().toString().compareTo(b.getNode().toString()));
+        return Collections.unmodifiableList(individuals);
+    }
+
+    private boolean hasSuperClass(Resource cl, Resource superClass) {
+        Set<Resource> supers = superClasses.get(cl);
+        return supers != null && supers.contains(superClass);
+    }
+
+    private boolean hasType(Resource resource, Resource[] types) {
+        for (Resource type : types) {
+            if (ontology.contains(resource, RDF.type, type))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the property, or null if the ontology does not declare it as a
+     * property
+     */
+    private Property getProperty(String uri) {
+        Property property = ontology.createProperty(uri);
+        return hasType(property, PROPERTY_TYPES) ? property : null;
+    }
+
+    private Resource getOntologyResource(String uri) {
+        Resource resource = ontology.createResource(uri);
+        return ontology.containsResource(resource) ? resource : null;
+    }
+
+    private static Map<Resource, Set<Resource>> computeSuperClasses(Model ontology) {
+        Map<Resource, List<Resource>> direct = new HashMap<>();
+        StmtIterator it = ontology.listStatements(null, RDFS.subClassOf, (RDFNode) null);
+        while (it.hasNext()) {
+            Statement s = it.next();
+            if (s.getObject().isResource()) {
+                direct.computeIfAbsent(s.getSubject(), k -> new ArrayList<>()).add(s.getResource());
+                direct.computeIfAbsent(s.getResource(), k -> new ArrayList<>());
+            }
+        }
+        Map<Resource, Set<Resource>> closure = new HashMap<>();
+        for (Resource cl : direct.keySet()) {
+            Set<Resource> supers = new HashSet<>();
+            List<Resource> todo = new ArrayList<>();
+            todo.add(cl);
+            while (!todo.isEmpty()) {
+                Resource next = todo.remove(todo.size() - 1);
+                if (supers.add(next))
+                    todo.addAll(direct.get(next));
+            }
+            closure.put(cl, supers);
+        }
+        return closure;
+    }
+
+    /**
+     * The property of an attribute and the information of its range.
+     */
+    public static final class Attribute {
+
+        private final Property property;
+        private final Range range;
+
+        Attribute(Property property, Range range) {
+            this.property = property;
+            this.range = range;
+        }
+
+        /**
+         * @return the property, or null if the ontology does not define it
+         */
+        public Property getProperty() {
+            return property;
+        }
+
+        public Range getRange() {
+            return range;
+        }
+    }
+
+    /**
+     * What the conversion needs to know about a class that is used as the
+     * range of a property.
+     */
+    public static final class Range {
+
+        private final Resource resource;
+        private final Node node;
+        private final boolean isClass;
+        private final boolean enumeration;
+        private final boolean select;
+        private final boolean list;
+        private final String xsdType;
+        private final Property valueProperty;
+        private final long literalKey;
+        private final Resource listContentType;
+        private final List<EnumIndividual> individuals;
+        // the individuals by upper case label, and by label as written in a
+        // file, e.g. .NOTDEFINED.
+        private final Map<String, Node> individualsByLabel;
+
+        Range(Resource resource, boolean isClass, boolean enumeration, boolean select, boolean list,
+              String xsdType, Property valueProperty, Resource listContentType, List<EnumIndividual> individuals) {
+            this.resource = resource;
+            this.node = resource.asNode();
+            this.isClass = isClass;
+            this.enumeration = enumeration;
+            this.select = select;
+            this.list = list;
+            this.xsdType = xsdType;
+            this.valueProperty = valueProperty;
+            this.literalKey = valueProperty == null ? 0 : literalKey(valueProperty, xsdType);
+            this.listContentType = listContentType;
+            this.individuals = individuals;
+            if (individuals.isEmpty()) {
+                this.individualsByLabel = Collections.emptyMap();
+            } else {
+                this.individualsByLabel = new HashMap<>();
+                for (EnumIndividual individual : individuals) {
+                    String label = individual.getLabel();
+                    // a literal loses its points before it is compared
+                    if (label == null || label.indexOf('.') >= 0)
+                        continue;
+                    String key = label.toUpperCase(Locale.ROOT);
+                    individualsByLabel.putIfAbsent(key, individual.getNode());
+                    individualsByLabel.putIfAbsent("." + key + ".", individual.getNode());
+                }
+            }
+        }
+
+        public Resource getResource() {
+            return resource;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+
+        public boolean isClass() {
+            return isClass;
+        }
+
+        /**
+         * @return true for a subclass of express:ENUMERATION
+         */
+        public boolean isEnumeration() {
+            return enumeration;
+        }
+
+        /**
+         * @return true for a subclass of express:SELECT
+         */
+        public boolean isSelect() {
+            return select;
+        }
+
+        /**
+         * @return true for a subclass of list:OWLList
+         */
+        public boolean isList() {
+            return list;
+        }
+
+        /**
+         * @return the XSD type of the values of the class, e.g. double, or
+         * null if it has none
+         */
+        public String getXSDType() {
+            return xsdType;
+        }
+
+        /**
+         * @return the property that links an instance of the class to its
+         * value, e.g. express:hasDouble, or null if it has no XSD type
+         */
+        public Property getValueProperty() {
+            return valueProperty;
+        }
+
+        /**
+         * @return a hash of the value property and the XSD type, the part of
+         * the key under which an instance of the class with a given value is
+         * remembered that does not depend on the value; classes with the same
+         * value property and XSD type share their instances
+         */
+        long getLiteralKey() {
+            return literalKey;
+        }
+
+        private static long literalKey(Property valueProperty, String xsdType) {
+            Fingerprint fingerprint = new Fingerprint();
+            fingerprint.add(valueProperty.getURI());
+            fingerprint.add(xsdType);
+            return fingerprint.high();
+        }
+
+        /**
+         * @return the class of the elements of a list class, or null if it is
+         * not known
+         */
+        public Resource getListContentType() {
+            return listContentType;
+        }
+
+        /**
+         * @return the individual of an ENUMERATION class whose label equals an
+         * ENUMERATION value of a file without its points, ignoring case, or
+         * null if there is none; the first one in IRI order if there are
+         * several
+         */
+        public Node getIndividual(String literal) {
+            Node node = individualsByLabel.get(literal);
+            if (node == null && !individualsByLabel.isEmpty()) {
+                StringBuilder sb = new StringBuilder(literal.length());
+                for (int i = 0; i < literal.length(); i++) {
+                    char ch = literal.charAt(i);
+                    if (ch != '.')
+                        sb.append(ch);
+                }
+                node = individualsByLabel.get(sb.toString().toUpperCase(Locale.ROOT));
+            }
+            return node;
+        }
+
+        /**
+         * @return the individuals of an ENUMERATION class, ordered by IRI
+         */
+        public List<EnumIndividual> getIndividuals() {
+            return individuals;
+        }
+    }
+
+    /**
+     * An individual of an ENUMERATION class and its rdfs:label, e.g.
+     * ifc:NOTDEFINED with the label NOTDEFINED.
+     */
+    public static final class EnumIndividual {
+
+        private final Node node;
+        private final String label;
+
+        EnumIndividual(Resource individual, String label) {
+            this.node = individual.asNode();
+            this.label = label;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+
+        /**
+         * @return the label, or null if the individual has none
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts many files on a pool of worker threads. A file is only started
+ * when the heap it is estimated to need, a multiple of its size, fits in the
+ * memory budget next to the files that are being converted, so small files
+ * are converted next to each other while a large model gets the room it
+ * needs. Files are started from large to small.
+ */
+public class BatchConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchConverter.class);
+
+    private int jobs = 1;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4 * 3;
+    private int heapFactor = 10;
+    private boolean removeDuplicates = false;
+    private int parallelism = 1;
+    private boolean streaming = false;
+    private long valueCacheSize = 0;
+    private OutputFormat outputFormat = OutputFormat.TURTLE;
+
+    // heap admitted to the files that are being converted
+    private long admitted = 0;
+
+    /**
+     * Converts files to files next to them, with the extension of the output
+     * format instead of .ifc or .ifczip. The output of an .ifc.gz file is
+     * compressed too.
+     *
+     * @return the result of every file, in the order of the input
+     */
+    public List<Result> convert(List<String> inputFiles, String baseURI) {
+        List<String> outputFiles = new ArrayList<>();
+        for (String inputFile : inputFiles) {
+            if (inputFile.endsWith(".ifc.gz"))
+                outputFiles.add(inputFile.substring(0, inputFile.length() - 7) + "." + outputFormat.getExtension() + ".gz");
+            else if (inputFile.endsWith(".ifczip"))
+                outputFiles.add(inputFile.substring(0, inputFile.length() - 7) + "." + outputFormat.getExtension());
+            else
+                outputFiles.add(inputFile.substring(0, inputFile.length() - 4) + "." + outputFormat.getExtension());
+        }
+        return convert(inputFiles, outputFiles, baseURI);
+    }
+
+    /**
+     * @return the result of every file, in the order of the input
+     */
+    public List<Result> convert(List<String> inputFiles, List<String> outputFiles, String baseURI) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < inputFiles.size(); i++)
+            order.add(i);
+        order.sort(Comparator.comparingLong((Integer i) -> new File(inputFiles.get(i)).length()).reversed());
+
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < inputFiles.size(); i++)
+            futures.add(null);
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            for (int i : order) {
+                String inputFile = inputFiles.get(i);
+                String outputFile = outputFiles.get(i);
+                long need = estimateHeap(inputFile);
+                admit(inputFile, need);
+                futures.set(i, executor.submit(() -> {
+                    try {
+                        return convert(inputFile, outputFile, baseURI, need);
+                    } finally {
+                        release(need);
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures)
+                results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while converting files", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not convert files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result convert(String inputFile, String outputFile, String baseURI, long need) {
+        LOG.info("Converting file: " + inputFile + " (estimated heap " + need / (1024 * 1024) + " MB)");
+        long start = System.currentTimeMillis();
+        try {
+            IfcSpfReader r = new IfcSpfReader();
+            r.setRemoveDuplicates(removeDuplicates);
+            r.setParallelism(parallelism);
+            r.setStreaming(streaming);
+            r.setValueCacheSize(valueCacheSize);
+            r.setOutputFormat(outputFormat);
+            r.setup(inputFile);
+            long[] triples = new long[1];
+            r.convert(inputFile, baseURI, writer -> {
+                r.writeOutput(writer, outputFile, baseURI);
+                triples[0] = writer.getTripleCount();
+            });
+            return new Result(inputFile, outputFile, true, System.currentTimeMillis() - start, triples[0], null);
+        } catch (RuntimeException | IOException | OutOfMemoryError e) {
+            LOG.error("*ERROR 25*: Could not convert " + inputFile + ": " + e);
+            return new Result(inputFile, outputFile, false, System.currentTimeMillis() - start, 0, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Waits until a file fits in the memory budget. A file that needs more
+     * than the whole budget waits until no other file is converted.
+     */
+    private synchronized void admit(String inputFile, long need) throws InterruptedException {
+        if (need > memoryBudget)
+            LOG.warn("*WARNING 45*: " + inputFile + " may need more heap than the budget of "
+                    + memoryBudget / (1024 * 1024) + " MB, converting it on its own.");
+        while (admitted > 0 && admitted + need > memoryBudget)
+            wait();
+        admitted += need;
+    }
+
+    private synchronized void release(long need) {
+        admitted -= need;
+        notifyAll();
+    }
+
+    private long estimateHeap(String inputFile) {
+        return uncompressedLength(new File(inputFile)) * heapFactor;
+    }
+
+    /**
+     * @return the length of a file, or the length it has when it is
+     * decompressed for a gzip file or an .ifczip archive
+     */
+    static long uncompressedLength(File file) {
+        long length = file.length();
+        if (file.getName().endsWith(".ifczip")) {
+            try (ZipFile zip = new ZipFile(file)) {
+                long size = 0;
+                for (ZipEntry entry : Collections.list(zip.entries()))
+                    size += Math.max(0, entry.getSize());
+                return Math.max(size, length);
+            } catch (IOException e) {
+                return length;
+            }
+        }
+        if (!file.getName().endsWith(".gz") || length < 18)
+            return length;
+        // the trailer holds the uncompressed length modulo 2^32
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(length - 4);
+            long size = Integer.toUnsignedLong(Integer.reverseBytes(in.readInt()));
+            // stored blocks make an incompressible file only slightly larger
+            while (size + (length >> 6) + 1024 < length)
+                size += 1L << 32;
+            return size;
+        } catch (IOException e) {
+            return length;
+        }
+    }
+
+    /**
+     * Writes the results as tab separated values: file, status, duration in
+     * milliseconds, number of triples and error message.
+     */
+    public static void writeSummary(List<Result> results, File summaryFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(summaryFile))) {
+            out.println("file\tstatus\tmillis\ttriples\tmessage");
+            for (Result result : results) {
+                out.println(result.getInputFile() + "\t" + (result.isSuccess() ? "OK" : "FAILED") + "\t"
+                        + result.getMillis() + "\t" + result.getTriples() + "\t"
+                        + (result.getMessage() == null ? "" : result.getMessage().replaceAll("\\s+", " ")));
+            }
+        }
+    }
+
+    /**
+     * Sets the number of files that are converted at the same time.
+     */
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Sets the heap in bytes that the files which are converted at the same
+     * time may need together. By default this is three quarters of the
+     * maximum heap.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the heap that a conversion is estimated to need per byte of its
+     * input file, 10 by default.
+     */
+    public void setHeapFactor(int heapFactor) {
+        this.heapFactor = heapFactor;
+    }
+
+    public void setRemoveDuplicates(boolean removeDuplicates) {
+        this.removeDuplicates = removeDuplicates;
+    }
+
+    /**
+     * Sets the number of threads used to parse each file, see
+     * {@link IfcSpfReader#setParallelism(int)}.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Caps the memory of the value node table of each file, see
+     * {@link IfcSpfReader#setValueCacheSize(long)}.
+     */
+    public void setValueCacheSize(long valueCacheSize) {
+        this.valueCacheSize = valueCacheSize;
+    }
+
+    /**
+     * Sets the format of the output files, Turtle by default.
+     */
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * The outcome of the conversion of one file.
+     */
+    public static final class Result {
+        private final String inputFile;
+        private final String outputFile;
+        private final boolean success;
+        private final long millis;
+        private final long triples;
+        private final String message;
+
+        Result(String inputFile, String outputFile, boolean success, long millis, long triples, String message) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.success = success;
+            this.millis = millis;
+            this.triples = triples;
+            this.message = message;
+        }
+
+        public String getInputFile() {
+            return inputFile;
+        }
+
+        public String getOutputFile() {
+            return outputFile;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getTriples() {
+            return triples;
+        }
+
+        /**
+         * @return the error of a failed conversion, or null
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
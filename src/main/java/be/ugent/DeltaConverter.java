@@ -0,0 +1,617 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+
+/**
+ * Computes the triples that change between the conversions of two revisions
+ * of a model, so that a store that holds the old revision can be patched
+ * instead of reloaded.
+ * <p>
+ * The IRIs of a conversion are numbered by line number, and by a counter for
+ * the nodes of lists and values, so nearly all of them change when an
+ * exporter renumbers the file. The entities of the new revision are
+ * therefore matched to those of the old one first and take over their
+ * numbers: entities below IfcRoot by GlobalId, the others (geometry, owner
+ * history, ...) by a fingerprint of their name and parameters once every
+ * entity they reference has been matched, or by their place in an entity
+ * that was matched. List nodes are matched by the path from the entity that
+ * owns them and value nodes by their value. Whatever is not matched gets a
+ * number above all numbers of the old revision.
+ * <p>
+ * The delta is the difference of both conversions after this renumbering, so
+ * applying it to the old conversion always gives the new conversion, with
+ * the numbers of the old one; a missed or wrong match only makes the delta
+ * larger. The numbers in the store are kept in a numbering file, which maps
+ * the numbers of a conversion to those in the store, so that the delta of the
+ * next revision applies to the store that was patched.
+ * <p>
+ * Both revisions are parsed and converted in memory.
+ */
+final class DeltaConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeltaConverter.class);
+    private static final String LIST_NS = "https://w3id.org/list#";
+    private static final String IFC_ROOT = "IFCROOT";
+    private static final int NUMBERING_MAGIC = 0x49464e31;
+
+    private final IfcSpfReader reader;
+    private final String baseURI;
+    private final Map<String, EntityVO> ent;
+    private final Map<String, Boolean> rooted = new HashMap<>();
+    private final Fingerprint fingerprint = new Fingerprint();
+
+    // the state of the matching of entities
+    private EntityStore<IfcInstance> oldMap;
+    private EntityStore<IfcInstance> newMap;
+    private int[] matches;
+    private BitSet used;
+    private final ArrayDeque<IfcInstance> matched = new ArrayDeque<>();
+
+    DeltaConverter(IfcSpfReader reader, String baseURI) {
+        this.reader = reader;
+        this.baseURI = baseURI;
+        this.ent = reader.getEntityMap();
+    }
+
+    /**
+     * Writes the triples that are only in the old conversion to
+     * <code>removed</code>, and then the triples that are only in the new
+     * conversion to <code>added</code>.
+     *
+     * @param oldNumbering the numbering of the old revision in the store, or
+     *                     null if the store holds the old conversion as it is
+     * @return the numbering of the new revision in the patched store, or null
+     * if a revision could not be converted
+     */
+    int[] convert(String oldIfcFile, int[] oldNumbering, String ifcFile, StreamRDF removed, StreamRDF added) throws IOException {
+        IfcSpfParser oldParser = parse(oldIfcFile);
+        IfcSpfParser newParser = parse(ifcFile);
+        if (oldParser == null || newParser == null)
+            return null;
+        int oldEntityMax = oldParser.getIdCounter();
+        int newEntityMax = newParser.getIdCounter();
+        int[] matches = matchEntities(oldParser.getLinemap(), newParser.getLinemap(), newEntityMax);
+
+        Graph oldGraph = convert(oldIfcFile, oldParser);
+        BitSet oldUsed = numbers(oldGraph);
+        if (oldNumbering == null) {
+            oldNumbering = new int[oldUsed.length()];
+            for (int n = 0; n < oldNumbering.length; n++)
+                oldNumbering[n] = n;
+        } else if (oldNumbering.length < oldUsed.length()) {
+            LOG.error("*ERROR 28*: The numbering does not belong to " + oldIfcFile + ", it has "
+                    + oldNumbering.length + " numbers instead of at least " + oldUsed.length() + ".");
+            return null;
+        }
+        int next = 0;
+        for (int n = oldUsed.nextSetBit(0); n >= 0; n = oldUsed.nextSetBit(n + 1))
+            next = Math.max(next, oldNumbering[n] + 1);
+        Map<Key, Integer> oldKeys = new HashMap<>();
+        int[] numbering = oldNumbering;
+        nodeKeys(oldGraph, oldEntityMax, n -> numbering[n]).forEach((node, key) ->
+                oldKeys.merge(key, numbering[number(node)], (a, b) -> -1));
+        Set<Triple> oldTriples = renumber(oldGraph, oldNumbering);
+        oldGraph.clear();
+
+        Graph newGraph = convert(ifcFile, newParser);
+        BitSet newUsed = numbers(newGraph);
+        int[] newNumbering = new int[newUsed.length()];
+        for (int n = newUsed.nextSetBit(0); n >= 0; n = newUsed.nextSetBit(n + 1))
+            newNumbering[n] = n <= newEntityMax && matches[n] > 0 && oldUsed.get(matches[n]) ? numbering[matches[n]] : -1;
+        Map<Node, Key> newKeys = nodeKeys(newGraph, newEntityMax,
+                n -> newNumbering[n] >= 0 ? newNumbering[n] : -1 - n);
+        Map<Key, Integer> keyCounts = new HashMap<>();
+        for (Key key : newKeys.values())
+            keyCounts.merge(key, 1, Integer::sum);
+        int nodesMatched = 0;
+        for (Map.Entry<Node, Key> entry : newKeys.entrySet()) {
+            Integer old = oldKeys.get(entry.getValue());
+            if (old != null && old >= 0 && keyCounts.get(entry.getValue()) == 1) {
+                newNumbering[number(entry.getKey())] = old;
+                nodesMatched++;
+            }
+        }
+        for (int n = newUsed.nextSetBit(0); n >= 0; n = newUsed.nextSetBit(n + 1)) {
+            if (newNumbering[n] < 0)
+                newNumbering[n] = next++;
+        }
+        LOG.info("Matched " + nodesMatched + " of " + newKeys.size() + " list and value nodes");
+
+        List<Triple> addedTriples = new ArrayList<>();
+        for (Triple triple : renumber(newGraph, newNumbering)) {
+            if (!oldTriples.remove(triple))
+                addedTriples.add(triple);
+        }
+        newGraph.clear();
+        removed.start();
+        oldTriples.forEach(removed::triple);
+        removed.finish();
+        added.start();
+        addedTriples.forEach(added::triple);
+        added.finish();
+        LOG.info("Delta: " + oldTriples.size() + " triples removed, " + addedTriples.size() + " added");
+        return newNumbering;
+    }
+
+    private IfcSpfParser parse(String ifcFile) throws IOException {
+        IfcSpfParser parser = new IfcSpfParser(SpfSource.of(new File(ifcFile)).open());
+        parser.setParallelism(reader.getParallelism());
+        parser.readModel();
+        if (reader.isRemoveDuplicates())
+            parser.resolveDuplicates();
+        return parser.mapEntries() ? parser : null;
+    }
+
+    private Graph convert(String ifcFile, IfcSpfParser parser) {
+        Graph graph = GraphFactory.createGraphMem();
+        reader.convert(ifcFile, baseURI, writer -> {
+            writer.setParser(parser);
+            try {
+                writer.parseModelToGraph(graph);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return graph;
+    }
+
+    // --------------------------------------
+    // MATCHING ENTITIES
+    // --------------------------------------
+
+    /**
+     * Matches the entities in three ways, until no more are found: by
+     * GlobalId; bottom-up by content, once all entities that an entity
+     * references are matched, which matches the unchanged geometry from the
+     * points up; and top-down by position, where the entities referenced by a
+     * matched pair of entities at the same place are matched when they have
+     * the same name. The last way matches entities of which the content
+     * changed, and duplicates, which have no content of their own to tell
+     * them apart.
+     *
+     * @return the old line number of every new line number, or 0 for an
+     * entity that has no match
+     */
+    private int[] matchEntities(EntityStore<IfcInstance> oldMap, EntityStore<IfcInstance> newMap, int newEntityMax) {
+        this.oldMap = oldMap;
+        this.newMap = newMap;
+        matches = new int[newEntityMax + 1];
+        used = new BitSet();
+
+        // the line numbers of a GlobalId or content that occurs more than
+        // once are in a list of duplicates
+        Map<StepString, Long> oldIds = new HashMap<>();
+        Map<StepString, List<Long>> oldDuplicateIds = new HashMap<>();
+        Map<Key, Long> oldContent = new HashMap<>();
+        Map<Key, List<Long>> oldDuplicateContent = new HashMap<>();
+        LongUnaryOperator oldResolve = l -> oldMap.get(l).getLineNum();
+        for (IfcInstance instance : oldMap) {
+            StepString globalId = getGlobalId(instance);
+            if (globalId != null)
+                putLine(oldIds, oldDuplicateIds, globalId, instance.getLineNum());
+            else
+                putLine(oldContent, oldDuplicateContent, contentKey(instance, oldResolve), instance.getLineNum());
+        }
+
+        Map<StepString, Long> newIds = new HashMap<>();
+        Map<StepString, List<Long>> newDuplicateIds = new HashMap<>();
+        List<IfcInstance> pending = new ArrayList<>();
+        for (IfcInstance instance : newMap) {
+            StepString globalId = getGlobalId(instance);
+            if (globalId != null)
+                putLine(newIds, newDuplicateIds, globalId, instance.getLineNum());
+            else
+                pending.add(instance);
+        }
+        int byId = 0;
+        for (Map.Entry<StepString, Long> entry : newIds.entrySet()) {
+            Long old = oldIds.get(entry.getKey());
+            if (old != null) {
+                match(newMap.get(entry.getValue()), old);
+                byId++;
+            }
+        }
+        // a GlobalId that occurs as often in both revisions is matched in the
+        // order of the lines
+        for (Map.Entry<StepString, List<Long>> entry : newDuplicateIds.entrySet()) {
+            List<Long> old = oldDuplicateIds.get(entry.getKey());
+            if (old != null && old.size() == entry.getValue().size()) {
+                for (int i = 0; i < old.size(); i++)
+                    match(newMap.get(entry.getValue().get(i)), old.get(i));
+                byId += old.size();
+            }
+        }
+
+        LongUnaryOperator newResolve = l -> matches[(int) newMap.get(l).getLineNum()];
+        int byContent = 0;
+        int byPosition = 0;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            List<IfcInstance> waiting = new ArrayList<>();
+            Map<Key, List<IfcInstance>> resolved = new HashMap<>();
+            for (IfcInstance instance : pending) {
+                if (matches[(int) instance.getLineNum()] != 0)
+                    continue;
+                if (!isResolved(instance.getValues(), newResolve)) {
+                    waiting.add(instance);
+                    continue;
+                }
+                resolved.computeIfAbsent(contentKey(instance, newResolve), k -> new ArrayList<>(1)).add(instance);
+            }
+            pending = waiting;
+            // content that occurs as often in both revisions is matched in
+            // the order of the lines
+            for (Map.Entry<Key, List<IfcInstance>> entry : resolved.entrySet()) {
+                List<Long> old = unusedLines(oldContent, oldDuplicateContent, entry.getKey());
+                if (old.size() == entry.getValue().size()) {
+                    for (int i = 0; i < old.size(); i++)
+                        match(entry.getValue().get(i), old.get(i));
+                    byContent += old.size();
+                    progress |= !old.isEmpty();
+                }
+            }
+            while (!matched.isEmpty()) {
+                IfcInstance instance = matched.remove();
+                int found = matchReferences(instance.getValues(), oldMap.get(matches[(int) instance.getLineNum()]).getValues());
+                byPosition += found;
+                progress |= found > 0;
+            }
+        }
+        LOG.info("Matched " + byId + " entities by GlobalId, " + byContent + " by content and " + byPosition
+                + " by position, of " + newMap.size());
+        return matches;
+    }
+
+    /**
+     * Adds the line number of a GlobalId or content to the unique ones, or to
+     * the duplicates if it occurs more than once.
+     */
+    private static <K> void putLine(Map<K, Long> unique, Map<K, List<Long>> duplicates, K key, long lineNum) {
+        List<Long> lines = duplicates.get(key);
+        if (lines != null) {
+            lines.add(lineNum);
+            return;
+        }
+        Long first = unique.put(key, lineNum);
+        if (first != null) {
+            unique.remove(key);
+            lines = new ArrayList<>();
+            lines.add(first);
+            lines.add(lineNum);
+            duplicates.put(key, lines);
+        }
+    }
+
+    /**
+     * @return the old line numbers with the given content that are not
+     * matched yet
+     */
+    private List<Long> unusedLines(Map<Key, Long> unique, Map<Key, List<Long>> duplicates, Key key) {
+        List<Long> lines = new ArrayList<>();
+        Long line = unique.get(key);
+        if (line != null && !used.get(line.intValue()))
+            lines.add(line);
+        for (long duplicate : duplicates.getOrDefault(key, Collections.emptyList())) {
+            if (!used.get((int) duplicate))
+                lines.add(duplicate);
+        }
+        return lines;
+    }
+
+    private void match(IfcInstance instance, long oldLineNum) {
+        matches[(int) instance.getLineNum()] = (int) oldLineNum;
+        used.set((int) oldLineNum);
+        matched.add(instance);
+    }
+
+    /**
+     * Matches the entities that are referenced at the same place by a pair
+     * of matched entities.
+     *
+     * @return the number of entities matched
+     */
+    private int matchReferences(ValueList values, ValueList oldValues) {
+        int found = 0;
+        for (int i = 0; i < Math.min(values.size(), oldValues.size()); i++) {
+            byte kind = values.getKind(i);
+            if (kind != oldValues.getKind(i))
+                continue;
+            if (kind == ValueList.LIST) {
+                found += matchReferences(values.getList(i), oldValues.getList(i));
+            } else if (kind == ValueList.REFERENCE) {
+                IfcInstance instance = newMap.get(values.getReference(i));
+                IfcInstance old = oldMap.get(oldValues.getReference(i));
+                if (matches[(int) instance.getLineNum()] == 0 && !used.get((int) old.getLineNum())
+                        && instance.getName().equals(old.getName()) && getGlobalId(instance) == null) {
+                    match(instance, old.getLineNum());
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the GlobalId of an entity below IfcRoot, or null
+     */
+    private StepString getGlobalId(IfcInstance instance) {
+        if (!isRooted(instance.getName()) || instance.getValues().size() == 0
+                || instance.getValues().getKind(0) != ValueList.STRING)
+            return null;
+        return instance.getValues().getStepString(0);
+    }
+
+    private boolean isRooted(String name) {
+        Boolean result = rooted.get(name);
+        if (result == null) {
+            result = false;
+            EntityVO evo = ent.get(RDFWriter.formatClassName(name));
+            while (evo != null && !result) {
+                result = IFC_ROOT.equalsIgnoreCase(evo.getName());
+                evo = evo.getSuperclass() == null ? null : ent.get(RDFWriter.formatClassName(evo.getSuperclass()));
+            }
+            rooted.put(name, result);
+        }
+        return result;
+    }
+
+    private static boolean isResolved(ValueList values, LongUnaryOperator resolve) {
+        for (int i = 0; i < values.size(); i++) {
+            byte kind = values.getKind(i);
+            if (kind == ValueList.REFERENCE && resolve.applyAsLong(values.getReference(i)) == 0)
+                return false;
+            if (kind == ValueList.LIST && !isResolved(values.getList(i), resolve))
+                return false;
+        }
+        return true;
+    }
+
+    private Key contentKey(IfcInstance instance, LongUnaryOperator resolve) {
+        fingerprint.reset();
+        fingerprint.add(instance.getName());
+        instance.getValues().addTo(fingerprint, resolve);
+        return new Key(fingerprint);
+    }
+
+    // --------------------------------------
+    // MATCHING LIST AND VALUE NODES
+    // --------------------------------------
+
+    /**
+     * Computes a key for every generated node of a conversion. A value node
+     * is keyed by its class and triples. A list node has a single parent, the
+     * entity or list node that points to it, and is keyed by the key of its
+     * parent and the predicate; entities are keyed by their number in the
+     * store.
+     *
+     * @param entityNumber the number in the store of an entity, negative for
+     *                     an entity that has none yet
+     */
+    private Map<Node, Key> nodeKeys(Graph graph, int entityMax, IntUnaryOperator entityNumber) {
+        Set<Node> listNodes = new HashSet<>();
+        Set<Node> generated = new HashSet<>();
+        Map<Node, Triple> parents = new HashMap<>();
+        ExtendedIterator<Triple> it = graph.find();
+        while (it.hasNext()) {
+            Triple triple = it.next();
+            Node subject = triple.getSubject();
+            if (number(subject) > entityMax) {
+                generated.add(subject);
+                if (triple.getPredicate().getURI().startsWith(LIST_NS))
+                    listNodes.add(subject);
+            }
+            Node object = triple.getObject();
+            if (number(object) > entityMax && !triple.getPredicate().equals(RDF.type.asNode())) {
+                // a null value marks a node with more than one parent
+                parents.put(object, parents.containsKey(object) ? null : triple);
+            }
+        }
+
+        Map<Node, Key> keys = new HashMap<>();
+        for (Node node : generated) {
+            if (listNodes.contains(node))
+                continue;
+            List<String> content = new ArrayList<>();
+            graph.find(node, Node.ANY, Node.ANY)
+                    .forEachRemaining(t -> content.add(t.getPredicate().getURI() + " " + t.getObject()));
+            content.sort(null);
+            fingerprint.reset();
+            fingerprint.add(1);
+            fingerprint.add(className(node));
+            content.forEach(fingerprint::add);
+            keys.put(node, new Key(fingerprint));
+        }
+
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        for (Node node : listNodes) {
+            Triple parent = parents.get(node);
+            if (parent == null || number(parent.getSubject()) > entityMax)
+                continue;
+            fingerprint.reset();
+            fingerprint.add(2);
+            fingerprint.add(className(parent.getSubject()));
+            fingerprint.add(entityNumber.applyAsInt(number(parent.getSubject())));
+            keys.put(node, listKey(parent, node));
+            queue.add(node);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            graph.find(node, Node.ANY, Node.ANY).forEachRemaining(t -> {
+                Node child = t.getObject();
+                if (listNodes.contains(child) && t.equals(parents.get(child)) && !keys.containsKey(child)) {
+                    fingerprint.reset();
+                    fingerprint.add(keys.get(node).high);
+                    fingerprint.add(keys.get(node).low);
+                    keys.put(child, listKey(t, child));
+                    queue.add(child);
+                }
+            });
+        }
+        return keys;
+    }
+
+    /**
+     * Completes the key of a list node, after the key of its parent.
+     */
+    private Key listKey(Triple parent, Node node) {
+        fingerprint.add(parent.getPredicate().getURI());
+        fingerprint.add(className(node));
+        return new Key(fingerprint);
+    }
+
+    // --------------------------------------
+    // NUMBERS
+    // --------------------------------------
+
+    /**
+     * @return the number at the end of a resource of the conversion, e.g. 12
+     * for inst:IfcWall_12, or -1
+     */
+    private int number(Node node) {
+        if (!node.isURI())
+            return -1;
+        String uri = node.getURI();
+        int i = uri.lastIndexOf('_');
+        if (i < baseURI.length() || i == uri.length() - 1 || uri.length() - i > 10 || !uri.startsWith(baseURI))
+            return -1;
+        int number = 0;
+        for (int j = i + 1; j < uri.length(); j++) {
+            char ch = uri.charAt(j);
+            if (ch < '0' || ch > '9')
+                return -1;
+            number = number * 10 + (ch - '0');
+        }
+        return number;
+    }
+
+    private String className(Node node) {
+        String uri = node.getURI();
+        return uri.substring(baseURI.length(), uri.lastIndexOf('_'));
+    }
+
+    private BitSet numbers(Graph graph) {
+        BitSet used = new BitSet();
+        graph.find().forEachRemaining(t -> {
+            int subject = number(t.getSubject());
+            if (subject >= 0)
+                used.set(subject);
+            int object = number(t.getObject());
+            if (object >= 0)
+                used.set(object);
+        });
+        return used;
+    }
+
+    private Set<Triple> renumber(Graph graph, int[] numbering) {
+        Set<Triple> triples = new HashSet<>();
+        Map<Node, Node> nodes = new HashMap<>();
+        graph.find().forEachRemaining(t -> triples.add(Triple.create(renumber(t.getSubject(), numbering, nodes),
+                t.getPredicate(), renumber(t.getObject(), numbering, nodes))));
+        return triples;
+    }
+
+    private Node renumber(Node node, int[] numbering, Map<Node, Node> nodes) {
+        int number = number(node);
+        if (number < 0 || numbering[number] == number)
+            return node;
+        return nodes.computeIfAbsent(node, n -> {
+            String uri = n.getURI();
+            return NodeFactory.createURI(uri.substring(0, uri.lastIndexOf('_') + 1) + numbering[number]);
+        });
+    }
+
+    /**
+     * Reads a numbering file written by {@link #writeNumbering}.
+     */
+    static int[] readNumbering(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file)), 1 << 16))) {
+            if (in.readInt() != NUMBERING_MAGIC)
+                throw new IOException(file + " is not a numbering file");
+            int[] numbering = new int[in.readInt()];
+            for (int n = 0; n < numbering.length; n++)
+                numbering[n] = in.readInt();
+            return numbering;
+        }
+    }
+
+    static void writeNumbering(int[] numbering, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file)), 1 << 16))) {
+            out.writeInt(NUMBERING_MAGIC);
+            out.writeInt(numbering.length);
+            for (int number : numbering)
+                out.writeInt(number);
+        }
+    }
+
+    /**
+     * A 128-bit fingerprint as a map key.
+     */
+    private static final class Key {
+
+        final long high;
+        final long low;
+
+        Key(Fingerprint fingerprint) {
+            this.high = fingerprint.high();
+            this.low = fingerprint.low();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).high == high && ((Key) o).low == low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high);
+        }
+    }
+}
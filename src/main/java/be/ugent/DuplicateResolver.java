@@ -0,0 +1,251 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Removes duplicate entity instances from a linemap. Two instances are
+ * duplicates when they have the same entity name and the same parameters
+ * after every reference is replaced by the line it resolves to, so two
+ * IfcPolyLoops over duplicated points are duplicates once the points are.
+ * <p>
+ * Instances are looked up by a 128-bit fingerprint of their resolved content
+ * in an open addressing table of primitive arrays; an instance is only
+ * redirected after its content has been compared with the instance it was
+ * matched with. Removing duplicates can make other instances equal, so the
+ * search is repeated until a round finds nothing. After the first round only
+ * the instances that reference a line that was redirected in the previous
+ * round are fingerprinted again. Of a group of duplicates, the instance with
+ * the lowest line number is kept.
+ * <p>
+ * The fingerprints of a batch of instances are computed in parallel when
+ * more than one thread is used; the lookups and redirections are done on the
+ * calling thread, so the result does not depend on the number of threads.
+ */
+final class DuplicateResolver {
+
+    private static final int BATCH_SIZE = 1 << 14;
+    private static final int MIN_PARALLEL_BATCH = 1 << 10;
+
+    private final EntityStore<IfcInstance> linemap;
+    private final int parallelism;
+    private final LongUnaryOperator resolver = this::resolve;
+    private final ThreadLocal<Fingerprint> fingerprints = ThreadLocal.withInitial(Fingerprint::new);
+
+    // fingerprint to line number + 1, 0 marks an empty slot
+    private long[] highs;
+    private long[] lows;
+    private long[] lines;
+    private int entries = 0;
+
+    // lines redirected in the previous round, null in the first round
+    private BitSet changed;
+    private BitSet redirected;
+    private int rounds = 0;
+
+    DuplicateResolver(EntityStore<IfcInstance> linemap, int parallelism) {
+        this.linemap = linemap;
+        this.parallelism = parallelism;
+        int capacity = Integer.highestOneBit(Math.max(16, linemap.size()) / 3 * 4) << 1;
+        highs = new long[capacity];
+        lows = new long[capacity];
+        lines = new long[capacity];
+    }
+
+    /**
+     * Redirects the duplicates in the linemap to the instances that are kept.
+     */
+    void resolve() throws IOException {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            do {
+                redirected = new BitSet();
+                IfcInstance[] batch = new IfcInstance[BATCH_SIZE];
+                int n = 0;
+                for (IfcInstance instance : linemap) {
+                    if (changed != null && !referencesChanged(instance.getValues()))
+                        continue;
+                    batch[n++] = instance;
+                    if (n == batch.length) {
+                        process(batch, n, pool);
+                        n = 0;
+                    }
+                }
+                process(batch, n, pool);
+                rounds++;
+                changed = redirected;
+            } while (!changed.isEmpty());
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+        // a kept instance may have been redirected itself in a later round
+        linemap.forEachRedirect(lineNum -> {
+            IfcInstance target = linemap.get(lineNum);
+            if (!linemap.contains(target.getLineNum()))
+                linemap.redirect(lineNum, resolveInstance(target.getLineNum()).getLineNum());
+        });
+    }
+
+    /**
+     * @return the number of rounds until no more duplicates were found
+     */
+    int getRounds() {
+        return rounds;
+    }
+
+    private void process(IfcInstance[] batch, int n, ForkJoinPool pool) throws IOException {
+        long[] high = new long[n];
+        long[] low = new long[n];
+        if (pool != null && n >= MIN_PARALLEL_BATCH) {
+            try {
+                pool.submit(() -> IntStream.range(0, n).parallel().forEach(i -> fingerprint(batch[i], high, low, i))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Duplicate removal interrupted");
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        } else {
+            for (int i = 0; i < n; i++)
+                fingerprint(batch[i], high, low, i);
+        }
+
+        for (int i = 0; i < n; i++) {
+            IfcInstance instance = batch[i];
+            if (!linemap.contains(instance.getLineNum()))
+                continue;
+            int slot = find(high[i], low[i]);
+            if (lines[slot] == 0) {
+                insert(slot, high[i], low[i], instance.getLineNum());
+                continue;
+            }
+            IfcInstance kept = resolveInstance(lines[slot] - 1);
+            if (kept == null || kept == instance || !kept.getName().equals(instance.getName())
+                    || !kept.getValues().equalsResolved(instance.getValues(), resolver))
+                continue;
+            if (kept.getLineNum() < instance.getLineNum()) {
+                redirect(instance.getLineNum(), kept.getLineNum());
+            } else {
+                redirect(kept.getLineNum(), instance.getLineNum());
+                lines[slot] = instance.getLineNum() + 1;
+            }
+        }
+    }
+
+    private void fingerprint(IfcInstance instance, long[] high, long[] low, int i) {
+        Fingerprint fingerprint = fingerprints.get();
+        fingerprint.reset();
+        fingerprint.add(instance.getName());
+        instance.getValues().addTo(fingerprint, resolver);
+        high[i] = fingerprint.high();
+        low[i] = fingerprint.low();
+    }
+
+    private void redirect(long lineNum, long targetLineNum) {
+        linemap.redirect(lineNum, targetLineNum);
+        if (lineNum <= Integer.MAX_VALUE)
+            redirected.set((int) lineNum);
+        else
+            redirected.set(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the instance that is kept for a line number, following lines
+     *         that were redirected after others were redirected to them
+     */
+    private IfcInstance resolveInstance(long lineNum) {
+        IfcInstance instance = linemap.get(lineNum);
+        while (instance != null && !linemap.contains(instance.getLineNum()))
+            instance = linemap.get(instance.getLineNum());
+        return instance;
+    }
+
+    private long resolve(long lineNum) {
+        IfcInstance instance = resolveInstance(lineNum);
+        return instance == null ? lineNum : instance.getLineNum();
+    }
+
+    /**
+     * @return true if a reference of the list, or a line it is redirected
+     *         through, was redirected in the previous round
+     */
+    private boolean referencesChanged(ValueList values) {
+        for (int i = 0; i < values.size(); i++) {
+            byte kind = values.getKind(i);
+            if (kind == ValueList.REFERENCE) {
+                long lineNum = values.getReference(i);
+                while (true) {
+                    if (isChanged(lineNum))
+                        return true;
+                    if (linemap.contains(lineNum))
+                        break;
+                    IfcInstance target = linemap.get(lineNum);
+                    if (target == null)
+                        break;
+                    lineNum = target.getLineNum();
+                }
+            } else if (kind == ValueList.LIST && referencesChanged(values.getList(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isChanged(long lineNum) {
+        if (lineNum < 0)
+            return false;
+        return changed.get((int) Math.min(lineNum, Integer.MAX_VALUE));
+    }
+
+    private int find(long high, long low) {
+        int mask = lines.length - 1;
+        int slot = (int) (high ^ (high >>> 32)) & mask;
+        while (lines[slot] != 0 && (highs[slot] != high || lows[slot] != low))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void insert(int slot, long high, long low, long lineNum) {
+        highs[slot] = high;
+        lows[slot] = low;
+        lines[slot] = lineNum + 1;
+        if (++entries > lines.length / 4 * 3)
+            grow();
+    }
+
+    private void grow() {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        long[] oldLines = lines;
+        highs = new long[oldLines.length * 2];
+        lows = new long[oldLines.length * 2];
+        lines = new long[oldLines.length * 2];
+        for (int i = 0; i < oldLines.length; i++) {
+            if (oldLines[i] != 0) {
+                int slot = find(oldHighs[i], oldLows[i]);
+                highs[slot] = oldHighs[i];
+                lows[slot] = oldLows[i];
+                lines[slot] = oldLines[i];
+            }
+        }
+    }
+}
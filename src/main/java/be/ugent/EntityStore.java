@@ -0,0 +1,278 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Entity instances of an SPF file indexed by their line number
+ * (<code>#12</code>). Line numbers are dense in practice, so the entities are
+ * kept in pages of plain arrays that are allocated on first use, which costs
+ * one reference per line number instead of a boxed key and a map entry per
+ * entity. Line numbers that are too large for the page directory go to an
+ * overflow map.
+ * <p>
+ * A line number can also be redirected to another one, which is how removed
+ * duplicates are recorded: {@link #get(long)} then returns the entity of the
+ * target line, while iteration and {@link #size()} skip the redirected line.
+ * <p>
+ * Iteration visits the entities in ascending line number order.
+ *
+ * @param <T> the type of the stored entities
+ */
+public class EntityStore<T> implements Iterable<T> {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 1 << 24;
+
+    private Object[][] pages = new Object[16][];
+    // one bit per slot, set when the slot holds a redirected line
+    private long[][] redirectBits = new long[16][];
+    private Map<Long, T> overflow = new HashMap<>();
+    private Map<Long, Long> overflowRedirects = new HashMap<>();
+    private int size = 0;
+    private int redirectCount = 0;
+
+    /**
+     * Stores an entity, replacing the entity or redirection already stored for
+     * that line number.
+     */
+    public void put(long lineNum, T entity) {
+        if (entity == null)
+            throw new IllegalArgumentException("Cannot store a null entity for line #" + lineNum);
+        if (!isPaged(lineNum)) {
+            if (overflowRedirects.remove(lineNum) != null)
+                redirectCount--;
+            overflow.put(lineNum, entity);
+            return;
+        }
+        int page = page(lineNum);
+        int slot = slot(lineNum);
+        Object[] entities = ensurePage(page);
+        if (isRedirect(page, slot)) {
+            clearRedirect(page, slot);
+            size++;
+        } else if (entities[slot] == null) {
+            size++;
+        }
+        entities[slot] = entity;
+    }
+
+    /**
+     * @return the entity stored for that line number, the entity of the target
+     * line if it was redirected, or null
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long lineNum) {
+        if (!isPaged(lineNum)) {
+            Long target = overflowRedirects.get(lineNum);
+            return target != null ? get(target) : overflow.get(lineNum);
+        }
+        int page = page(lineNum);
+        if (page >= pages.length || pages[page] == null)
+            return null;
+        return (T) pages[page][slot(lineNum)];
+    }
+
+    /**
+     * @return true if an entity is stored for that line number, not counting
+     * redirected lines
+     */
+    public boolean contains(long lineNum) {
+        if (!isPaged(lineNum))
+            return overflow.containsKey(lineNum);
+        int page = page(lineNum);
+        return page < pages.length && pages[page] != null && pages[page][slot(lineNum)] != null
+                && !isRedirect(page, slot(lineNum));
+    }
+
+    /**
+     * Removes the entity of a line number and makes the line number resolve to
+     * the entity of another line from then on. The target line must hold an
+     * entity and must not itself be redirected.
+     */
+    public void redirect(long lineNum, long targetLineNum) {
+        T target = get(targetLineNum);
+        if (target == null || !contains(targetLineNum))
+            throw new IllegalArgumentException("Cannot redirect #" + lineNum + " to #" + targetLineNum
+                    + ", which holds no entity");
+        if (!isPaged(lineNum)) {
+            overflow.remove(lineNum);
+            if (overflowRedirects.put(lineNum, targetLineNum) == null)
+                redirectCount++;
+            return;
+        }
+        int page = page(lineNum);
+        int slot = slot(lineNum);
+        Object[] entities = ensurePage(page);
+        if (!isRedirect(page, slot)) {
+            if (entities[slot] != null)
+                size--;
+            redirectBits[page][slot >>> 6] |= 1L << slot;
+            redirectCount++;
+        }
+        entities[slot] = target;
+    }
+
+    /**
+     * Calls an action for every redirected line number. The action may
+     * redirect those line numbers again.
+     */
+    public void forEachRedirect(LongConsumer action) {
+        for (int page = 0; page < redirectBits.length; page++) {
+            long[] bits = redirectBits[page];
+            if (bits == null)
+                continue;
+            for (int word = 0; word < bits.length; word++) {
+                long w = bits[word];
+                while (w != 0) {
+                    int bit = Long.numberOfTrailingZeros(w);
+                    w &= w - 1;
+                    action.accept(((long) page << PAGE_BITS) | ((long) word << 6) | bit);
+                }
+            }
+        }
+        for (Long lineNum : new ArrayList<>(overflowRedirects.keySet()))
+            action.accept(lineNum);
+    }
+
+    /**
+     * @return the number of stored entities, not counting redirected lines
+     */
+    public int size() {
+        return size + overflow.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the number of redirected line numbers
+     */
+    public int getRedirectCount() {
+        return redirectCount;
+    }
+
+    public void clear() {
+        pages = new Object[16][];
+        redirectBits = new long[16][];
+        overflow = new HashMap<>();
+        overflowRedirects = new HashMap<>();
+        size = 0;
+        redirectCount = 0;
+    }
+
+    /**
+     * Iterates over the stored entities in ascending line number order,
+     * skipping redirected lines. Entities may be redirected while iterating.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private long next = -1;
+            private final Iterator<T> overflowIterator = new TreeMap<>(overflow).values().iterator();
+
+            {
+                advance();
+            }
+
+            private void advance() {
+                long lineNum = next + 1;
+                while (true) {
+                    int page = (int) (lineNum >>> PAGE_BITS);
+                    if (page >= pages.length) {
+                        next = Long.MAX_VALUE;
+                        return;
+                    }
+                    if (pages[page] == null) {
+                        lineNum = (long) (page + 1) << PAGE_BITS;
+                        continue;
+                    }
+                    int slot = slot(lineNum);
+                    if (pages[page][slot] != null && !isRedirect(page, slot)) {
+                        next = lineNum;
+                        return;
+                    }
+                    lineNum++;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != Long.MAX_VALUE || overflowIterator.hasNext();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (next == Long.MAX_VALUE)
+                    return overflowIterator.next();
+                T entity = (T) pages[(int) (next >>> PAGE_BITS)][slot(next)];
+                if (entity == null)
+                    throw new NoSuchElementException();
+                advance();
+                return entity;
+            }
+        };
+    }
+
+    private static boolean isPaged(long lineNum) {
+        return lineNum >= 0 && (lineNum >>> PAGE_BITS) < MAX_PAGES;
+    }
+
+    private static int page(long lineNum) {
+        return (int) (lineNum >>> PAGE_BITS);
+    }
+
+    private static int slot(long lineNum) {
+        return (int) (lineNum & PAGE_MASK);
+    }
+
+    private boolean isRedirect(int page, int slot) {
+        return redirectBits[page] != null && (redirectBits[page][slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private void clearRedirect(int page, int slot) {
+        redirectBits[page][slot >>> 6] &= ~(1L << slot);
+        redirectCount--;
+    }
+
+    private Object[] ensurePage(int page) {
+        if (page >= pages.length) {
+            int length = pages.length;
+            while (length <= page)
+                length *= 2;
+            Object[][] grownPages = new Object[length][];
+            System.arraycopy(pages, 0, grownPages, 0, pages.length);
+            pages = grownPages;
+            long[][] grownBits = new long[length][];
+            System.arraycopy(redirectBits, 0, grownBits, 0, redirectBits.length);
+            redirectBits = grownBits;
+        }
+        if (pages[page] == null) {
+            pages[page] = new Object[PAGE_SIZE];
+            redirectBits[page] = new long[PAGE_SIZE / 64];
+        }
+        return pages[page];
+    }
+}
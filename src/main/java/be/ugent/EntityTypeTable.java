@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The entity name of every line number of a file, and the set of line numbers
+ * that are referenced, without the parameters of the entities. This is what
+ * the streaming conversion keeps in memory between its two passes: two bytes
+ * and one bit per line number, in pages that are allocated on first use, like
+ * {@link EntityStore}.
+ */
+public class EntityTypeTable {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 1 << 24;
+    private static final int MAX_NAMES = 0xFFFF;
+
+    // index + 1 of the entity name in names, 0 for an unused line number
+    private short[][] pages = new short[16][];
+    private long[][] referencedBits = new long[16][];
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIndexes = new HashMap<>();
+    private final Map<Long, String> overflow = new HashMap<>();
+    private final Set<Long> overflowReferenced = new HashSet<>();
+    private int size = 0;
+
+    /**
+     * Records the entity name of a line number, replacing the name already
+     * recorded for that line number.
+     */
+    public void put(long lineNum, String name) {
+        if (!isPaged(lineNum)) {
+            if (overflow.put(lineNum, name) == null)
+                size++;
+            return;
+        }
+        Integer index = nameIndexes.get(name);
+        if (index == null) {
+            if (names.size() >= MAX_NAMES)
+                throw new IllegalStateException("More than " + MAX_NAMES + " different entity names");
+            names.add(name);
+            index = names.size();
+            nameIndexes.put(name, index);
+        }
+        short[] page = ensurePage((int) (lineNum >>> PAGE_BITS));
+        int slot = (int) (lineNum & PAGE_MASK);
+        if (page[slot] == 0)
+            size++;
+        page[slot] = (short) index.intValue();
+    }
+
+    /**
+     * @return the entity name of a line number, or null if the line number is
+     * not used
+     */
+    public String getName(long lineNum) {
+        if (!isPaged(lineNum))
+            return overflow.get(lineNum);
+        int page = (int) (lineNum >>> PAGE_BITS);
+        if (page >= pages.length || pages[page] == null)
+            return null;
+        int index = pages[page][(int) (lineNum & PAGE_MASK)] & 0xFFFF;
+        return index == 0 ? null : names.get(index - 1);
+    }
+
+    public boolean contains(long lineNum) {
+        return getName(lineNum) != null;
+    }
+
+    /**
+     * Records that a line number is referenced by some entity.
+     */
+    public void markReferenced(long lineNum) {
+        if (!isPaged(lineNum)) {
+            overflowReferenced.add(lineNum);
+            return;
+        }
+        int page = (int) (lineNum >>> PAGE_BITS);
+        ensurePage(page);
+        int slot = (int) (lineNum & PAGE_MASK);
+        referencedBits[page][slot >>> 6] |= 1L << slot;
+    }
+
+    /**
+     * @return a line number that is referenced but not used by an entity, or
+     * null if every reference can be resolved
+     */
+    public Long findMissingReference() {
+        for (int page = 0; page < pages.length; page++) {
+            if (pages[page] == null)
+                continue;
+            long[] bits = referencedBits[page];
+            for (int word = 0; word < bits.length; word++) {
+                long w = bits[word];
+                while (w != 0) {
+                    int slot = word * 64 + Long.numberOfTrailingZeros(w);
+                    if (pages[page][slot] == 0)
+                        return ((long) page << PAGE_BITS) + slot;
+                    w &= w - 1;
+                }
+            }
+        }
+        for (Long lineNum : overflowReferenced) {
+            if (!overflow.containsKey(lineNum))
+                return lineNum;
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of used line numbers
+     */
+    public int size() {
+        return size;
+    }
+
+    private static boolean isPaged(long lineNum) {
+        return lineNum >= 0 && (lineNum >>> PAGE_BITS) < MAX_PAGES;
+    }
+
+    private short[] ensurePage(int page) {
+        if (page >= pages.length) {
+            int length = pages.length;
+            while (length <= page)
+                length *= 2;
+            short[][] grownPages = new short[length][];
+            System.arraycopy(pages, 0, grownPages, 0, pages.length);
+            pages = grownPages;
+            long[][] grownBits = new long[length][];
+            System.arraycopy(referencedBits, 0, grownBits, 0, referencedBits.length);
+            referencedBits = grownBits;
+        }
+        if (pages[page] == null) {
+            pages[page] = new short[PAGE_SIZE];
+            referencedBits[page] = new long[PAGE_SIZE / 64];
+        }
+        return pages[page];
+    }
+}
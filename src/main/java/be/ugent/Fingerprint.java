@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+/**
+ * A 128-bit hash of a sequence of longs and Strings, computed with the
+ * mixing steps of MurmurHash3 x64_128. It is not a cryptographic hash; equal
+ * fingerprints are compared by content before they are trusted.
+ */
+final class Fingerprint {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1;
+    private long h2;
+    private long length;
+
+    void reset() {
+        h1 = 0;
+        h2 = 0;
+        length = 0;
+    }
+
+    void add(long k) {
+        long k1 = Long.rotateLeft(k * C1, 31) * C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+        long k2 = Long.rotateLeft(k * C2, 33) * C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+        length++;
+    }
+
+    /**
+     * Adds the length and the characters of a String, four per long.
+     */
+    void add(String s) {
+        int n = s.length();
+        add(n);
+        int i = 0;
+        for (; i + 4 <= n; i += 4)
+            add((long) s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32
+                    | (long) s.charAt(i + 3) << 48);
+        long rest = 0;
+        for (int shift = 0; i < n; i++, shift += 16)
+            rest |= (long) s.charAt(i) << shift;
+        if (rest != 0)
+            add(rest);
+    }
+
+    long high() {
+        long a = h1 ^ length;
+        long b = h2 ^ length;
+        a += b;
+        b += a;
+        a = mix(a);
+        b = mix(b);
+        return a + b;
+    }
+
+    long low() {
+        long a = h1 ^ length;
+        long b = h2 ^ length;
+        a += b;
+        b += a;
+        a = mix(a);
+        b = mix(b);
+        return a + 2 * b;
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
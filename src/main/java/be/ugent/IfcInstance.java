@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+/**
+ * An entity instance of the DATA section, e.g.
+ * <code>#12= IFCWALL('2O2Fr$t4X7Zf8NOew3FLOH',#2,...);</code>.
+ */
+public class IfcInstance {
+
+    private final long lineNum;
+    private final String name;
+    private final ValueList values;
+
+    public IfcInstance(long lineNum, String name, ValueList values) {
+        this.lineNum = lineNum;
+        this.name = name;
+        this.values = values;
+    }
+
+    public long getLineNum() {
+        return lineNum;
+    }
+
+    /**
+     * @return the entity name as written in the file, e.g. IFCWALL
+     */
+    public String getName() {
+        return name;
+    }
+
+    public ValueList getValues() {
+        return values;
+    }
+
+    /**
+     * @return true if both instances have the same name and parameters, which
+     * makes them duplicates of each other
+     */
+    public boolean hasSameContent(IfcInstance other) {
+        return name.equals(other.name) && values.equals(other.values);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('#').append(lineNum).append("= ").append(name);
+        values.appendTo(sb);
+        return sb.append(';').toString();
+    }
+}
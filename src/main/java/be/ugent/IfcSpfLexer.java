@@ -0,0 +1,367 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-level tokenizer for ISO 10303-21 (IFC-SPF) content. The lexer works
+ * directly on a {@link ByteBuffer} window, which is typically a memory-mapped
+ * region of the input file, and reports every token as a pair of byte offsets
+ * instead of copying it into a String. String literals (including
+ * <code>;</code>, <code>(</code> and escaped <code>''</code> quotes inside
+ * them) and <code>/* ... *&#47;</code> comments are recognised as such.
+ * <p>
+ * When the window does not hold the whole input, a token that runs into the
+ * end of the window is reported as {@link #INCOMPLETE}, so that the caller can
+ * move the window and re-read the statement.
+ */
+public class IfcSpfLexer {
+
+    public static final int EOF = 0;
+    public static final int INCOMPLETE = 1;
+    public static final int ENTITY_NAME = 2;
+    public static final int KEYWORD = 3;
+    public static final int EQUALS = 4;
+    public static final int OPEN = 5;
+    public static final int CLOSE = 6;
+    public static final int COMMA = 7;
+    public static final int SEMICOLON = 8;
+    public static final int STRING = 9;
+    public static final int ENUMERATION = 10;
+    public static final int INTEGER = 11;
+    public static final int REAL = 12;
+    public static final int BINARY = 13;
+    public static final int UNSET = 14;
+    public static final int DERIVED = 15;
+    public static final int UNKNOWN = 16;
+
+    private final ByteBuffer buffer;
+    private final long bufferOffset;
+    private final int limit;
+    private final boolean endOfInput;
+
+    private int position;
+    private int tokenStart;
+    private int tokenEnd;
+
+    private byte[] scratch = new byte[256];
+
+    /**
+     * @param buffer       the window to tokenize, from its position to its limit
+     * @param bufferOffset the offset of index 0 of the buffer in the whole input
+     * @param endOfInput   true if the limit of the buffer is the end of the input
+     */
+    public IfcSpfLexer(ByteBuffer buffer, long bufferOffset, boolean endOfInput) {
+        this.buffer = buffer;
+        this.bufferOffset = bufferOffset;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+        this.endOfInput = endOfInput;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return one of the token type constants of this class
+     */
+    public int next() {
+        int i = skipWhitespaceAndComments(position);
+        if (i < 0) {
+            tokenStart = tokenEnd = position = limit;
+            return INCOMPLETE;
+        }
+        tokenStart = i;
+        if (i >= limit) {
+            tokenEnd = position = limit;
+            return endOfInput ? EOF : INCOMPLETE;
+        }
+        byte b = buffer.get(i);
+        switch (b) {
+            case '#':
+                return finish(scanDigits(i + 1), ENTITY_NAME);
+            case '=':
+                return finish(i + 1, EQUALS);
+            case '(':
+                return finish(i + 1, OPEN);
+            case ')':
+                return finish(i + 1, CLOSE);
+            case ',':
+                return finish(i + 1, COMMA);
+            case ';':
+                return finish(i + 1, SEMICOLON);
+            case '$':
+                return finish(i + 1, UNSET);
+            case '*':
+                return finish(i + 1, DERIVED);
+            case '\'':
+                return finish(scanString(i + 1), STRING);
+            case '"':
+                return finish(scanBinary(i + 1), BINARY);
+            case '.':
+                if (i + 1 < limit && isKeywordStart(buffer.get(i + 1)))
+                    return finish(scanEnumeration(i + 1), ENUMERATION);
+                if (i + 1 >= limit && !endOfInput)
+                    return finish(-1, UNKNOWN);
+                return finish(i + 1, UNKNOWN);
+            default:
+                if (isDigit(b) || b == '-' || b == '+')
+                    return scanNumber(i);
+                if (isKeywordStart(b) || b == '!')
+                    return finish(scanKeyword(i + 1), KEYWORD);
+                return finish(i + 1, UNKNOWN);
+        }
+    }
+
+    private int finish(int end, int type) {
+        if (end < 0) {
+            tokenEnd = position = limit;
+            return INCOMPLETE;
+        }
+        tokenEnd = position = end;
+        return type;
+    }
+
+    /**
+     * @return the index of the first significant byte, or -1 if a comment runs
+     * past the end of a window that is not the end of the input
+     */
+    private int skipWhitespaceAndComments(int i) {
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f') {
+                i++;
+            } else if (b == '/' && i + 1 < limit && buffer.get(i + 1) == '*') {
+                int j = i + 2;
+                while (j + 1 < limit && !(buffer.get(j) == '*' && buffer.get(j + 1) == '/'))
+                    j++;
+                if (j + 1 >= limit)
+                    return endOfInput ? limit : -1;
+                i = j + 2;
+            } else if (b == '/' && i + 1 >= limit && !endOfInput) {
+                return -1;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private int scanDigits(int i) {
+        while (i < limit && isDigit(buffer.get(i)))
+            i++;
+        if (i >= limit && !endOfInput)
+            return -1;
+        return i;
+    }
+
+    private int scanKeyword(int i) {
+        while (i < limit && isKeywordPart(buffer.get(i)))
+            i++;
+        if (i >= limit && !endOfInput)
+            return -1;
+        return i;
+    }
+
+    private int scanEnumeration(int i) {
+        while (i < limit && isKeywordPart(buffer.get(i)))
+            i++;
+        if (i >= limit)
+            return endOfInput ? limit : -1;
+        return buffer.get(i) == '.' ? i + 1 : i;
+    }
+
+    private int scanString(int i) {
+        while (i < limit) {
+            if (buffer.get(i) == '\'') {
+                if (i + 1 < limit) {
+                    if (buffer.get(i + 1) != '\'')
+                        return i + 1;
+                    i += 2;
+                } else {
+                    return endOfInput ? i + 1 : -1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return endOfInput ? limit : -1;
+    }
+
+    private int scanBinary(int i) {
+        while (i < limit && buffer.get(i) != '"')
+            i++;
+        if (i >= limit)
+            return endOfInput ? limit : -1;
+        return i + 1;
+    }
+
+    private int scanNumber(int start) {
+        int i = start;
+        byte b = buffer.get(i);
+        if (b == '-' || b == '+') {
+            i++;
+            if (i >= limit)
+                return finish(endOfInput ? i : -1, UNKNOWN);
+            if (!isDigit(buffer.get(i)))
+                return finish(i, UNKNOWN);
+        }
+        while (i < limit && isDigit(buffer.get(i)))
+            i++;
+        int type = INTEGER;
+        if (i < limit && buffer.get(i) == '.') {
+            type = REAL;
+            i++;
+            while (i < limit && isDigit(buffer.get(i)))
+                i++;
+            if (i < limit && (buffer.get(i) == 'E' || buffer.get(i) == 'e')) {
+                i++;
+                if (i < limit && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+                    i++;
+                while (i < limit && isDigit(buffer.get(i)))
+                    i++;
+            }
+        }
+        if (i >= limit && !endOfInput)
+            return finish(-1, type);
+        return finish(i, type);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isKeywordStart(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || b == '_';
+    }
+
+    private static boolean isKeywordPart(byte b) {
+        return isKeywordStart(b) || isDigit(b);
+    }
+
+    /**
+     * @return the index in the buffer of the first byte of the current token
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * @return the index in the buffer just after the last byte of the current
+     * token
+     */
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * @return the offset of the current token in the whole input
+     */
+    public long getTokenOffset() {
+        return bufferOffset + tokenStart;
+    }
+
+    /**
+     * @return the index in the buffer from which the next token will be read
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Parses the digits of an {@link #ENTITY_NAME} or {@link #INTEGER} token.
+     *
+     * @return the value, or {@link Long#MIN_VALUE} if it does not fit in a long
+     */
+    public long getTokenAsLong() {
+        int i = tokenStart;
+        boolean negative = false;
+        byte b = buffer.get(i);
+        if (b == '#' || b == '+') {
+            i++;
+        } else if (b == '-') {
+            negative = true;
+            i++;
+        }
+        if (i >= tokenEnd)
+            return Long.MIN_VALUE;
+        long value = 0;
+        for (; i < tokenEnd; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10)
+                return Long.MIN_VALUE;
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the raw text of the current token
+     */
+    public String getTokenText() {
+        return getText(tokenStart, tokenEnd);
+    }
+
+    /**
+     * Returns the text between two buffer indexes, decoded as UTF-8.
+     */
+    public String getText(int start, int end) {
+        int length = end - start;
+        byte[] bytes = scratch(length);
+        for (int i = 0; i < length; i++)
+            bytes[i] = buffer.get(start + i);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the content of a {@link #STRING} token without the enclosing
+     * quotes and with every doubled quote collapsed into a single one.
+     */
+    public String getStringContent() {
+        int end = tokenEnd;
+        if (end - tokenStart >= 2 && buffer.get(end - 1) == '\'')
+            end--;
+        byte[] bytes = scratch(end - tokenStart);
+        int length = 0;
+        for (int i = tokenStart + 1; i < end; i++) {
+            byte b = buffer.get(i);
+            bytes[length++] = b;
+            if (b == '\'' && i + 1 < end && buffer.get(i + 1) == '\'')
+                i++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the content of a {@link #STRING} token without the enclosing
+     * quotes, copied into an arena without decoding it.
+     */
+    public StepString getStepString(StepString.Arena arena) {
+        int end = tokenEnd;
+        if (end - tokenStart >= 2 && buffer.get(end - 1) == '\'')
+            end--;
+        return arena.copy(buffer, tokenStart + 1, end);
+    }
+
+    private byte[] scratch(int length) {
+        if (scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        return scratch;
+    }
+}
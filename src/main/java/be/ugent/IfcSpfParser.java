@@ -1,19 +1,43 @@
 package be.ugent;
 
-import com.buildingsmart.tech.ifcowl.vo.IFCVO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class IfcSpfParser {
 
+    private static final long MAPPED_WINDOW_SIZE = 1L << 28;
+    private static final int STREAM_BUFFER_SIZE = 1 << 22;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final int BOUNDARY_SCAN_SIZE = 1 << 20;
+
+    // window sizes, only changed by the unit tests
+    long mappedWindowSize = MAPPED_WINDOW_SIZE;
+    int streamBufferSize = STREAM_BUFFER_SIZE;
+
     private InputStream inputStream;
+    private int parallelism = 1;
     private int idCounter = 0;
     private long lineNumMax = 0;
-    private Map<Long, IFCVO> linemap = new HashMap<>();
-    private Map<Long, Long> listOfDuplicateLineEntries = new HashMap<>();
+    private EntityStore<IfcInstance> linemap = new EntityStore<>();
+    // receives the entities instead of the linemap when set
+    private Consumer<IfcInstance> handler;
+    // entity names, keywords and enumerations are shared between instances
+    private final Map<String, String> symbols = new ConcurrentHashMap<>();
 
     private static final Logger LOG = LoggerFactory.getLogger(RDFWriter.class);
 
@@ -23,254 +47,551 @@ public class IfcSpfParser {
 
     public void readModel() {
         try {
-            DataInputStream in = new DataInputStream(inputStream);
-            BufferedReader br = new BufferedReader(new InputStreamReader(in));
             try {
-                String strLine;
-                while ((strLine = br.readLine()) != null) {
-                    if (strLine.length() > 0) {
-                        if (strLine.charAt(0) == '#') {
-                            StringBuilder sb = new StringBuilder();
-                            String stmp = strLine;
-                            sb.append(stmp.trim());
-                            while (!stmp.contains(";")) {
-                                stmp = br.readLine();
-                                if (stmp == null)
-                                    break;
-                                sb.append(stmp.trim());
-                            }
-                            // the whole IFC gets parsed, and everything ends up
-                            // as IFCVO objects in the Map<Long, IFCVO> linemap
-                            // variable
-                            parseIfcLineStatement(sb.toString().substring(1));
-                        }
-                    }
-                }
+                if (inputStream instanceof FileInputStream && parallelism > 1 && handler == null)
+                    readChannelParallel(((FileInputStream) inputStream).getChannel());
+                else if (inputStream instanceof FileInputStream)
+                    readChannel(((FileInputStream) inputStream).getChannel());
+                else
+                    readStream(inputStream);
             } finally {
                 if (lineNumMax > idCounter) {
                     idCounter = (int) lineNumMax;
                 }
-                br.close();
+                inputStream.close();
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private void parseIfcLineStatement(String line) {
-        IFCVO ifcvo = new IFCVO();
-        ifcvo.setFullLineAfterNum(line.substring(line.indexOf('=') + 1));
-        int state = 0;
-        StringBuilder sb = new StringBuilder();
-        int clCount = 0;
-        LinkedList<Object> current = (LinkedList<Object>) ifcvo.getObjectList();
-        Stack<LinkedList<Object>> listStack = new Stack<>();
-        for (int i = 0; i < line.length(); i++) {
-            char ch = line.charAt(i);
-            switch (state) {
-                case 0:
-                    if (ch == '=') {
-                        ifcvo.setLineNum(toLong(sb.toString()));
-                        if (toLong(sb.toString()) > lineNumMax)
-                            lineNumMax = toLong(sb.toString());
-                        sb.setLength(0);
-                        state++;
-                        continue;
-                    } else if (Character.isDigit(ch))
-                        sb.append(ch);
-                    break;
-                case 1: // (
-                    if (ch == '(') {
-                        ifcvo.setName(sb.toString());
-                        sb.setLength(0);
-                        state++;
-                        continue;
-                    } else if (ch == ';') {
-                        ifcvo.setName(sb.toString());
-                        sb.setLength(0);
-                        state = Integer.MAX_VALUE;
-                    } else if (!Character.isWhitespace(ch))
-                        sb.append(ch);
+    /**
+     * Parses the input and passes every entity instance to a handler, in file
+     * order, instead of storing it in the linemap. Nothing but the line
+     * numbers and counters is kept, so the memory use does not depend on the
+     * size of the file. The input is read on a single thread.
+     */
+    public void readModel(Consumer<IfcInstance> handler) {
+        this.handler = handler;
+        try {
+            readModel();
+        } finally {
+            this.handler = null;
+        }
+    }
+
+    /**
+     * Tokenizes a file through a sequence of memory-mapped windows. A statement
+     * that is cut by the end of a window is read again from the start of the
+     * next window, which is made larger if the statement alone does not fit.
+     */
+    private void readChannel(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long offset = channel.position();
+        long windowSize = mappedWindowSize;
+        while (offset < size) {
+            long length = Math.min(windowSize, size - offset);
+            boolean endOfInput = offset + length >= size;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            Chunk chunk = new Chunk(offset, offset + length, handler);
+            int consumed = parseStatements(window, offset, endOfInput, chunk);
+            merge(chunk);
+            if (endOfInput)
+                break;
+            if (consumed == 0) {
+                if (windowSize >= Integer.MAX_VALUE)
+                    throw new IOException("Statement at offset " + offset + " is larger than " + Integer.MAX_VALUE + " bytes");
+                windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE);
+            } else {
+                windowSize = mappedWindowSize;
+            }
+            offset += consumed;
+        }
+    }
+
+    /**
+     * Tokenizes a file on a fork-join pool. The file is split into chunks that
+     * start at statement boundaries (a <code>;</code> followed by a
+     * <code>#</code>), each chunk is parsed on its own and the results are
+     * merged in file order. Because a boundary found by scanning bytes could
+     * lie inside a string literal or a comment, a chunk that does not end
+     * exactly at the end of a statement is parsed again together with the
+     * chunk that follows it. The resulting linemap is therefore identical to
+     * the one of the sequential parse.
+     */
+    private void readChannelParallel(FileChannel channel) throws IOException {
+        long start = channel.position();
+        long size = channel.size();
+        List<Long> boundaries = findChunkBoundaries(channel, start, size);
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            final long from = boundaries.get(i);
+            final long to = boundaries.get(i + 1);
+            final boolean endOfInput = to >= size;
+            tasks.add(() -> parseChunk(channel, from, to, endOfInput));
+        }
+        LOG.info("Parsing " + tasks.size() + " chunks on " + parallelism + " threads");
+
+        List<Chunk> chunks = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Chunk> future : pool.invokeAll(tasks))
+                chunks.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parsing interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        int i = 0;
+        while (i < chunks.size()) {
+            Chunk chunk = chunks.get(i);
+            int j = i;
+            while (!chunk.clean) {
+                j++;
+                Chunk next = chunks.get(j);
+                LOG.debug("Chunk boundary at offset {} is not a statement boundary, parsing again", next.start);
+                chunk = parseChunk(channel, chunks.get(i).start, next.end, next.end >= size);
+            }
+            merge(chunk);
+            i = j + 1;
+        }
+    }
+
+    /**
+     * @return the start offsets of the chunks, followed by the end of the file
+     */
+    private List<Long> findChunkBoundaries(FileChannel channel, long start, long size) throws IOException {
+        int count = (int) Math.max(parallelism * CHUNKS_PER_THREAD, (size - start) / mappedWindowSize + 1);
+        long chunkSize = Math.max((size - start) / count, MIN_CHUNK_SIZE);
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        long candidate = start + chunkSize;
+        while (candidate < size) {
+            long boundary = findStatementStart(channel, candidate, size);
+            if (boundary < 0)
+                break;
+            boundaries.add(boundary);
+            candidate = boundary + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /**
+     * Looks for the first <code>#</code> that follows a <code>;</code> and
+     * optional whitespace, at or after the given offset.
+     *
+     * @return the offset of the <code>#</code>, or -1 if there is none
+     */
+    private long findStatementStart(FileChannel channel, long from, long size) throws IOException {
+        while (from < size) {
+            long length = Math.min(BOUNDARY_SCAN_SIZE, size - from);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+            boolean afterSemicolon = false;
+            for (int i = 0; i < length; i++) {
+                byte b = window.get(i);
+                if (b == ';') {
+                    afterSemicolon = true;
+                } else if (b == '#') {
+                    if (afterSemicolon)
+                        return from + i;
+                } else if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    afterSemicolon = false;
+                }
+            }
+            // overlap by a few bytes so that "; #" across two windows is found
+            from += Math.max(length - 64, 1);
+        }
+        return -1;
+    }
+
+    private Chunk parseChunk(FileChannel channel, long from, long to, boolean endOfInput) throws IOException {
+        Chunk chunk = new Chunk(from, to, null);
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int consumed = parseStatements(window, from, endOfInput, chunk);
+        if (!endOfInput) {
+            // only whitespace may be left between the last statement and the
+            // next boundary
+            for (int i = consumed; i < window.limit() && chunk.clean; i++) {
+                byte b = window.get(i);
+                chunk.clean = b == ' ' || b == '\n' || b == '\r' || b == '\t';
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Tokenizes a stream that is not backed by a file through a direct buffer,
+     * which grows when a single statement does not fit in it.
+     */
+    private void readStream(InputStream in) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(streamBufferSize);
+        long offset = 0;
+        boolean endOfInput = false;
+        while (true) {
+            while (!endOfInput && buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    endOfInput = true;
+            }
+            buffer.flip();
+            Chunk chunk = new Chunk(offset, offset + buffer.limit(), handler);
+            int consumed = parseStatements(buffer, offset, endOfInput, chunk);
+            merge(chunk);
+            if (endOfInput)
+                break;
+            offset += consumed;
+            buffer.position(consumed);
+            if (consumed == 0 && buffer.limit() == buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+        }
+    }
+
+    /**
+     * Parses all complete statements of a window. Only entity instance
+     * statements (<code>#12=IFCNAME(...);</code>) are kept, the HEADER section
+     * and section delimiters are skipped.
+     *
+     * @return the number of bytes from the position of the buffer that were
+     * consumed by complete statements
+     */
+    private int parseStatements(ByteBuffer buffer, long offset, boolean endOfInput, Chunk chunk) {
+        IfcSpfLexer lexer = new IfcSpfLexer(buffer, offset, endOfInput);
+        int consumed = buffer.position();
+        while (true) {
+            int result = parseStatement(lexer, chunk);
+            if (result == IfcSpfLexer.INCOMPLETE)
+                return consumed - buffer.position();
+            consumed = lexer.getPosition();
+            if (result == IfcSpfLexer.EOF)
+                return consumed - buffer.position();
+        }
+    }
+
+    /**
+     * @return {@link IfcSpfLexer#SEMICOLON} when a statement was read,
+     * {@link IfcSpfLexer#INCOMPLETE} when the statement runs past the window
+     * and {@link IfcSpfLexer#EOF} at the end of the input
+     */
+    private int parseStatement(IfcSpfLexer lexer, Chunk chunk) {
+        int token = lexer.next();
+        if (token == IfcSpfLexer.EOF || token == IfcSpfLexer.INCOMPLETE)
+            return token;
+        if (token != IfcSpfLexer.ENTITY_NAME)
+            return skipStatement(lexer, token);
+
+        long lineNum = lexer.getTokenAsLong();
+        token = lexer.next();
+        if (token != IfcSpfLexer.EQUALS)
+            return skipStatement(lexer, token);
+        token = lexer.next();
+        if (token != IfcSpfLexer.KEYWORD) {
+            if (token == IfcSpfLexer.OPEN)
+                LOG.warn("*WARNING 38*: Complex entity instance #" + lineNum + " is not supported and has been skipped.");
+            return skipStatement(lexer, token);
+        }
+        String name = symbol(lexer.getTokenText());
+        ValueList values = ValueList.EMPTY;
+        token = lexer.next();
+        if (token == IfcSpfLexer.OPEN) {
+            token = parseParameters(lexer, chunk);
+            values = chunk.parameters;
+        }
+        if (token == IfcSpfLexer.INCOMPLETE)
+            return token;
+        if (token == IfcSpfLexer.EOF) {
+            LOG.warn("*WARNING 39*: Unterminated statement #" + lineNum + " at the end of the file has been skipped.");
+            return token;
+        }
+        if (token != IfcSpfLexer.SEMICOLON) {
+            token = skipStatement(lexer, lexer.next());
+            if (token == IfcSpfLexer.INCOMPLETE)
+                return token;
+        }
+        if (lineNum > chunk.lineNumMax)
+            chunk.lineNumMax = lineNum;
+        chunk.add(new IfcInstance(lineNum, name, values));
+        return IfcSpfLexer.SEMICOLON;
+    }
+
+    /**
+     * Adds the entities of a chunk to the linemap, in file order so that a
+     * line number that occurs twice keeps its last definition.
+     */
+    private void merge(Chunk chunk) {
+        for (IfcInstance ifcvo : chunk.entities)
+            linemap.put(ifcvo.getLineNum(), ifcvo);
+        idCounter += chunk.count;
+        if (chunk.lineNumMax > lineNumMax)
+            lineNumMax = chunk.lineNumMax;
+    }
+
+    /**
+     * Reads the parameter list of an entity instance, the opening parenthesis
+     * being already consumed, into {@link Chunk#parameters}. The builders of
+     * the chunk are reused for every nesting level.
+     *
+     * @return the token that follows the closing parenthesis, or the
+     * {@link IfcSpfLexer#INCOMPLETE} / {@link IfcSpfLexer#EOF} token that
+     * interrupted the list
+     */
+    private int parseParameters(IfcSpfLexer lexer, Chunk chunk) {
+        int depth = 0;
+        ValueList.Builder current = chunk.builder(depth);
+        while (true) {
+            int token = lexer.next();
+            switch (token) {
+                case IfcSpfLexer.EOF:
+                case IfcSpfLexer.INCOMPLETE:
+                    for (int i = 0; i <= depth; i++)
+                        chunk.builder(i).build();
+                    return token;
+                case IfcSpfLexer.OPEN:
+                    depth++;
+                    current = chunk.builder(depth);
                     break;
-                case 2: // (... line started and doing (...
-                    if (ch == '\'') {
-                        state++;
-                    }
-                    if (ch == '(') {
-                        listStack.push(current);
-                        LinkedList<Object> tmp = new LinkedList<>();
-                        if (sb.toString().trim().length() > 0)
-                            current.add(sb.toString().trim());
-                        sb.setLength(0);
-                        current.add(tmp);
-                        current = tmp;
-                        clCount++;
-                    } else if (ch == ')') {
-                        if (clCount == 0) {
-                            if (sb.toString().trim().length() > 0)
-                                current.add(sb.toString().trim());
-                            sb.setLength(0);
-                            state = Integer.MAX_VALUE; // line is done
-                            continue;
-                        } else {
-                            if (sb.toString().trim().length() > 0)
-                                current.add(sb.toString().trim());
-                            sb.setLength(0);
-                            clCount--;
-                            current = listStack.pop();
-                        }
-                    } else if (ch == ',') {
-                        if (sb.toString().trim().length() > 0)
-                            current.add(sb.toString().trim());
-                        current.add(Character.valueOf(ch));
-
-                        sb.setLength(0);
-                    } else {
-                        sb.append(ch);
+                case IfcSpfLexer.CLOSE:
+                    if (depth == 0) {
+                        chunk.parameters = current.build();
+                        return lexer.next();
                     }
+                    ValueList list = current.build();
+                    depth--;
+                    current = chunk.builder(depth);
+                    current.addList(list);
                     break;
-                case 3: // (...
-                    if (ch == '\'') {
-                        state--;
-                    } else {
-                        sb.append(ch);
-                    }
+                case IfcSpfLexer.COMMA:
+                    break;
+                case IfcSpfLexer.ENTITY_NAME:
+                    current.addReference(lexer.getTokenAsLong());
+                    break;
+                case IfcSpfLexer.UNSET:
+                    current.addUnset();
+                    break;
+                case IfcSpfLexer.DERIVED:
+                    current.addDerived();
+                    break;
+                case IfcSpfLexer.INTEGER:
+                    addInteger(lexer, current);
+                    break;
+                case IfcSpfLexer.REAL:
+                    addReal(lexer, current);
+                    break;
+                case IfcSpfLexer.STRING:
+                    current.addString(lexer.getStepString(chunk.strings));
+                    break;
+                case IfcSpfLexer.ENUMERATION:
+                    current.addEnumeration(symbol(lexer.getTokenText()));
+                    break;
+                case IfcSpfLexer.BINARY:
+                    current.addBinary(lexer.getTokenText());
                     break;
+                case IfcSpfLexer.SEMICOLON:
+                    LOG.warn("*WARNING 40*: Statement ended before its parameter list was closed.");
+                    while (depth > 0) {
+                        ValueList unclosed = current.build();
+                        depth--;
+                        current = chunk.builder(depth);
+                        current.addList(unclosed);
+                    }
+                    chunk.parameters = current.build();
+                    return token;
                 default:
-                    // Do nothing
+                    // keywords of typed parameters and unexpected tokens
+                    current.addKeyword(symbol(lexer.getTokenText()));
             }
         }
-        linemap.put(ifcvo.getLineNum(), ifcvo);
-        idCounter++;
     }
 
-    public void resolveDuplicates() throws IOException {
-        Map<String, IFCVO> listOfUniqueResources = new HashMap<>();
-        List<Long> entriesToRemove = new ArrayList<>();
-        for (Map.Entry<Long, IFCVO> entry : linemap.entrySet()) {
-            IFCVO vo = entry.getValue();
-            String t = vo.getFullLineAfterNum();
-            if (!listOfUniqueResources.containsKey(t))
-                listOfUniqueResources.put(t, vo);
-            else {
-                // found duplicate
-                entriesToRemove.add(entry.getKey());
-                listOfDuplicateLineEntries.put(vo.getLineNum(), listOfUniqueResources.get(t).getLineNum());
+    /**
+     * Adds an INTEGER token, keeping its text only when it is not written the
+     * way {@link Long#toString(long)} writes it (a sign or leading zeros).
+     */
+    private static void addInteger(IfcSpfLexer lexer, ValueList.Builder builder) {
+        ByteBuffer buffer = lexer.getBuffer();
+        int start = lexer.getTokenStart();
+        int end = lexer.getTokenEnd();
+        long value = lexer.getTokenAsLong();
+        int firstDigit = buffer.get(start) == '-' ? start + 1 : start;
+        boolean canonical = value != Long.MIN_VALUE && buffer.get(start) != '+'
+                && (buffer.get(firstDigit) != '0' || end - firstDigit == 1) && !(value == 0 && firstDigit > start);
+        if (canonical) {
+            builder.addInteger(value, null);
+        } else {
+            String text = lexer.getTokenText();
+            try {
+                value = Long.parseLong(text.startsWith("+") ? text.substring(1) : text);
+            } catch (NumberFormatException e) {
+                value = text.startsWith("-") ? Long.MIN_VALUE : Long.MAX_VALUE;
+            }
+            builder.addInteger(value, text);
+        }
+    }
+
+    /**
+     * Adds a REAL token. Plain decimals with at most 15 significant digits,
+     * which is what exporters write in the vast majority of cases, are read
+     * without creating a String. A token that is not a number, such as
+     * <code>1.E</code> without exponent digits, is kept with the value NaN.
+     */
+    private static void addReal(IfcSpfLexer lexer, ValueList.Builder builder) {
+        ByteBuffer buffer = lexer.getBuffer();
+        int i = lexer.getTokenStart();
+        int end = lexer.getTokenEnd();
+        boolean negative = buffer.get(i) == '-';
+        if (negative)
+            i++;
+        long unscaled = 0;
+        int fractionDigits = -1;
+        boolean plain = buffer.get(i) != '+' && !(buffer.get(i) == '0' && i + 1 < end && buffer.get(i + 1) != '.');
+        for (; i < end && plain; i++) {
+            byte b = buffer.get(i);
+            if (b == '.') {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && unscaled < 100_000_000_000_000L) {
+                unscaled = unscaled * 10 + (b - '0');
+                if (fractionDigits >= 0)
+                    fractionDigits++;
+            } else {
+                plain = false;
             }
         }
-        LOG.info("MESSAGE: found and removed " + listOfDuplicateLineEntries.size() + " duplicates!");
-        for (Long x : entriesToRemove) {
-            linemap.remove(x);
+        if (plain && fractionDigits >= 0 && fractionDigits <= 15) {
+            builder.addDecimal(unscaled, fractionDigits, negative);
+        } else {
+            String text = lexer.getTokenText();
+            double value = NumericLiterals.parseReal(text);
+            if (Double.isNaN(value))
+                LOG.error("*ERROR 30*: Malformed REAL " + text + ", its literal is written as it is in the file.");
+            builder.addReal(value, text);
+        }
+    }
+
+    private String symbol(String text) {
+        String symbol = symbols.putIfAbsent(text, text);
+        return symbol == null ? text : symbol;
+    }
+
+    /**
+     * Skips the tokens up to and including the next semicolon.
+     */
+    private int skipStatement(IfcSpfLexer lexer, int token) {
+        while (token != IfcSpfLexer.SEMICOLON) {
+            if (token == IfcSpfLexer.EOF || token == IfcSpfLexer.INCOMPLETE)
+                return token;
+            token = lexer.next();
         }
+        return token;
     }
 
+    /**
+     * Redirects every entity instance that has the same content as an
+     * instance with a lower line number, also when they only differ in
+     * references to duplicates, see {@link DuplicateResolver}.
+     */
+    public void resolveDuplicates() throws IOException {
+        DuplicateResolver resolver = new DuplicateResolver(linemap, parallelism);
+        resolver.resolve();
+        LOG.info("MESSAGE: found and removed " + linemap.getRedirectCount() + " duplicates in " + resolver.getRounds()
+                + " rounds!");
+    }
+
+    /**
+     * Checks that every reference, at any nesting level, points to an entity
+     * of the file. References to removed duplicates resolve through the
+     * linemap to the entity that was kept.
+     *
+     * @return false if a reference to a non-existing line number was found
+     */
     public boolean mapEntries() throws IOException {
-        for (Map.Entry<Long, IFCVO> entry : linemap.entrySet()) {
-            IFCVO vo = entry.getValue();
-
-            // mapping properties to IFCVOs
-            for (int i = 0; i < vo.getObjectList().size(); i++) {
-                Object o = vo.getObjectList().get(i);
-                if (Character.class.isInstance(o)) {
-                    if ((Character) o != ',') {
-                        LOG.error("*ERROR 15*: We found a character that is not a comma. That should not be possible");
-                    }
-                } else if (String.class.isInstance(o)) {
-                    String s = (String) o;
-                    if (s.length() < 1)
-                        continue;
-                    if (s.charAt(0) == '#') {
-                        Object or = null;
-                        if (listOfDuplicateLineEntries.containsKey(toLong(s.substring(1))))
-                            or = linemap.get(listOfDuplicateLineEntries.get(toLong(s.substring(1))));
-                        else
-                            or = linemap.get(toLong(s.substring(1)));
-
-                        if (or == null) {
-                            LOG.error("*ERROR 6*: Reference to non-existing line number in line: #"
-                                    + vo.getLineNum() + "=" + vo.getFullLineAfterNum());
-                            return false;
-                        }
-                        vo.getObjectList().set(i, or);
-                    }
-                } else if (LinkedList.class.isInstance(o)) {
-                    @SuppressWarnings("unchecked")
-                    LinkedList<Object> tmpList = (LinkedList<Object>) o;
-
-                    for (int j = 0; j < tmpList.size(); j++) {
-                        Object o1 = tmpList.get(j);
-                        if (Character.class.isInstance(o)) {
-                            if ((Character) o != ',') {
-                                LOG.error("*ERROR 16*: We found a character that is not a comma. "
-                                        + "That should not be possible!");
-                            }
-                        } else if (String.class.isInstance(o1)) {
-                            String s = (String) o1;
-                            if (s.length() < 1)
-                                continue;
-                            if (s.charAt(0) == '#') {
-                                Object or = null;
-                                if (listOfDuplicateLineEntries.containsKey(toLong(s.substring(1))))
-                                    or = linemap.get(listOfDuplicateLineEntries.get(toLong(s.substring(1))));
-                                else
-                                    or = linemap.get(toLong(s.substring(1)));
-                                if (or == null) {
-                                    LOG.error("*ERROR 7*: Reference to non-existing line number in line: #"
-                                            + vo.getLineNum() + " - " + vo.getFullLineAfterNum());
-                                    tmpList.set(j, "-");
-                                    return false;
-                                } else
-                                    tmpList.set(j, or);
-                            } else {
-                                // list/set of values
-                                tmpList.set(j, s);
-                            }
-                        } else if (LinkedList.class.isInstance(o1)) {
-                            @SuppressWarnings("unchecked")
-                            LinkedList<Object> tmp2List = (LinkedList<Object>) o1;
-                            for (int j2 = 0; j2 < tmp2List.size(); j2++) {
-                                Object o2 = tmp2List.get(j2);
-                                if (String.class.isInstance(o2)) {
-                                    String s = (String) o2;
-                                    if (s.length() < 1)
-                                        continue;
-                                    if (s.charAt(0) == '#') {
-                                        Object or = null;
-                                        if (listOfDuplicateLineEntries.containsKey(toLong(s.substring(1))))
-                                            or = linemap.get(listOfDuplicateLineEntries.get(toLong(s.substring(1))));
-                                        else
-                                            or = linemap.get(toLong(s.substring(1)));
-                                        if (or == null) {
-                                            LOG.error("*ERROR 8*: Reference to non-existing line number in line: #" + vo.getLineNum() + " - " + vo.getFullLineAfterNum());
-                                            tmp2List.set(j2, "-");
-                                            return false;
-                                        } else
-                                            tmp2List.set(j2, or);
-                                    }
-                                }
-                            }
-                            tmpList.set(j, tmp2List);
-                        }
-                    }
-                }
-            }
+        for (IfcInstance instance : linemap) {
+            if (!checkReferences(instance, instance.getValues()))
+                return false;
         }
         return true;
     }
 
-    private Long toLong(String txt) {
-        try {
-            return Long.valueOf(txt);
-        } catch (NumberFormatException e) {
-            return Long.MIN_VALUE;
+    private boolean checkReferences(IfcInstance instance, ValueList values) {
+        for (int i = 0; i < values.size(); i++) {
+            byte kind = values.getKind(i);
+            if (kind == ValueList.REFERENCE) {
+                if (linemap.get(values.getReference(i)) == null) {
+                    LOG.error("*ERROR 6*: Reference to non-existing line number in line: " + instance);
+                    return false;
+                }
+            } else if (kind == ValueList.LIST) {
+                if (!checkReferences(instance, values.getList(i)))
+                    return false;
+            }
         }
+        return true;
     }
 
     public int getIdCounter() {
         return idCounter;
     }
 
-    public Map<Long, IFCVO> getLinemap() {
+    public EntityStore<IfcInstance> getLinemap() {
         return linemap;
     }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads used to parse a file. Values above 1 only
+     * take effect when the parser reads from a {@link FileInputStream}.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * The entities parsed from one region of the input, in file order.
+     */
+    private static class Chunk {
+        private final long start;
+        private final long end;
+        private final List<IfcInstance> entities = new ArrayList<>();
+        private final Consumer<IfcInstance> sink;
+        private int count = 0;
+        private long lineNumMax = 0;
+        private boolean clean = true;
+        // parser state, one builder per nesting level
+        private final List<ValueList.Builder> builders = new ArrayList<>();
+        private ValueList parameters;
+        private final StepString.Arena strings = new StepString.Arena();
+
+        private Chunk(long start, long end, Consumer<IfcInstance> sink) {
+            this.start = start;
+            this.end = end;
+            this.sink = sink;
+        }
+
+        private void add(IfcInstance instance) {
+            if (sink != null)
+                sink.accept(instance);
+            else
+                entities.add(instance);
+            count++;
+        }
+
+        private ValueList.Builder builder(int depth) {
+            while (builders.size() <= depth)
+                builders.add(new ValueList.Builder());
+            return builders.get(depth);
+        }
+    }
 }
@@ -13,16 +13,25 @@
  */
 package be.ugent;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,12 +42,21 @@ import java.util.function.Consumer;
 
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntModelSpec;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.out.NodeFmtLib;
 import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.riot.thrift.StreamRDF2Thrift;
 import org.apache.jena.riot.web.HttpOp;
 import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,9 +74,16 @@ public class IfcSpfReader {
     public static String DEFAULT_PATH = "";
 
     private boolean removeDuplicates = false;
+    private int parallelism = 1;
+    private boolean streaming = false;
+    private long valueCacheSize = 0;
+    private boolean useReasoner = false;
+    private OutputFormat outputFormat = OutputFormat.TURTLE;
+    private File numberingFile = null;
     private static final int FLAG_BASEURI = 0;
     private static final int FLAG_DIR = 1;
     private static final int FLAG_REMOVE_DUPLICATES = 2;
+    private static final int FLAG_STREAMING = 3;
 
     // used in conversion
     private String ifcFile;
@@ -67,23 +92,43 @@ public class IfcSpfReader {
     protected String ontURI = "";
     private Map<String, EntityVO> ent;
     private Map<String, TypeVO> typ;
+    private SchemaRegistry.Schema schema;
 
     /**
      * Primary integration point for the IFCtoRDF codebase. Run the method
      * without any input parameters for descriptions of runtime parameters.
      *
      * @param args a String array containing parameters <code>--baseURI</code>,
-     *             <code>--dir</code> and <code>--keep-duplicates</code>.
+     *             <code>--dir</code>, <code>--keep-duplicates</code>,
+     *             <code>--streaming</code>, <code>--threads &lt;n&gt;</code>,
+     *             <code>--format &lt;ttl|nt|nq|trdf&gt;</code>,
+     *             <code>--value-cache &lt;MB&gt;</code>,
+     *             <code>--delta &lt;old_file&gt;</code> and
+     *             <code>--numbering &lt;file&gt;</code>.
      * @throws IOException if there is an error reading the input parameters
      */
     public static void main(String[] args) throws IOException {
-        String[] options = new String[]{"--baseURI", "--dir", "--keep-duplicates"};
-        Boolean[] optionValues = new Boolean[]{false, false, false};
+        String[] options = new String[]{"--baseURI", "--dir", "--keep-duplicates", "--streaming"};
+        Boolean[] optionValues = new Boolean[]{false, false, false, false};
 
         String timeLog = new SimpleDateFormat("yyyyMMdd_HHmmss").format(Calendar.getInstance().getTime());
         DEFAULT_PATH = "http://linkedbuildingdata.net/ifc/resources" + timeLog + "/";
 
         List<String> argsList = new ArrayList<>(Arrays.asList(args));
+        String threads = removeOptionWithValue(argsList, "--threads");
+        int parallelism = threads == null ? 1 : Integer.parseInt(threads);
+        String jobs = removeOptionWithValue(argsList, "--jobs");
+        String summary = removeOptionWithValue(argsList, "--summary");
+        String format = removeOptionWithValue(argsList, "--format");
+        String delta = removeOptionWithValue(argsList, "--delta");
+        String numbering = removeOptionWithValue(argsList, "--numbering");
+        String valueCache = removeOptionWithValue(argsList, "--value-cache");
+        long valueCacheSize = valueCache == null ? 0 : Long.parseLong(valueCache) * 1024 * 1024;
+        OutputFormat outputFormat = format == null ? null : OutputFormat.forExtension(format);
+        if (format != null && outputFormat == null) {
+            LOG.error("*ERROR 26*: Unknown output format " + format + ", expected ttl, nt, nq or trdf.");
+            return;
+        }
         for (int i = 0; i < options.length; ++i) {
             optionValues[i] = argsList.contains(options[i]);
         }
@@ -104,10 +149,11 @@ public class IfcSpfReader {
         if (optionValues[FLAG_BASEURI])
             numRequiredOptions++;
 
-        if (argsList.size() != numRequiredOptions) {
+        if (argsList.size() != numRequiredOptions || (delta != null && optionValues[FLAG_DIR])) {
             LOG.info("Usage:\n"
-                    + "    IfcSpfReader [--baseURI <baseURI>] [--remove-duplicates] <input_file> <output_file>\n"
-                    + "    IfcSpfReader [--baseURI <baseURI>] [--remove-duplicates] --dir <directory>\n");
+                    + "    IfcSpfReader [--baseURI <baseURI>] [--remove-duplicates] [--threads <n>] [--streaming] [--format <ttl|nt|nq|trdf>] [--value-cache <MB>] <input_file> <output_file>\n"
+                    + "    IfcSpfReader [--baseURI <baseURI>] [--remove-duplicates] [--threads <n>] [--streaming] [--format <ttl|nt|nq|trdf>] [--value-cache <MB>] [--jobs <n>] [--summary <file>] --dir <directory>\n"
+                    + "    IfcSpfReader [--baseURI <baseURI>] [--remove-duplicates] [--threads <n>] --delta <old_input_file> [--numbering <file>] <input_file> <patch_file>\n");
             return;
         }
 
@@ -116,15 +162,38 @@ public class IfcSpfReader {
         String baseURI = "";
 
         if (optionValues[FLAG_DIR]) {
+            String dir;
             if (optionValues[FLAG_BASEURI]) {
                 baseURI = argsList.get(0);
-                inputFiles = showFiles(argsList.get(1));
-                outputFiles = null;
+                dir = argsList.get(1);
             } else {
                 baseURI = DEFAULT_PATH;
-                inputFiles = showFiles(argsList.get(0));
-                outputFiles = null;
+                dir = argsList.get(0);
+            }
+            List<String> ifcFiles = new ArrayList<>();
+            for (String inputFile : showFiles(dir)) {
+                if (isIfcFile(inputFile))
+                    ifcFiles.add(inputFile);
+            }
+
+            BatchConverter batch = new BatchConverter();
+            batch.setJobs(jobs == null ? 1 : Integer.parseInt(jobs));
+            batch.setRemoveDuplicates(optionValues[FLAG_REMOVE_DUPLICATES]);
+            batch.setParallelism(parallelism);
+            batch.setStreaming(optionValues[FLAG_STREAMING]);
+            batch.setValueCacheSize(valueCacheSize);
+            batch.setOutputFormat(outputFormat == null ? OutputFormat.TURTLE : outputFormat);
+            List<BatchConverter.Result> results = batch.convert(ifcFiles, baseURI);
+
+            File summaryFile = summary == null ? new File(dir, "conversion-summary.tsv") : new File(summary);
+            BatchConverter.writeSummary(results, summaryFile);
+            int failed = 0;
+            for (BatchConverter.Result result : results) {
+                if (!result.isSuccess())
+                    failed++;
             }
+            LOG.info("Converted " + (results.size() - failed) + " of " + results.size() + " files, summary in " + summaryFile);
+            return;
         } else {
             if (optionValues[FLAG_BASEURI]) {
                 baseURI = argsList.get(0);
@@ -140,26 +209,53 @@ public class IfcSpfReader {
         for (int i = 0; i < inputFiles.size(); ++i) {
             final String inputFile = inputFiles.get(i);
             final String outputFile;
-            if (inputFile.endsWith(".ifc")) {
-                if (outputFiles == null) {
-                    outputFile = inputFile.substring(0, inputFile.length() - 4) + ".ttl";
-                } else {
-                    outputFile = outputFiles.get(i);
-                }
+            if (isIfcFile(inputFile)) {
+                outputFile = outputFiles.get(i);
 
                 IfcSpfReader r = new IfcSpfReader();
 
                 r.removeDuplicates = optionValues[FLAG_REMOVE_DUPLICATES];
-
-                LOG.info("Converting file: " + inputFile + "\r\n");
+                r.parallelism = parallelism;
+                r.streaming = optionValues[FLAG_STREAMING];
+                r.valueCacheSize = valueCacheSize;
+                if (outputFormat != null) {
+                    r.outputFormat = outputFormat;
+                } else {
+                    // the format follows the extension of the output file
+                    OutputFormat byExtension = OutputFormat.forFileName(outputFile);
+                    if (byExtension != null)
+                        r.outputFormat = byExtension;
+                }
 
                 r.setup(inputFile);
+                if (delta != null) {
+                    LOG.info("Converting the changes from " + delta + " to " + inputFile + "\r\n");
+                    if (numbering != null)
+                        r.setNumberingFile(new File(numbering));
+                    r.convertDelta(delta, inputFile, outputFile, baseURI);
+                    continue;
+                }
+
+                LOG.info("Converting file: " + inputFile + "\r\n");
                 r.convert(inputFile, outputFile, baseURI);
             }
         }
 
     }
 
+    /**
+     * Removes an option and the value that follows it from the argument list.
+     *
+     * @return the value of the option, or null if the option is absent
+     */
+    static String removeOptionWithValue(List<String> argsList, String option) {
+        int i = argsList.indexOf(option);
+        if (i < 0 || i + 1 >= argsList.size())
+            return null;
+        argsList.remove(i);
+        return argsList.remove(i);
+    }
+
     /**
      * List all files in a particular directory.
      *
@@ -183,8 +279,16 @@ public class IfcSpfReader {
         return goodFiles;
     }
 
+    /**
+     * @return true for an .ifc file, a gzip compressed .ifc.gz file or an
+     * .ifczip archive
+     */
+    static boolean isIfcFile(String fileName) {
+        return fileName.endsWith(".ifc") || fileName.endsWith(".ifc.gz") || fileName.endsWith(".ifczip");
+    }
+
     private static String getExpressSchema(String ifcFile) {
-        try (FileInputStream fstream = new FileInputStream(ifcFile)) {
+        try (InputStream fstream = SpfSource.of(new File(ifcFile)).open()) {
             DataInputStream in = new DataInputStream(fstream);
             BufferedReader br = new BufferedReader(new InputStreamReader(in));
             try {
@@ -233,101 +337,134 @@ public class IfcSpfReader {
 
     public void setup(String ifcFileIn) throws IOException {
         ifcFile = ifcFileIn;
-        if (!ifcFile.endsWith(".ifc")) {
+        if (!isIfcFile(ifcFile)) {
             ifcFile += ".ifc";
         }
 
         exp = getExpressSchema(ifcFile);
 
-        // check if we are able to convert this: only four schemas are supported
-        if (!exp.equalsIgnoreCase("IFC2X3_Final") && !exp.equalsIgnoreCase("IFC2X3_TC1") && !exp.equalsIgnoreCase("IFC4_ADD2_TC1") && !exp.equalsIgnoreCase("IFC4_ADD2")
-                && !exp.equalsIgnoreCase("IFC4_ADD1") && !exp.equalsIgnoreCase("IFC4") && !exp.equalsIgnoreCase("IFC4x1") && !exp.equalsIgnoreCase("IFC4x3_RC1")) {
-            LOG.error("Unrecognised EXPRESS schema: " + exp + ". File should be in IFC4x3_RC1, IFC4X1, IFC4, IFC4_ADD1, IFC4_ADD2, IFC4_ADD2_TC1 or IFC2X3 schema. Quitting." + "\r\n");
+        // check if we are able to convert this: only the bundled schemas are supported
+        if (!SchemaRegistry.isSupported(exp)) {
+            String message = "Unrecognised EXPRESS schema: " + exp + ". File should be in IFC4x3_RC1, IFC4X1, IFC4, IFC4_ADD1, IFC4_ADD2, IFC4_ADD2_TC1 or IFC2X3 schema. Quitting.";
+            LOG.error(message + "\r\n");
+            throw new IllegalArgumentException(message);
         }
 
-        try {
-            InputStream fis = IfcSpfReader.class.getResourceAsStream("/ent" + exp + ".ser");
-            if (fis == null)
-                fis = IfcSpfReader.class.getResourceAsStream("/resources/ent" + exp + ".ser");  // Eclipse FIX
-            ObjectInputStream ois = new ObjectInputStream(fis);
-
-            ent = null;
-            try {
-                ent = (Map<String, EntityVO>) ois.readObject();
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
-            } finally {
-                ois.close();
-            }
+        schema = SchemaRegistry.getInstance().get(exp);
+        ent = schema.getEntityMap();
+        typ = schema.getTypeMap();
+        ontURI = schema.getOntURI();
+    }
 
-            fis = IfcSpfReader.class.getResourceAsStream("/typ" + exp + ".ser");
+    @SuppressWarnings("unchecked")
+    public void convert(String ifcFile, String outputFile, String baseURI) throws IOException {
+        convert(ifcFile, baseURI, writer -> writeOutput(writer, outputFile, baseURI));
+    }
 
-            if (fis == null)
-                fis = IfcSpfReader.class.getResourceAsStream("/resources/typ" + exp + ".ser"); // Eclipse FIX
+    /**
+     * Writes the output of a conversion to a file in the output format.
+     */
+    void writeOutput(RDFWriter writer, String outputFile, String baseURI) {
+        switch (outputFormat) {
+            case NTRIPLES:
+                writeNTriples(writer, outputFile, baseURI, false);
+                break;
+            case NQUADS:
+                writeNTriples(writer, outputFile, baseURI, true);
+                break;
+            case THRIFT:
+                writeThrift(writer, outputFile, baseURI);
+                break;
+            default:
+                writeTurtle(writer, outputFile, baseURI);
+        }
+    }
 
+    /**
+     * Writes the output of a conversion to a Turtle file, after a header with
+     * the base URI and the ontology.
+     */
+    void writeTurtle(RDFWriter writer, String outputFile, String baseURI) {
+        try (OutputStream out = openOutput(outputFile)) {
+            String s = "# baseURI: " + baseURI;
+            s += "\r\n# imports: " + ontURI + "\r\n\r\n";
+            out.write(s.getBytes());
+            LOG.info("Started parsing stream");
+            writer.parseModelToOutputStream(out);
+            LOG.info("Finished!!");
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Could not write output %s: %s", outputFile, e.getMessage()));
+        }
+    }
 
-            ois = new ObjectInputStream(fis);
-            typ = null;
-            try {
-                typ = (Map<String, TypeVO>) ois.readObject();
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
-            } finally {
-                ois.close();
-            }
+    /**
+     * Writes the output of a conversion to an N-Triples file, or an N-Quads
+     * file with the base URI as graph name.
+     */
+    void writeNTriples(RDFWriter writer, String outputFile, String baseURI, boolean quads) {
+        try (WritableByteChannel channel = outputFile.endsWith(".gz") ? Channels.newChannel(openOutput(outputFile))
+                : FileChannel.open(Paths.get(outputFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            NTriplesChannelWriter out = new NTriplesChannelWriter(channel,
+                    quads ? NodeFactory.createURI(baseURI) : null);
+            LOG.info("Started parsing stream");
+            long start = System.nanoTime();
+            writer.parseModelToStreamRdf(out);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LOG.info(String.format("Finished!! Wrote %d triples, %.1f MB in %.1f s (%.1f MB/s)", writer.getTripleCount(),
+                    out.getBytesWritten() / 1e6, seconds, out.getBytesWritten() / 1e6 / seconds));
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Could not write output %s: %s", outputFile, e.getMessage()));
+        }
+    }
 
-            String inAlt = exp;
-            if (exp.equalsIgnoreCase("IFC2X3_Final"))
-                inAlt = "IFC2x3/FINAL/";
-            if (exp.equalsIgnoreCase("IFC2X3_TC1"))
-                inAlt = "IFC2x3/TC1/";
-            if (exp.equalsIgnoreCase("IFC4_ADD1"))
-                inAlt = "IFC4/ADD1/";
-            if (exp.equalsIgnoreCase("IFC4_ADD2"))
-                inAlt = "IFC4/ADD2/";
-            if (exp.equalsIgnoreCase("IFC4_ADD2_TC1"))
-                inAlt = "IFC4/ADD2_TC1/";
-            if (exp.equalsIgnoreCase("IFC4x1"))
-                inAlt = "IFC4_1/";
-            if (exp.equalsIgnoreCase("IFC4x3"))
-                inAlt = "IFC4_3/RC1/";
-            if (exp.equalsIgnoreCase("IFC4X3"))
-                inAlt = "IFC4_3/RC1/";
-            if (exp.equalsIgnoreCase("IFC4x3_RC1"))
-                inAlt = "IFC4_3/RC1/";
-            if (exp.equalsIgnoreCase("IFC4X3_RC1"))
-                inAlt = "IFC4_3/RC1/";
-            if (exp.equalsIgnoreCase("IFC4"))
-                inAlt = "IFC4/FINAL/";
-
-            ontURI = "http://standards.buildingsmart.org/IFC/DEV/" + inAlt + "OWL";
-        } catch (FileNotFoundException e1) {
-            e1.printStackTrace();
+    /**
+     * Writes the output of a conversion to an RDF Thrift file. A binary file
+     * has no comments, so the base URI and the ontology of the Turtle header
+     * are written as the triples <code>&lt;baseURI&gt; a owl:Ontology ;
+     * owl:imports &lt;ontURI&gt;</code> at the start of the stream.
+     */
+    void writeThrift(RDFWriter writer, String outputFile, String baseURI) {
+        try (OutputStream out = new BufferedOutputStream(openOutput(outputFile), 1 << 16)) {
+            Node ontology = NodeFactory.createURI(baseURI);
+            StreamRDF thrift = new StreamRDFWrapper(new StreamRDF2Thrift(out, true)) {
+                @Override
+                public void start() {
+                    super.start();
+                    super.triple(Triple.create(ontology, RDF.type.asNode(), OWL.Ontology.asNode()));
+                    super.triple(Triple.create(ontology, OWL.imports.asNode(), NodeFactory.createURI(ontURI)));
+                }
+            };
+            LOG.info("Started parsing stream");
+            writer.parseModelToStreamRdf(thrift);
+            LOG.info("Finished!!");
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Could not write output %s: %s", outputFile, e.getMessage()));
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void convert(String ifcFile, String outputFile, String baseURI) throws IOException {
-        convert(ifcFile, baseURI, writer -> {
-            try (FileOutputStream out = new FileOutputStream(outputFile)) {
-                String s = "# baseURI: " + baseURI;
-                s += "\r\n# imports: " + ontURI + "\r\n\r\n";
-                out.write(s.getBytes());
-                LOG.info("Started parsing stream");
-                writer.parseModelToOutputStream(out);
-                LOG.info("Finished!!");
-            } catch (Exception e) {
-                throw new RuntimeException(String.format("Could not write output %s: %s", outputFile, e.getMessage()));
-            }
-        });
+    /**
+     * Opens an output file, which is compressed with gzip on all processors
+     * when its name ends with .gz.
+     */
+    private static OutputStream openOutput(String outputFile) throws IOException {
+        if (outputFile.endsWith(".gz"))
+            return new ParallelGzipOutputStream(new File(outputFile));
+        return new FileOutputStream(outputFile);
     }
 
     public void convert(String ifcFile, String baseURI, Consumer<RDFWriter> handler) {
         // CONVERSION
-        OntModel om = readOntology();
-        try (InputStream in = new FileInputStream(ifcFile)) {
-            RDFWriter conv = new RDFWriter(om, in, baseURI, ent, typ, ontURI);
+        try {
+            RDFWriter conv;
+            if (useReasoner)
+                conv = new RDFWriter(readInferencingOntology(), SpfSource.of(new File(ifcFile)), baseURI, ent, typ, ontURI);
+            else
+                conv = schema.createWriter(SpfSource.of(new File(ifcFile)), baseURI);
             conv.setRemoveDuplicates(removeDuplicates);
+            conv.setParallelism(parallelism);
+            conv.setStreaming(streaming);
+            conv.setValueCacheSize(valueCacheSize);
             LOG.info("Started parsing stream");
             handler.accept(conv);
             LOG.info("Finished!!");
@@ -364,7 +501,66 @@ public class IfcSpfReader {
         });
     }
 
-    private OntModel readOntology() {
+    /**
+     * Writes the changes between the conversions of two revisions of a model
+     * to an RDF Patch file: a transaction that deletes the triples of the old
+     * revision that are gone and adds those of the new revision.
+     *
+     * @see #convertDelta(String, String, String, StreamRDF, StreamRDF)
+     */
+    public void convertDelta(String oldIfcFile, String ifcFile, String patchFile, String baseURI) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(openOutput(patchFile), StandardCharsets.UTF_8), 1 << 16)) {
+            out.write("TX .\n");
+            convertDelta(oldIfcFile, ifcFile, baseURI, patchStream(out, "D "), patchStream(out, "A "));
+            out.write("TC .\n");
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static StreamRDF patchStream(Writer out, String operation) {
+        return new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                try {
+                    out.write(operation);
+                    out.write(NodeFmtLib.str(triple));
+                    out.write(" .\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Converts the changes between two revisions of the same model, which
+     * must have been set up with {@link #setup(String)} for the new revision.
+     * Entities are matched across the revisions by GlobalId, or by content
+     * for those that have none, and keep the IRIs they had in the old
+     * revision. The triples that are gone are written to <code>removed</code>
+     * and then the new ones to <code>added</code>.
+     * <p>
+     * Without a {@link #setNumberingFile numbering file} the changes apply to
+     * the conversion of the old revision. Both revisions are converted in
+     * memory, with duplicates removed if that is set.
+     */
+    public void convertDelta(String oldIfcFile, String ifcFile, String baseURI, StreamRDF removed, StreamRDF added) throws IOException {
+        String oldExp = getExpressSchema(oldIfcFile);
+        if (!oldExp.equals(exp)) {
+            LOG.error("*ERROR 27*: " + oldIfcFile + " has schema " + oldExp + " and " + ifcFile + " has schema " + exp
+                    + ", changes can only be converted between revisions of the same schema.");
+            return;
+        }
+        int[] oldNumbering = null;
+        if (numberingFile != null && numberingFile.exists())
+            oldNumbering = DeltaConverter.readNumbering(numberingFile);
+        int[] numbering = new DeltaConverter(this, baseURI).convert(oldIfcFile, oldNumbering, ifcFile, removed, added);
+        if (numbering != null && numberingFile != null)
+            DeltaConverter.writeNumbering(numbering, numberingFile);
+    }
+
+    private OntModel readInferencingOntology() {
         OntModel om = null;
         in = null;
         HttpOp.setDefaultHttpClient(HttpClientBuilder.create().useSystemProperties().build());
@@ -380,6 +576,85 @@ public class IfcSpfReader {
         removeDuplicates = val;
     }
 
+    public boolean isRemoveDuplicates() {
+        return removeDuplicates;
+    }
+
+    /**
+     * Sets the file that keeps the numbers of the IRIs in the store for
+     * {@link #convertDelta}. It maps the numbers of the conversion of the old
+     * revision to those in the store and is replaced by the numbering of the
+     * new revision once the changes are written, so keep a copy until the
+     * patch has been applied. Without the file, the store is taken to hold
+     * the conversion of the old revision as it is.
+     */
+    public void setNumberingFile(File numberingFile) {
+        this.numberingFile = numberingFile;
+    }
+
+    /**
+     * Sets the number of threads used to parse the DATA section of a file.
+     * The output does not depend on this value.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Reads the ontology into an OntModel with a transitive reasoner, as
+     * before version 0.5, instead of into a plain Model. The output is the
+     * same; this is slower and downloads the imported ontologies.
+     */
+    public void setUseReasoner(boolean useReasoner) {
+        this.useReasoner = useReasoner;
+    }
+
+    public boolean isUseReasoner() {
+        return useReasoner;
+    }
+
+    /**
+     * Converts files in two passes without keeping the parsed entities in
+     * memory, for models that are too large for the heap.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Caps the memory, in bytes, of the table of value nodes that are written
+     * once and then referenced; see {@link RDFWriter#setValueCacheSize}. With
+     * a cap the output may hold several nodes with the same value. 0, the
+     * default, means no cap.
+     */
+    public void setValueCacheSize(long valueCacheSize) {
+        this.valueCacheSize = valueCacheSize;
+    }
+
+    public long getValueCacheSize() {
+        return valueCacheSize;
+    }
+
+    /**
+     * Sets the format of the files written by
+     * {@link #convert(String, String, String)}, Turtle by default.
+     */
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
     public Map<String, EntityVO> getEntityMap() {
         return ent;
     }
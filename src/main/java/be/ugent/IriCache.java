@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+
+/**
+ * Creates the resources of the entities and generated resources of one
+ * conversion, e.g. inst:IfcWall_12, from the base URI, a class name and a
+ * number.
+ * <p>
+ * The start of the IRI, the base URI and the class name followed by
+ * <code>_</code>, is made once per class, so that an IRI is that start and
+ * the digits of the number. The resources of recently used numbers are kept
+ * in a small table and returned again: an entity that is referenced by many
+ * others, such as an owner history or a placement, is then one resource and
+ * one node, which writers that cache encoded nodes by identity write as a
+ * whole.
+ */
+final class IriCache {
+
+    private static final int CACHE_SIZE = 1 << 12;
+
+    private final String baseURI;
+    private final Map<String, String> prefixes = new HashMap<>();
+    private final Map<AttributeTable.Range, String> rangePrefixes = new IdentityHashMap<>();
+    private final StringBuilder builder = new StringBuilder();
+    // the recently created resources by start of the IRI and number
+    private final String[] cachedPrefixes = new String[CACHE_SIZE];
+    private final long[] cachedNumbers = new long[CACHE_SIZE];
+    private final Resource[] cachedResources = new Resource[CACHE_SIZE];
+
+    IriCache(String baseURI) {
+        this.baseURI = baseURI;
+    }
+
+    /**
+     * @return the resource with the given number of a class, e.g. IfcWall
+     */
+    Resource get(String className, long number) {
+        String prefix = prefixes.get(className);
+        if (prefix == null) {
+            prefix = baseURI + className + "_";
+            prefixes.put(className, prefix);
+        }
+        return getWithPrefix(prefix, number);
+    }
+
+    /**
+     * @return the resource with the given number of the class of a range
+     */
+    Resource get(AttributeTable.Range range, long number) {
+        String prefix = rangePrefixes.get(range);
+        if (prefix == null) {
+            prefix = baseURI + range.getResource().getLocalName() + "_";
+            rangePrefixes.put(range, prefix);
+        }
+        return getWithPrefix(prefix, number);
+    }
+
+    private Resource getWithPrefix(String prefix, long number) {
+        int slot = (int) ((number * 0x9E3779B97F4A7C15L) >>> 40 ^ prefix.hashCode()) & (CACHE_SIZE - 1);
+        if (cachedPrefixes[slot] == prefix && cachedNumbers[slot] == number)
+            return cachedResources[slot];
+        builder.setLength(0);
+        Resource resource = ResourceFactory.createResource(builder.append(prefix).append(number).toString());
+        cachedPrefixes[slot] = prefix;
+        cachedNumbers[slot] = number;
+        cachedResources[slot] = resource;
+        return resource;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Writes triples as N-Triples, or as N-Quads when a graph name is given,
+ * straight into a byte array that is written to a channel when it is full.
+ * <p>
+ * Terms are encoded to UTF-8 while they are copied into the array, without
+ * formatting them to a String first. RDFWriter reuses the nodes of the
+ * ontology and of the resource it is writing for many triples, so the
+ * encoded IRIs of recently written nodes are kept by identity and copied
+ * as a whole when the same node is written again. Other IRIs that start with
+ * a namespace of a {@link #prefix prefix}, such as those of the entities,
+ * have the namespace copied as encoded bytes and only the rest encoded.
+ * <p>
+ * The channel is not closed by {@link #finish()}.
+ */
+public class NTriplesChannelWriter implements StreamRDF {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int CACHE_SIZE = 1 << 12;
+    private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+
+    private final WritableByteChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int flushes = 0;
+    private final byte[] encodedGraph;
+    private final Map<String, byte[]> datatypes = new HashMap<>();
+    // the namespaces of the prefixes and their encoded bytes, with '<'
+    private String[] namespaces = new String[0];
+    private byte[][] encodedNamespaces = new byte[0][];
+    // the encoded IRIs of recently written nodes, by identity
+    private final Node[] cachedNodes = new Node[CACHE_SIZE];
+    private final byte[][] cachedBytes = new byte[CACHE_SIZE][];
+    private long bytesWritten = 0;
+
+    /**
+     * @param graph the graph name of N-Quads, or null for N-Triples
+     */
+    public NTriplesChannelWriter(WritableByteChannel channel, Node graph) {
+        this.channel = channel;
+        this.encodedGraph = graph == null ? null : ("<" + graph.getURI() + ">").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        writeNode(triple.getSubject());
+        buffer[position++] = (byte) ' ';
+        writeNode(triple.getPredicate());
+        buffer[position++] = (byte) ' ';
+        writeNode(triple.getObject());
+        if (encodedGraph != null) {
+            buffer[position++] = (byte) ' ';
+            write(encodedGraph);
+        }
+        endStatement();
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        writeNode(quad.getSubject());
+        buffer[position++] = (byte) ' ';
+        writeNode(quad.getPredicate());
+        buffer[position++] = (byte) ' ';
+        writeNode(quad.getObject());
+        if (!quad.isDefaultGraph()) {
+            buffer[position++] = (byte) ' ';
+            writeNode(quad.getGraph());
+        }
+        endStatement();
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    /**
+     * Remembers the namespace of a prefix; N-Triples has no prefixes, but the
+     * namespace needs to be encoded only once.
+     */
+    @Override
+    public void prefix(String prefix, String iri) {
+        if (iri.isEmpty() || Arrays.asList(namespaces).contains(iri))
+            return;
+        namespaces = Arrays.copyOf(namespaces, namespaces.length + 1);
+        namespaces[namespaces.length - 1] = iri;
+        encodedNamespaces = Arrays.copyOf(encodedNamespaces, encodedNamespaces.length + 1);
+        encodedNamespaces[encodedNamespaces.length - 1] = ("<" + iri).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes what is left in the buffer to the channel.
+     */
+    @Override
+    public void finish() {
+        flush();
+    }
+
+    /**
+     * @return the number of bytes written to the channel
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void endStatement() {
+        ensure(3);
+        buffer[position++] = (byte) ' ';
+        buffer[position++] = (byte) '.';
+        buffer[position++] = (byte) '\n';
+    }
+
+    private void writeNode(Node node) {
+        if (node.isURI()) {
+            int slot = System.identityHashCode(node) & (CACHE_SIZE - 1);
+            if (cachedNodes[slot] == node) {
+                write(cachedBytes[slot]);
+            } else {
+                int start = position;
+                int flushed = flushes;
+                String uri = node.getURI();
+                int namespace = findNamespace(uri);
+                if (namespace < 0) {
+                    ensure(1);
+                    buffer[position++] = (byte) '<';
+                    writeUTF8(uri, 0, uri.length(), false);
+                } else {
+                    write(encodedNamespaces[namespace]);
+                    writeUTF8(uri, namespaces[namespace].length(), uri.length(), false);
+                }
+                ensure(1);
+                buffer[position++] = (byte) '>';
+                // not kept when the array was flushed in between
+                if (flushes == flushed) {
+                    cachedNodes[slot] = node;
+                    cachedBytes[slot] = Arrays.copyOfRange(buffer, start, position);
+                }
+            }
+        } else if (node.isLiteral()) {
+            ensure(1);
+            buffer[position++] = (byte) '"';
+            String lexicalForm = node.getLiteralLexicalForm();
+            writeUTF8(lexicalForm, 0, lexicalForm.length(), true);
+            ensure(1);
+            buffer[position++] = (byte) '"';
+            String language = node.getLiteralLanguage();
+            if (language != null && !language.isEmpty()) {
+                ensure(1);
+                buffer[position++] = (byte) '@';
+                writeUTF8(language, 0, language.length(), false);
+            } else {
+                String datatype = node.getLiteralDatatypeURI();
+                if (datatype != null && !datatype.equals(XSD_STRING)) {
+                    ensure(2);
+                    buffer[position++] = (byte) '^';
+                    buffer[position++] = (byte) '^';
+                    write(datatypes.computeIfAbsent(datatype, uri -> ("<" + uri + ">").getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+        } else if (node.isBlank()) {
+            String label = "_:" + NodeFmtLib.encodeBNodeLabel(node.getBlankNodeLabel());
+            writeUTF8(label, 0, label.length(), false);
+        } else {
+            throw new IllegalArgumentException("Cannot write " + node + " in N-Triples");
+        }
+        // room for the separator or the end of the statement
+        ensure(4);
+    }
+
+    /**
+     * @return the index of the longest namespace that the IRI starts with,
+     * or -1
+     */
+    private int findNamespace(String uri) {
+        int found = -1;
+        for (int i = 0; i < namespaces.length; i++) {
+            if (uri.startsWith(namespaces[i]) && (found < 0 || namespaces[i].length() > namespaces[found].length()))
+                found = i;
+        }
+        return found;
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        if (bytes.length > buffer.length) {
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    /**
+     * Writes characters as UTF-8, escaping what N-Triples requires in a
+     * string literal when escape is true.
+     */
+    private void writeUTF8(String s, int from, int to, boolean escape) {
+        int length = to - from;
+        int i = 0;
+        // plain ASCII is copied without checking the room for every character
+        if (length <= buffer.length) {
+            ensure(length);
+            byte[] bytes = buffer;
+            int p = position;
+            for (; i < length; i++) {
+                char ch = s.charAt(from + i);
+                if (ch >= 0x80 || escape && (ch == '"' || ch == '\\' || ch == '\n' || ch == '\r'))
+                    break;
+                bytes[p++] = (byte) ch;
+            }
+            position = p;
+        }
+        for (; i < length; i++) {
+            char ch = s.charAt(from + i);
+            if (position > buffer.length - 6)
+                flush();
+            if (ch < 0x80) {
+                if (escape) {
+                    switch (ch) {
+                        case '"':
+                        case '\\':
+                            buffer[position++] = (byte) '\\';
+                            buffer[position++] = (byte) ch;
+                            continue;
+                        case '\n':
+                            buffer[position++] = (byte) '\\';
+                            buffer[position++] = (byte) 'n';
+                            continue;
+                        case '\r':
+                            buffer[position++] = (byte) '\\';
+                            buffer[position++] = (byte) 'r';
+                            continue;
+                        default:
+                    }
+                }
+                buffer[position++] = (byte) ch;
+            } else if (ch < 0x800) {
+                buffer[position++] = (byte) (0xC0 | ch >> 6);
+                buffer[position++] = (byte) (0x80 | ch & 0x3F);
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(s.charAt(from + i + 1))) {
+                int cp = Character.toCodePoint(ch, s.charAt(from + ++i));
+                buffer[position++] = (byte) (0xF0 | cp >> 18);
+                buffer[position++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(ch)) {
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | ch >> 12);
+                buffer[position++] = (byte) (0x80 | ch >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | ch & 0x3F);
+            }
+        }
+    }
+
+    private void ensure(int length) {
+        if (position > buffer.length - length)
+            flush();
+    }
+
+    private void flush() {
+        writeFully(ByteBuffer.wrap(buffer, 0, position));
+        position = 0;
+        flushes++;
+    }
+
+    private void writeFully(ByteBuffer bytes) {
+        try {
+            while (bytes.hasRemaining())
+                bytesWritten += channel.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
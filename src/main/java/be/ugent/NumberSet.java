@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set of line numbers and numbers of generated resources, one bit per
+ * number, in pages that are allocated on first use, like
+ * {@link EntityTypeTable}. Numbers outside the paged range are kept in a
+ * hash set.
+ */
+public class NumberSet {
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 1 << 20;
+
+    private long[][] pages = new long[16][];
+    private final Set<Long> overflow = new HashSet<>();
+    private long size = 0;
+
+    /**
+     * Adds a number to the set.
+     *
+     * @return true if the set did not contain the number yet
+     */
+    public boolean add(long number) {
+        if (!isPaged(number)) {
+            if (!overflow.add(number))
+                return false;
+            size++;
+            return true;
+        }
+        long[] page = ensurePage((int) (number >>> PAGE_BITS));
+        int slot = (int) (number & PAGE_MASK);
+        long bit = 1L << slot;
+        if ((page[slot >>> 6] & bit) != 0)
+            return false;
+        page[slot >>> 6] |= bit;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long number) {
+        if (!isPaged(number))
+            return overflow.contains(number);
+        int page = (int) (number >>> PAGE_BITS);
+        if (page >= pages.length || pages[page] == null)
+            return false;
+        int slot = (int) (number & PAGE_MASK);
+        return (pages[page][slot >>> 6] & 1L << slot) != 0;
+    }
+
+    /**
+     * @return the number of numbers in the set
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Removes all numbers and frees the pages.
+     */
+    public void clear() {
+        pages = new long[16][];
+        overflow.clear();
+        size = 0;
+    }
+
+    private static boolean isPaged(long number) {
+        return number >= 0 && (number >>> PAGE_BITS) < MAX_PAGES;
+    }
+
+    private long[] ensurePage(int page) {
+        if (page >= pages.length) {
+            int length = pages.length;
+            while (length <= page)
+                length *= 2;
+            long[][] grown = new long[length][];
+            System.arraycopy(pages, 0, grown, 0, pages.length);
+            pages = grown;
+        }
+        if (pages[page] == null)
+            pages[page] = new long[PAGE_SIZE / 64];
+        return pages[page];
+    }
+}
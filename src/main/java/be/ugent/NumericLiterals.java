@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.impl.LiteralLabelFactory;
+
+/**
+ * Reads the REAL and INTEGER values of an SPF file and creates their
+ * xsd:double and xsd:integer literals.
+ * <p>
+ * A literal that is created from its lexical form is validated by Jena with
+ * the Xerces schema validator. The numbers of an SPF file are known to be
+ * numbers, so their literals are created from their value instead; their
+ * lexical form is the canonical form Jena gives to a value, e.g.
+ * <code>1.0</code> for the <code>1.</code> of the file.
+ */
+final class NumericLiterals {
+
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final int MAX_FAST_EXPONENT = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_FAST_EXPONENT + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private NumericLiterals() {
+    }
+
+    /**
+     * Reads a REAL as it is written in an SPF file: an optional sign, digits,
+     * a point, optional digits and an optional exponent. A number with at
+     * most 15 significant digits and an exponent of at most 22 is computed
+     * with one exact multiplication or division, which is correctly rounded;
+     * others are read with {@link Double#parseDouble(String)}.
+     *
+     * @return the value, or NaN when the text is not a number of that form
+     */
+    static double parseReal(CharSequence text) {
+        int n = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < n && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean exact = true;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < n; i++) {
+            char ch = text.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && ch == '0') {
+                    // leading zeros are not significant
+                } else if (digits < MAX_FAST_DIGITS) {
+                    mantissa = mantissa * 10 + (ch - '0');
+                    digits++;
+                } else {
+                    exact = false;
+                }
+                if (seenPoint)
+                    scale--;
+            } else if (ch == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit)
+            return Double.NaN;
+        if (i < n) {
+            char ch = text.charAt(i);
+            if (ch != 'E' && ch != 'e')
+                return Double.NaN;
+            i++;
+            boolean negativeExponent = false;
+            if (i < n && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                negativeExponent = text.charAt(i) == '-';
+                i++;
+            }
+            if (i == n)
+                return Double.NaN;
+            int exponent = 0;
+            for (; i < n; i++) {
+                ch = text.charAt(i);
+                if (ch < '0' || ch > '9')
+                    return Double.NaN;
+                if (exponent < 10_000)
+                    exponent = exponent * 10 + (ch - '0');
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (exact && (mantissa == 0 || Math.abs(scale) <= MAX_FAST_EXPONENT)) {
+            double value = mantissa;
+            if (mantissa != 0)
+                value = scale < 0 ? value / POWERS_OF_TEN[-scale] : value * POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(text.toString());
+    }
+
+    /**
+     * @return an xsd:double literal, or null if the text is not a REAL
+     */
+    static Node doubleLiteral(CharSequence text) {
+        double value = parseReal(text);
+        if (Double.isNaN(value))
+            return null;
+        return doubleLiteral(value);
+    }
+
+    /**
+     * @return the xsd:double literal of a value
+     */
+    static Node doubleLiteral(double value) {
+        return NodeFactory.createLiteral(LiteralLabelFactory.createByValue(value, "", XSDDatatype.XSDdouble));
+    }
+
+    /**
+     * @return an xsd:integer literal, or null if the text is not an INTEGER
+     * that fits in a long
+     */
+    static Node integerLiteral(String text) {
+        long value;
+        try {
+            value = Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return integerLiteral(value);
+    }
+
+    /**
+     * @return the xsd:integer literal of a value
+     */
+    static Node integerLiteral(long value) {
+        // the type Jena parses an integer of this size into
+        Object boxed = value == (int) value ? (Object) (int) value : (Object) value;
+        return NodeFactory.createLiteral(LiteralLabelFactory.createByValue(boxed, "", XSDDatatype.XSDinteger));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+/**
+ * The formats a conversion can be written in.
+ */
+public enum OutputFormat {
+
+    /**
+     * Turtle, written in blocks by Jena, with a header comment.
+     */
+    TURTLE("ttl"),
+    /**
+     * N-Triples, written straight to the file by {@link NTriplesChannelWriter}.
+     */
+    NTRIPLES("nt"),
+    /**
+     * N-Quads with the base URI as graph name, written straight to the file
+     * by {@link NTriplesChannelWriter}.
+     */
+    NQUADS("nq"),
+    /**
+     * Jena's binary RDF Thrift, with numbers encoded as values. The header of
+     * the Turtle output is written as triples of the ontology of the base URI.
+     */
+    THRIFT("trdf");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return the file extension without the dot, which is also the name of
+     * the format on the command line
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return the format of a file name by its extension, ignoring a
+     * <code>.gz</code> after it, or null
+     */
+    public static OutputFormat forFileName(String fileName) {
+        if (fileName.endsWith(".gz"))
+            fileName = fileName.substring(0, fileName.length() - 3);
+        return forExtension(fileName.substring(fileName.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * @return the format with a file extension, or null
+     */
+    public static OutputFormat forExtension(String extension) {
+        for (OutputFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(extension))
+                return format;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a gzip file whose blocks are compressed on several threads, in the
+ * way of pigz.
+ * <p>
+ * The input is cut into blocks of 128 KB. Every block is compressed by its
+ * own {@link Deflater} with the last 32 KB of the block before it as preset
+ * dictionary, so the compression ratio stays close to that of a single
+ * stream, and ends with a sync flush on a byte boundary. The compressed blocks
+ * are written in order, so together they form one deflate stream that any gzip
+ * reader can read. The CRC of the file is computed on the calling thread,
+ * which is much faster than compression.
+ * <p>
+ * At most two blocks per thread are compressed or waiting to be written,
+ * which bounds the memory use when the output is slower than the writer.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final String name;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final ThreadLocal<Deflater> deflaters;
+    // the deflaters of all threads, which are ended when the stream is closed
+    private final List<Deflater> allDeflaters = Collections.synchronizedList(new ArrayList<>());
+    private final Queue<Future<byte[]>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int position = 0;
+    private byte[] previous = null;
+    private long size = 0;
+    private boolean closed = false;
+
+    public ParallelGzipOutputStream(OutputStream out) throws IOException {
+        this(out, Runtime.getRuntime().availableProcessors(), Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Writes a gzip file, which is named in the errors of the stream.
+     */
+    public ParallelGzipOutputStream(File file) throws IOException {
+        this(new FileOutputStream(file), file.getPath(), Runtime.getRuntime().availableProcessors(),
+                Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param threads the number of threads that compress blocks
+     * @param level   the compression level of {@link Deflater}
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads, int level) throws IOException {
+        this(out, "the gzip stream", threads, level);
+    }
+
+    private ParallelGzipOutputStream(OutputStream out, String name, int threads, int level) throws IOException {
+        this.out = out;
+        this.name = name;
+        this.maxPending = 2 * Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deflaters = ThreadLocal.withInitial(() -> {
+            Deflater deflater = new Deflater(level, true);
+            allDeflaters.add(deflater);
+            return deflater;
+        });
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == BLOCK_SIZE)
+            submit(false);
+        block[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == BLOCK_SIZE)
+                submit(false);
+            int n = Math.min(len, BLOCK_SIZE - position);
+            System.arraycopy(b, off, block, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Compresses the last block, writes the trailer, stops the threads and
+     * closes the underlying stream.
+     *
+     * @throws IOException if the last blocks or the trailer could not be
+     * written, so that the file is incomplete
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            submit(true);
+            while (!pending.isEmpty())
+                writeBlock(pending.remove());
+            writeInt((int) crc.getValue());
+            writeInt((int) size);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Could not finish " + name + ", it is incomplete", e);
+        } finally {
+            stop();
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new IOException("Could not close " + name, e);
+            }
+        }
+    }
+
+    /**
+     * Stops the threads and frees the native memory of their deflaters. If the
+     * threads do not stop, the deflaters are left to the garbage collector.
+     */
+    private void stop() {
+        executor.shutdownNow();
+        try {
+            // a block that is still being compressed uses its deflater
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+                return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (allDeflaters) {
+            for (Deflater deflater : allDeflaters)
+                deflater.end();
+            allDeflaters.clear();
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        byte[] input = block;
+        int length = position;
+        byte[] dictionary = previous;
+        crc.update(input, 0, length);
+        size += length;
+        pending.add(executor.submit(() -> compress(input, length, dictionary, last)));
+        previous = input;
+        block = new byte[BLOCK_SIZE];
+        position = 0;
+        while (pending.size() >= maxPending)
+            writeBlock(pending.remove());
+    }
+
+    private byte[] compress(byte[] input, int length, byte[] dictionary, boolean last) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if (dictionary != null)
+            deflater.setDictionary(dictionary, BLOCK_SIZE - DICTIONARY_SIZE, DICTIONARY_SIZE);
+        deflater.setInput(input, 0, length);
+        byte[] output = new byte[length / 2 + 64];
+        int n = 0;
+        if (last) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (n == output.length)
+                    output = Arrays.copyOf(output, output.length * 2);
+                n += deflater.deflate(output, n, output.length - n);
+            }
+        } else {
+            // a full output array means the flush is not complete yet
+            while (true) {
+                n += deflater.deflate(output, n, output.length - n, Deflater.SYNC_FLUSH);
+                if (n < output.length)
+                    break;
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+        }
+        return Arrays.copyOf(output, n);
+    }
+
+    private void writeBlock(Future<byte[]> future) throws IOException {
+        try {
+            out.write(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress a block", e.getCause());
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
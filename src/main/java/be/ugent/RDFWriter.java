@@ -17,35 +17,29 @@ package be.ugent;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jena.datatypes.xsd.XSDDatatype;
 import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
-import org.apache.jena.ontology.OntClass;
-import org.apache.jena.ontology.OntModel;
-import org.apache.jena.ontology.OntProperty;
-import org.apache.jena.ontology.OntResource;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
 import org.apache.jena.riot.system.StreamRDFWriter;
 import org.apache.jena.sparql.util.Context;
-import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDF;
-import org.apache.jena.vocabulary.RDFS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.buildingsmart.tech.ifcowl.ExpressReader;
 import com.buildingsmart.tech.ifcowl.vo.EntityVO;
-import com.buildingsmart.tech.ifcowl.vo.IFCVO;
 import com.buildingsmart.tech.ifcowl.vo.TypeVO;
 
 import fi.ni.rdf.Namespace;
@@ -59,39 +53,76 @@ public class RDFWriter {
     private static final String EXPRESS_NS = EXPRESS_URI + "#";
     private static final String LIST_URI = "https://w3id.org/list";
     private static final String LIST_NS = LIST_URI + "#";
+    private static final Literal BOOLEAN_FALSE = ResourceFactory.createTypedLiteral("false", XSDDatatype.XSDboolean);
+    private static final Literal BOOLEAN_TRUE = ResourceFactory.createTypedLiteral("true", XSDDatatype.XSDboolean);
+    private static final Resource LOGICAL_FALSE = ResourceFactory.createResource(EXPRESS_NS + "FALSE");
+    private static final Resource LOGICAL_TRUE = ResourceFactory.createResource(EXPRESS_NS + "TRUE");
+    private static final Resource LOGICAL_UNKNOWN = ResourceFactory.createResource(EXPRESS_NS + "UNKNOWN");
 
     //data from conversion
     private int idCounter = 0;
-    private Map<Long, IFCVO> linemap = new HashMap<>();
+    private EntityStore<IfcInstance> linemap = new EntityStore<>();
 
     // EXPRESS basis
     private final Map<String, EntityVO> ent;
     private final Map<String, TypeVO> typ;
 
     private StreamRDF ttlWriter;
-    private InputStream inputStream;
-    private final OntModel ontModel;
-
-    // for removing duplicates in line entries
-    private Map<String, Resource> listOfUniqueResources = new HashMap<>();
+    private final SpfSource source;
+    private final Model ontModel;
+    private AttributeTable attributes;
 
     // Taking care of avoiding duplicate resources
-    private Map<String, Resource> propertyResourceMap = new HashMap<>();
-    private Map<String, Resource> resourceMap = new HashMap<>();
+    private long valueCacheSize = 0;
+    private ValueNodeCache valueNodes;
+    private IriCache iris;
+    // the numbers of the resources whose rdf:type is written
+    private NumberSet emitted = new NumberSet();
+
+    private long tripleCount = 0;
+    // reused to decode string values
+    private final StringBuilder literalBuilder = new StringBuilder();
 
     private boolean removeDuplicates = false;
+    private int parallelism = 1;
+    private boolean streaming = false;
+    // the entity names of the file, only set while converting in streaming mode
+    private EntityTypeTable typeTable;
+    // a model that was read before the conversion, instead of the source
+    private IfcSpfParser parser;
 
     private static final Logger LOG = LoggerFactory.getLogger(RDFWriter.class);
 
-    public RDFWriter(OntModel ontModel, InputStream inputStream, String baseURI, Map<String, EntityVO> ent, Map<String, TypeVO> typ, String ontURI) {
+    // the keys of the EXPRESS maps by entity name, shared by all conversions
+    private static final Map<String, String> CLASS_NAMES = new ConcurrentHashMap<>();
+
+    public RDFWriter(Model ontModel, InputStream inputStream, String baseURI, Map<String, EntityVO> ent, Map<String, TypeVO> typ, String ontURI) {
+        this(ontModel, SpfSource.of(inputStream), baseURI, ent, typ, ontURI);
+    }
+
+    /**
+     * @param ontModel the ontology, which may be null when the table of the
+     *                 ontology is given with {@link #setAttributeTable}
+     * @param source   the input, which must be reopenable for the streaming
+     *                 mode
+     */
+    public RDFWriter(Model ontModel, SpfSource source, String baseURI, Map<String, EntityVO> ent, Map<String, TypeVO> typ, String ontURI) {
         this.ontModel = ontModel;
-        this.inputStream = inputStream;
+        this.source = source;
         this.baseURI = baseURI;
         this.ent = ent;
         this.typ = typ;
         this.ontNS = ontURI + "#";
     }
 
+    /**
+     * Uses a table of the ontology that was built before, instead of building
+     * one for this conversion. The table must belong to the same ontology.
+     */
+    public void setAttributeTable(AttributeTable attributes) {
+        this.attributes = attributes;
+    }
+
     public void parseModelToOutputStream(OutputStream out) throws IOException {
         // CHANGED:  Jena  3.16.0    JO: 2020, added Context.emptyContext
         ttlWriter = StreamRDFWriter.getWriterStream(out, RDFFormat.TURTLE_BLOCKS, Context.emptyContext);
@@ -108,7 +139,31 @@ public class RDFWriter {
         parseModelToOutputStream();
     }
 
+    /**
+     * Converts a model that was already read, and possibly had its duplicates
+     * removed, instead of reading the source again. The linemap of the parser
+     * is cleared by the conversion.
+     */
+    void setParser(IfcSpfParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @return the number of triples written by the last conversion
+     */
+    public long getTripleCount() {
+        return tripleCount;
+    }
+
     private void parseModelToOutputStream() throws IOException {
+        tripleCount = 0;
+        ttlWriter = new StreamRDFWrapper(ttlWriter) {
+            @Override
+            public void triple(Triple triple) {
+                tripleCount++;
+                super.triple(triple);
+            }
+        };
         ttlWriter.base(baseURI);
         ttlWriter.prefix("ifc", ontNS);
         ttlWriter.prefix("inst", baseURI);
@@ -118,20 +173,37 @@ public class RDFWriter {
         ttlWriter.prefix("xsd", Namespace.XSD);
         ttlWriter.prefix("owl", Namespace.OWL);
         ttlWriter.start();
-        ttlWriter.triple(new Triple(NodeFactory.createURI(baseURI), RDF.type.asNode(), OWL.Ontology.asNode()));
-        ttlWriter.triple(new Triple(NodeFactory.createURI(baseURI), OWL.imports.asNode(), NodeFactory.createURI(ontNS)));
-        IfcSpfParser parser = new IfcSpfParser(inputStream);
-        // Read the whole file into a linemap Map object
-        parser.readModel();
-        LOG.info("Model parsed");
-        if (removeDuplicates) {
-            parser.resolveDuplicates();
+        if (attributes == null)
+            attributes = new AttributeTable(ontModel, ent, typ, ontNS);
+        valueNodes = new ValueNodeCache(valueCacheSize);
+        iris = new IriCache(baseURI);
+        IfcSpfParser parser = this.parser;
+        this.parser = null;
+        if (parser == null) {
+            if (streaming && source.isReopenable()) {
+                parseModelStreaming();
+                return;
+            }
+            if (streaming)
+                LOG.warn("*WARNING 41*: The input can only be read once, converting it in memory instead of streaming.");
+            parser = new IfcSpfParser(source.open());
+            parser.setParallelism(parallelism);
+            // Read the whole file into a linemap Map object
+            parser.readModel();
+            LOG.info("Model parsed");
+            if (removeDuplicates) {
+                parser.resolveDuplicates();
+            }
         }
         // map entries of the linemap Map object to the ontology Model and make
         // new instances in the model
         boolean parsedSuccessfully = parser.mapEntries();
-        if (!parsedSuccessfully)
+        if (!parsedSuccessfully) {
+            ttlWriter.finish();
             return;
+        }
+        ttlWriter.triple(new Triple(NodeFactory.createURI(baseURI), RDF.type.asNode(), OWL.Ontology.asNode()));
+        ttlWriter.triple(new Triple(NodeFactory.createURI(baseURI), OWL.imports.asNode(), NodeFactory.createURI(ontNS)));
         //recover data from parser
         idCounter = parser.getIdCounter();
         idCounter++;
@@ -141,46 +213,124 @@ public class RDFWriter {
         // Save memory
         linemap.clear();
         linemap = null;
+        emitted.clear();
         ttlWriter.finish();
     }
 
+    /**
+     * Converts the input in two passes over the file. The first pass only
+     * records the entity name of every line number and which line numbers are
+     * referenced; the second pass parses the file again and writes the triples
+     * of every entity as soon as it is read. The parsed entities are never
+     * kept, so the memory use grows with the number of entities (a few bytes
+     * each) and not with the size of the file.
+     * <p>
+     * Entities are converted in file order rather than in line number order,
+     * and duplicates are not removed.
+     */
+    private void parseModelStreaming() throws IOException {
+        if (removeDuplicates)
+            LOG.warn("*WARNING 42*: Duplicates are not removed when converting in streaming mode.");
+        EntityTypeTable table = new EntityTypeTable();
+        IfcSpfParser parser = new IfcSpfParser(source.open());
+        parser.readModel(instance -> {
+            table.put(instance.getLineNum(), instance.getName());
+            markReferences(table, instance.getValues());
+        });
+        LOG.info("Model scanned, " + table.size() + " entities");
+        Long missing = table.findMissingReference();
+        if (missing != null) {
+            LOG.error("*ERROR 6*: Reference to non-existing line number: #" + missing);
+            ttlWriter.finish();
+            return;
+        }
+        ttlWriter.triple(new Triple(NodeFactory.createURI(baseURI), RDF.type.asNode(), OWL.Ontology.asNode()));
+        ttlWriter.triple(new Triple(NodeFactory.createURI(baseURI), OWL.imports.asNode(), NodeFactory.createURI(ontNS)));
+        idCounter = parser.getIdCounter();
+        idCounter++;
+        typeTable = table;
+        try {
+            boolean[] failed = new boolean[1];
+            new IfcSpfParser(source.open()).readModel(instance -> {
+                if (failed[0])
+                    return;
+                try {
+                    failed[0] = !createInstance(instance);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            typeTable = null;
+        }
+        releaseValueNodes();
+        ttlWriter.finish();
+    }
+
+    private static void markReferences(EntityTypeTable table, ValueList values) {
+        for (int i = 0; i < values.size(); i++) {
+            if (values.getKind(i) == ValueList.REFERENCE)
+                table.markReferenced(values.getReference(i));
+            else if (values.getKind(i) == ValueList.LIST)
+                markReferences(table, values.getList(i));
+        }
+    }
+
     private void createInstances() throws IOException {
         LOG.info("size : " + ent.entrySet().size());
-        for (Map.Entry<Long, IFCVO> entry : linemap.entrySet()) {
-            IFCVO ifcLineEntry = entry.getValue();
-            String typeName = "";
-            if (ent.containsKey(ifcLineEntry.getName()))
-                typeName = ent.get(ifcLineEntry.getName()).getName();
-            else if (typ.containsKey(ifcLineEntry.getName()))
-                typeName = typ.get(ifcLineEntry.getName()).getName();
-
-            OntClass cl = ontModel.getOntClass(ontNS + typeName);
-
-            Resource r = getResource(baseURI + typeName + "_" + ifcLineEntry.getLineNum(), cl);
-            if (r == null) {
+        for (IfcInstance ifcLineEntry : linemap) {
+            if (!createInstance(ifcLineEntry)) {
                 // *ERROR 2 already hit: we can safely stop
                 return;
             }
-            listOfUniqueResources.put(ifcLineEntry.getFullLineAfterNum(), r);
+        }
+        // The value nodes are used only to avoid duplicates.
+        // So, they can be released here
+        releaseValueNodes();
+    }
 
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("-------------------------------");
-                LOG.debug(r.getLocalName());
-                LOG.debug("-------------------------------");
-            }
-            fillProperties(ifcLineEntry, r);
+    /**
+     * @return false if the instance could not be created and the conversion
+     * should stop
+     */
+    private boolean createInstance(IfcInstance ifcLineEntry) throws IOException {
+        String typeName = "";
+        if (ent.containsKey(ifcLineEntry.getName()))
+            typeName = ent.get(ifcLineEntry.getName()).getName();
+        else if (typ.containsKey(ifcLineEntry.getName()))
+            typeName = typ.get(ifcLineEntry.getName()).getName();
+
+        Resource r = getResource(typeName, ifcLineEntry.getLineNum(), getSchemaClass(typeName));
+        if (r == null)
+            return false;
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("-------------------------------");
+            LOG.debug(r.getLocalName());
+            LOG.debug("-------------------------------");
         }
-        // The map is used only to avoid duplicates.
-        // So, it can be cleared here
-        propertyResourceMap.clear();
+        fillProperties(ifcLineEntry, r);
+        return true;
+    }
+
+    /**
+     * @return the entity of a line number; in streaming mode only its line
+     * number and name are known
+     */
+    private IfcInstance getInstance(long lineNum) {
+        if (typeTable != null)
+            return new IfcInstance(lineNum, typeTable.getName(lineNum), ValueList.EMPTY);
+        return linemap.get(lineNum);
     }
 
     TypeVO typeRemembrance = null;
 
-    private void fillProperties(IFCVO ifcLineEntry, Resource r) throws IOException {
+    private void fillProperties(IfcInstance ifcLineEntry, Resource r) throws IOException {
 
-        EntityVO evo = ent.get(ExpressReader.formatClassName(ifcLineEntry.getName()));
-        TypeVO tvo = typ.get(ExpressReader.formatClassName(ifcLineEntry.getName()));
+        EntityVO evo = ent.get(formatClassName(ifcLineEntry.getName()));
+        TypeVO tvo = typ.get(formatClassName(ifcLineEntry.getName()));
 
         if (tvo == null && evo == null) {
             // This can actually never happen
@@ -189,56 +339,48 @@ public class RDFWriter {
             LOG.error("ERROR 3*: fillProperties 1 - Type nor entity exists: {}", ifcLineEntry.getName());
         }
 
+        ValueList values = ifcLineEntry.getValues();
         if (evo == null && tvo != null) {
             //working with a TYPE
 
             typeRemembrance = null;
-            for (Object o : ifcLineEntry.getObjectList()) {
-
-                if (Character.class.isInstance(o)) {
-                    if ((Character) o != ',') {
-                        LOG.error("*ERROR 17*: We found a character that is not a comma. That should not be possible!");
-                    }
-                } else if (String.class.isInstance(o)) {
-                    LOG.warn("*WARNING 1*: fillProperties 2: unhandled type property found.");
-                } else if (IFCVO.class.isInstance(o)) {
-                    LOG.warn("*WARNING 2*: fillProperties 2: unhandled type property found.");
-                } else if (LinkedList.class.isInstance(o)) {
+            for (int i = 0; i < values.size(); i++) {
+                byte kind = values.getKind(i);
+                if (kind == ValueList.LIST) {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("fillProperties 3 - fillPropertiesHandleListObject(tvo)");
                     }
-                    fillPropertiesHandleListObject(r, tvo, o);
+                    fillPropertiesHandleListObject(r, tvo, values.getList(i));
+                } else if (kind == ValueList.REFERENCE) {
+                    LOG.warn("*WARNING 2*: fillProperties 2: unhandled type property found.");
+                } else {
+                    LOG.warn("*WARNING 1*: fillProperties 2: unhandled type property found.");
                 }
             }
         }
 
         if (tvo == null && evo != null) {
             //working with an ENTITY
-            final String subject = evo.getName() + "_" + ifcLineEntry.getLineNum();
 
             typeRemembrance = null;
             int attributePointer = 0;
-            for (Object o : ifcLineEntry.getObjectList()) {
-
-                if (Character.class.isInstance(o)) {
-                    if ((Character) o != ',') {
-                        LOG.error("*ERROR 18*: We found a character that is not a comma. That should not be possible!");
-                    }
-                } else if (String.class.isInstance(o)) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("fillProperties 4 - fillPropertiesHandleStringObject(evo)");
-                    }
-                    attributePointer = fillPropertiesHandleStringObject(r, evo, subject, attributePointer, o);
-                } else if (IFCVO.class.isInstance(o)) {
+            for (int i = 0; i < values.size(); i++) {
+                byte kind = values.getKind(i);
+                if (kind == ValueList.REFERENCE) {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("fillProperties 5 - fillPropertiesHandleIfcObject(evo)");
                     }
-                    attributePointer = fillPropertiesHandleIfcObject(r, evo, attributePointer, o);
-                } else if (LinkedList.class.isInstance(o)) {
+                    attributePointer = fillPropertiesHandleIfcObject(r, evo, attributePointer, getInstance(values.getReference(i)));
+                } else if (kind == ValueList.LIST) {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("fillProperties 6 - fillPropertiesHandleListObject(evo)");
                     }
-                    attributePointer = fillPropertiesHandleListObject(r, evo, attributePointer, o);
+                    attributePointer = fillPropertiesHandleListObject(r, evo, attributePointer, values.getList(i));
+                } else {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("fillProperties 4 - fillPropertiesHandleStringObject(evo)");
+                    }
+                    attributePointer = fillPropertiesHandleStringObject(r, evo, attributePointer, values, i);
                 }
             }
         }
@@ -248,67 +390,66 @@ public class RDFWriter {
     // 6 MAIN FILLPROPERTIES METHODS
     // --------------------------------------
 
-    private int fillPropertiesHandleStringObject(Resource r, EntityVO evo, String subject, int attributePointer, Object o) throws IOException {
-        if (!((String) o).equals("$") && !((String) o).equals("*")) {
+    private int fillPropertiesHandleStringObject(Resource r, EntityVO evo, int attributePointer, ValueList values, int index) throws IOException {
+        byte kind = values.getKind(index);
+        if (kind != ValueList.UNSET && kind != ValueList.DERIVED) {
 
-            if (typ.get(ExpressReader.formatClassName((String) o)) == null) {
+            TypeVO t = getType(values, index);
+            if (t == null) {
                 if ((evo != null) && (evo.getDerivedAttributeList() != null)) {
                     if (evo.getDerivedAttributeList().size() <= attributePointer) {
-                        LOG.error("*ERROR 4*: Entity in IFC files has more attributes than it is allowed have: " + subject);
+                        LOG.error("*ERROR 4*: Entity in IFC files has more attributes than it is allowed have: " + r.getLocalName());
                         attributePointer++;
                         return attributePointer;
                     }
 
-                    final String propURI = ontNS + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-                    final String literalString = filterExtras((String) o);
-
-                    OntProperty p = ontModel.getOntProperty(propURI);
-                    OntResource range = p.getRange();
+                    AttributeTable.Attribute attribute = attributes.getAttribute(evo, attributePointer);
+                    Property p = attribute.getProperty();
+                    AttributeTable.Range range = attribute.getRange();
                     if (range.isClass()) {
-                        if (range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "ENUMERATION"))) {
+                        if (range.isEnumeration()) {
                             // Check for ENUM
-                            addEnumProperty(r, p, range, literalString);
-                        } else if (range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "SELECT"))) {
+                            addEnumProperty(r, p, range, getLiteralString(values, index));
+                        } else if (range.isSelect()) {
                             // Check for SELECT
                             if (LOG.isDebugEnabled()) {
                                 LOG.debug("*OK 25*: found subClass of SELECT Class, now doing nothing with it: {} - {} - {}", p,
-                                        range.getLocalName(), literalString);
+                                        range.getResource().getLocalName(), getLiteralString(values, index));
                             }
-                            createLiteralProperty(r, p, range, literalString);
-                        } else if (range.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
+                            createLiteralProperty(r, p, range, values, index);
+                        } else if (range.isList()) {
                             // Check for LIST
                             if (LOG.isDebugEnabled()) {
                                 LOG.debug("*WARNING 5*: found LIST property (but doing nothing with it): {} -- {} - {} - {}",
-                                        new Object[]{subject, p, range.getLocalName(), literalString});
+                                        new Object[]{r.getLocalName(), p, range.getResource().getLocalName(), getLiteralString(values, index)});
                             }
                         } else {
-                            createLiteralProperty(r, p, range, literalString);
+                            createLiteralProperty(r, p, range, values, index);
                         }
                     } else {
-                        LOG.warn("*WARNING 7*: found other kind of property: {} - {}", p, range.getLocalName());
+                        LOG.warn("*WARNING 7*: found other kind of property: {} - {}", p, range.getResource().getLocalName());
                     }
                 } else {
                     LOG.warn("*WARNING 8*: Nothing happened. Not sure if this is good or bad, possible or not.");
                 }
                 attributePointer++;
             } else {
-                typeRemembrance = typ.get(ExpressReader.formatClassName((String) o));
+                typeRemembrance = t;
             }
         } else
             attributePointer++;
         return attributePointer;
     }
 
-    private int fillPropertiesHandleIfcObject(Resource r, EntityVO evo, int attributePointer, Object o) throws IOException {
+    private int fillPropertiesHandleIfcObject(Resource r, EntityVO evo, int attributePointer, IfcInstance o) throws IOException {
         if ((evo != null) && (evo.getDerivedAttributeList() != null) && (evo.getDerivedAttributeList().size() > attributePointer)) {
 
-            final String propURI = ontNS + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-            EntityVO evorange = ent.get(ExpressReader.formatClassName(((IFCVO) o).getName()));
+            EntityVO evorange = ent.get(formatClassName(o.getName()));
 
-            OntProperty p = ontModel.getOntProperty(propURI);
-            OntResource rclass = ontModel.getOntResource(ontNS + evorange.getName());
+            Property p = attributes.getAttribute(evo, attributePointer).getProperty();
+            Resource rclass = getSchemaClass(evorange.getName());
 
-            Resource r1 = getResource(baseURI + evorange.getName() + "_" + ((IFCVO) o).getLineNum(), rclass);
+            Resource r1 = getReferencedResource(evorange.getName(), o.getLineNum(), rclass);
             ttlWriter.triple(new Triple(r.asNode(), p.asNode(), r1.asNode()));
             if (LOG.isDebugEnabled()) {
                 LOG.debug("*OK 1*: added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + r1.getLocalName());
@@ -320,55 +461,28 @@ public class RDFWriter {
         return attributePointer;
     }
 
-    @SuppressWarnings("unchecked")
-    private int fillPropertiesHandleListObject(Resource r, EntityVO evo, int attributePointer, Object o) throws IOException {
+    private int fillPropertiesHandleListObject(Resource r, EntityVO evo, int attributePointer, ValueList tmpList) throws IOException {
 
-        final LinkedList<Object> tmpList = (LinkedList<Object>) o;
-        LinkedList<String> literals = new LinkedList<>();
+        ValueList.Builder literals = new ValueList.Builder();
         LinkedList<Resource> listRemembranceResources = new LinkedList<>();
-        LinkedList<IFCVO> ifcVOs = new LinkedList<>();
+        LinkedList<IfcInstance> ifcVOs = new LinkedList<>();
 
         // process list
         for (int j = 0; j < tmpList.size(); j++) {
-            Object o1 = tmpList.get(j);
-            if (Character.class.isInstance(o1)) {
-                Character c = (Character) o1;
-                if (c != ',') {
-                    LOG.error("*ERROR 12*: We found a character that is not a comma. That is odd. Check!");
-                }
-            } else if (String.class.isInstance(o1)) {
-                TypeVO t = typ.get(ExpressReader.formatClassName((String) o1));
-                if (typeRemembrance == null) {
-                    if (t != null) {
-                        typeRemembrance = t;
-                    } else {
-                        literals.add(filterExtras((String) o1));
-                    }
-                } else {
-                    if (t != null) {
-                        if (t == typeRemembrance) {
-                            // Ignore and continue with life
-                        } else {
-                            // Panic
-                            LOG.warn("*WARNING 37*: Found two different types in one list. This is worth checking.");
-                        }
-                    } else {
-                        literals.add(filterExtras((String) o1));
-                    }
-                }
-            } else if (IFCVO.class.isInstance(o1)) {
+            byte kind1 = tmpList.getKind(j);
+            if (kind1 == ValueList.REFERENCE) {
                 if ((evo != null) && (evo.getDerivedAttributeList() != null) && (evo.getDerivedAttributeList().size() > attributePointer)) {
 
-                    String propURI = evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-                    OntProperty p = ontModel.getOntProperty(ontNS + propURI);
-                    OntResource typerange = p.getRange();
+                    AttributeTable.Attribute attribute = attributes.getAttribute(evo, attributePointer);
+                    Property p = attribute.getProperty();
+                    AttributeTable.Range typerange = attribute.getRange();
 
-                    if (typerange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
+                    if (typerange.isList()) {
                         // EXPRESS LISTs
-                        String listvaluepropURI = ontNS + typerange.getLocalName().substring(0, typerange.getLocalName().length() - 5);
-                        OntResource listrange = ontModel.getOntResource(listvaluepropURI);
+                        String localName = typerange.getResource().getLocalName();
+                        AttributeTable.Range listrange = attributes.getSchemaRange(localName.substring(0, localName.length() - 5));
 
-                        if (listrange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
+                        if (listrange.isList()) {
                             LOG.error("*ERROR 22*: Found supposedly unhandled ListOfList, but this should not be possible.");
                         } else {
                             fillClassInstanceList(tmpList, typerange, p, r);
@@ -376,10 +490,11 @@ public class RDFWriter {
                         }
                     } else {
                         // EXPRESS SETs
-                        EntityVO evorange = ent.get(ExpressReader.formatClassName(((IFCVO) o1).getName()));
-                        OntResource rclass = ontModel.getOntResource(ontNS + evorange.getName());
+                        IfcInstance o1 = getInstance(tmpList.getReference(j));
+                        EntityVO evorange = ent.get(formatClassName(o1.getName()));
+                        Resource rclass = getSchemaClass(evorange.getName());
 
-                        Resource r1 = getResource(baseURI + evorange.getName() + "_" + ((IFCVO) o1).getLineNum(), rclass);
+                        Resource r1 = getReferencedResource(evorange.getName(), o1.getLineNum(), rclass);
                         ttlWriter.triple(new Triple(r.asNode(), p.asNode(), r1.asNode()));
                         if (LOG.isDebugEnabled()) {
                             LOG.debug("*OK 5*: added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + r1
@@ -390,35 +505,25 @@ public class RDFWriter {
                 } else {
                     LOG.warn("*WARNING 13*: Nothing happened. Not sure if this is good or bad, possible or not.");
                 }
-            } else if (LinkedList.class.isInstance(o1)) {
+            } else if (kind1 == ValueList.LIST) {
+                ValueList tmpListInList = tmpList.getList(j);
                 if (typeRemembrance != null) {
-                    LinkedList<Object> tmpListInList = (LinkedList<Object>) o1;
                     for (int jj = 0; jj < tmpListInList.size(); jj++) {
-                        Object o2 = tmpListInList.get(jj);
-                        if (Character.class.isInstance(o2)) {
-                            if ((Character) o2 != ',') {
-                                LOG.error("*ERROR 20*: We found a character that is not a comma. That should not be possible");
-                            }
-                        } else if (String.class.isInstance(o2)) {
-                            literals.add(filterExtras((String) o2));
-                        } else if (IFCVO.class.isInstance(o2)) {
+                        byte kind2 = tmpListInList.getKind(jj);
+                        if (kind2 == ValueList.REFERENCE) {
                             // Lists of IFC entities
                             LOG.warn("*WARNING 30: Nothing happened. Not sure if this is good or bad, possible or not.");
-                        } else if (LinkedList.class.isInstance(o2)) {
+                        } else if (kind2 == ValueList.LIST) {
                             // this happens only for types that are equivalent
                             // to lists (e.g. IfcLineIndex in IFC4_ADD1)
                             // in this case, the elements of the list should be
                             // treated as new instances that are equivalent to
                             // the correct lists
-                            LinkedList<Object> tmpListInListInList = (LinkedList<Object>) o2;
+                            ValueList tmpListInListInList = tmpListInList.getList(jj);
                             for (int jjj = 0; jjj < tmpListInListInList.size(); jjj++) {
-                                Object o3 = tmpListInListInList.get(jjj);
-                                if (Character.class.isInstance(o3)) {
-                                    if ((Character) o3 != ',') {
-                                        LOG.error("*ERROR 24*: We found a character that is not a comma. That should not be possible");
-                                    }
-                                } else if (String.class.isInstance(o3)) {
-                                    literals.add(filterExtras((String) o3));
+                                byte kind3 = tmpListInListInList.getKind(jjj);
+                                if (kind3 != ValueList.REFERENCE && kind3 != ValueList.LIST) {
+                                    literals.add(tmpListInListInList, jjj);
                                 } else {
                                     LOG.warn("*WARNING 31: Nothing happened. Not sure if this is good or bad, possible or not.");
                                 }
@@ -437,19 +542,15 @@ public class RDFWriter {
 
                             if ((evo != null) && (evo.getDerivedAttributeList() != null) && (evo.getDerivedAttributeList().size() > attributePointer)) {
 
-                                OntClass cl = ontModel.getOntClass(ontNS + typeRemembrance.getName());
-                                Resource r1 = getResource(baseURI + typeRemembrance.getName() + "_" + idCounter, cl);
+                                AttributeTable.Range range = attributes.getSchemaRange(typeRemembrance.getName());
+                                Resource r1 = getResource(typeRemembrance.getName(), idCounter, getSchemaClass(typeRemembrance.getName()));
                                 idCounter++;
-                                OntResource range = ontModel.getOntResource(ontNS + typeRemembrance.getName());
 
                                 // finding listrange
                                 String[] primTypeArr = typeRemembrance.getPrimarytype().split(" ");
-                                String primType = ontNS + primTypeArr[primTypeArr.length - 1].replace(";", "");
-                                OntResource listrange = ontModel.getOntResource(primType);
+                                AttributeTable.Range listrange = attributes.getSchemaRange(primTypeArr[primTypeArr.length - 1].replace(";", ""));
 
-                                List<Object> literalObjects = new ArrayList<>();
-                                literalObjects.addAll(literals);
-                                addDirectRegularListProperty(r1, range, listrange, literalObjects, 0);
+                                addDirectRegularListProperty(r1, range, listrange, literals.build());
 
                                 // put relevant top list items in a list, which
                                 // can then be parsed at the end of this method
@@ -459,47 +560,36 @@ public class RDFWriter {
                             typeRemembrance = null;
                             literals.clear();
                         } else {
-                            LOG.warn("*WARNING 35: Nothing happened. Not sure if this is good or bad, possible or not.");
+                            literals.add(tmpListInList, jj);
                         }
                     }
                 } else {
-                    LinkedList<Object> tmpListInList = (LinkedList<Object>) o1;
                     for (int jj = 0; jj < tmpListInList.size(); jj++) {
-                        Object o2 = tmpListInList.get(jj);
-                        if (Character.class.isInstance(o2)) {
-                            if ((Character) o2 != ',') {
-                                LOG.error("*ERROR 21*: We found a character that is not a comma. That should not be possible");
-                            }
-                        } else if (String.class.isInstance(o2)) {
-                            literals.add(filterExtras((String) o2));
-                        } else if (IFCVO.class.isInstance(o2)) {
-                            ifcVOs.add((IFCVO) o2);
-                        } else if (LinkedList.class.isInstance(o2)) {
+                        byte kind2 = tmpListInList.getKind(jj);
+                        if (kind2 == ValueList.REFERENCE) {
+                            ifcVOs.add(getInstance(tmpListInList.getReference(jj)));
+                        } else if (kind2 == ValueList.LIST) {
                             LOG.error("*ERROR 19*: Found List of List of List. Code cannot handle that.");
                         } else {
-                            LOG.warn("*WARNING 32*: Nothing happened. Not sure if this is good or bad, possible or not.");
+                            literals.add(tmpListInList, jj);
                         }
                     }
                     if ((evo != null) && (evo.getDerivedAttributeList() != null) && (evo.getDerivedAttributeList().size() > attributePointer)) {
 
-                        String propURI = ontNS + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-                        OntProperty p = ontModel.getOntProperty(propURI);
-                        OntClass typerange = p.getRange().asClass();
+                        AttributeTable.Range typerange = attributes.getAttribute(evo, attributePointer).getRange();
 
-                        if (typerange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
-                            String listvaluepropURI = typerange.getLocalName().substring(0, typerange.getLocalName().length() - 5);
-                            OntResource listrange = ontModel.getOntResource(ontNS + listvaluepropURI);
-                            Resource r1 = getResource(baseURI + listvaluepropURI + "_" + idCounter, listrange);
+                        if (typerange.isList()) {
+                            String localName = typerange.getResource().getLocalName();
+                            String listvaluepropURI = localName.substring(0, localName.length() - 5);
+                            AttributeTable.Range listrange = attributes.getSchemaRange(listvaluepropURI);
+                            Resource r1 = getResource(listvaluepropURI, idCounter, listrange.getResource());
                             idCounter++;
-                            List<Object> objects = new ArrayList<>();
                             if (!ifcVOs.isEmpty()) {
-                                objects.addAll(ifcVOs);
-                                OntResource listcontentrange = getListContentType(listrange.asClass());
-                                addDirectRegularListProperty(r1, listrange, listcontentrange, objects, 1);
-                            } else if (!literals.isEmpty()) {
-                                objects.addAll(literals);
-                                OntResource listcontentrange = getListContentType(listrange.asClass());
-                                addDirectRegularListProperty(r1, listrange, listcontentrange, objects, 0);
+                                AttributeTable.Range listcontentrange = getListContentType(listrange);
+                                addDirectInstanceListProperty(r1, listrange, listcontentrange, ifcVOs);
+                            } else if (literals.size() > 0) {
+                                AttributeTable.Range listcontentrange = getListContentType(listrange);
+                                addDirectRegularListProperty(r1, listrange, listcontentrange, literals.build());
                             }
                             listRemembranceResources.add(r1);
                         } else {
@@ -511,22 +601,41 @@ public class RDFWriter {
                     ifcVOs.clear();
                 }
             } else {
-                LOG.error("*ERROR 11*: We found something that is not an IFC entity, not a list, not a string, and not a character. Check!");
+                TypeVO t = getType(tmpList, j);
+                if (typeRemembrance == null) {
+                    if (t != null) {
+                        typeRemembrance = t;
+                    } else {
+                        literals.add(tmpList, j);
+                    }
+                } else {
+                    if (t != null) {
+                        if (t == typeRemembrance) {
+                            // Ignore and continue with life
+                        } else {
+                            // Panic
+                            LOG.warn("*WARNING 37*: Found two different types in one list. This is worth checking.");
+                        }
+                    } else {
+                        literals.add(tmpList, j);
+                    }
+                }
             }
         }
 
         // interpret parse
-        if (!literals.isEmpty()) {
-            String propURI = ontNS + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-            OntProperty p = ontModel.getOntProperty(propURI);
-            OntResource typerange = p.getRange();
+        if (literals.size() > 0) {
+            ValueList literalList = literals.build();
+            AttributeTable.Attribute attribute = attributes.getAttribute(evo, attributePointer);
+            Property p = attribute.getProperty();
+            AttributeTable.Range typerange = attribute.getRange();
             if (typeRemembrance != null) {
                 if ((evo != null) && (evo.getDerivedAttributeList() != null) && (evo.getDerivedAttributeList().size() > attributePointer)) {
-                    if (typerange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList")))
-                        addRegularListProperty(r, p, literals, typeRemembrance);
+                    if (typerange.isList())
+                        addRegularListProperty(r, p, typerange, literalList, typeRemembrance);
                     else {
-                        addSinglePropertyFromTypeRemembrance(r, p, literals.getFirst(), typeRemembrance);
-                        if (literals.size() > 1) {
+                        addSinglePropertyFromTypeRemembrance(r, p, literalList, 0, typeRemembrance);
+                        if (literalList.size() > 1) {
                             LOG.warn("*WARNING 37*: We are ignoring a number of literal values here.");
                         }
                     }
@@ -535,20 +644,19 @@ public class RDFWriter {
                 }
                 typeRemembrance = null;
             } else if ((evo != null) && (evo.getDerivedAttributeList() != null) && (evo.getDerivedAttributeList().size() > attributePointer)) {
-                if (typerange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList")))
-                    addRegularListProperty(r, p, literals, null);
+                if (typerange.isList())
+                    addRegularListProperty(r, p, typerange, literalList, null);
                 else
-                    for (int i = 0; i < literals.size(); i++)
-                        createLiteralProperty(r, p, typerange, literals.get(i));
+                    for (int i = 0; i < literalList.size(); i++)
+                        createLiteralProperty(r, p, typerange, literalList, i);
             } else {
                 LOG.warn("*WARNING 14*: Nothing happened. Not sure if this is good or bad, possible or not.");
             }
         }
         if (!listRemembranceResources.isEmpty()) {
             if ((evo != null) && (evo.getDerivedAttributeList() != null) && (evo.getDerivedAttributeList().size() > attributePointer)) {
-                String propURI = ontNS + evo.getDerivedAttributeList().get(attributePointer).getLowerCaseName();
-                OntProperty p = ontModel.getOntProperty(propURI);
-                addListPropertyToGivenEntities(r, p, listRemembranceResources);
+                AttributeTable.Attribute attribute = attributes.getAttribute(evo, attributePointer);
+                addListPropertyToGivenEntities(r, attribute.getProperty(), attribute.getRange(), listRemembranceResources);
             }
         }
 
@@ -556,60 +664,51 @@ public class RDFWriter {
         return attributePointer;
     }
 
-    @SuppressWarnings({"unchecked"})
-    private void fillPropertiesHandleListObject(Resource r, TypeVO tvo, Object o) throws IOException {
+    private void fillPropertiesHandleListObject(Resource r, TypeVO tvo, ValueList tmpList) throws IOException {
 
-        final LinkedList<Object> tmpList = (LinkedList<Object>) o;
-        LinkedList<String> literals = new LinkedList<>();
+        ValueList.Builder literals = new ValueList.Builder();
 
         // process list
         for (int j = 0; j < tmpList.size(); j++) {
-            Object o1 = tmpList.get(j);
-            if (Character.class.isInstance(o1)) {
-                Character c = (Character) o1;
-                if (c != ',') {
-                    LOG.error("*ERROR 13*: We found a character that is not a comma. That is odd. Check!");
-                }
-            } else if (String.class.isInstance(o1)) {
-                if (typ.get(ExpressReader.formatClassName((String) o1)) != null && typeRemembrance == null) {
-                    typeRemembrance = typ.get(ExpressReader.formatClassName((String) o1));
-                } else
-                    literals.add(filterExtras((String) o1));
-            } else if (IFCVO.class.isInstance(o1)) {
+            byte kind1 = tmpList.getKind(j);
+            if (kind1 == ValueList.REFERENCE) {
                 if ((tvo != null)) {
                     LOG.warn("*WARNING 16*: found TYPE that is equivalent to a list if IFC entities - below is the code used when this happens for ENTITIES with a list of ENTITIES");
                 } else {
                     LOG.warn("*WARNING 19*: Nothing happened. Not sure if this is good or bad, possible or not.");
                 }
-            } else if (LinkedList.class.isInstance(o1) && typeRemembrance != null) {
-                LinkedList<Object> tmpListInlist = (LinkedList<Object>) o1;
+            } else if (kind1 == ValueList.LIST && typeRemembrance != null) {
+                ValueList tmpListInlist = tmpList.getList(j);
                 for (int jj = 0; jj < tmpListInlist.size(); jj++) {
-                    Object o2 = tmpListInlist.get(jj);
-                    if (String.class.isInstance(o2)) {
-                        literals.add(filterExtras((String) o2));
+                    byte kind2 = tmpListInlist.getKind(jj);
+                    if (kind2 != ValueList.REFERENCE && kind2 != ValueList.LIST) {
+                        literals.add(tmpListInlist, jj);
                     } else {
                         LOG.warn("*WARNING 18*: Nothing happened. Not sure if this is good or bad, possible or not.");
                     }
                 }
-            } else {
+            } else if (kind1 == ValueList.LIST) {
                 LOG.error("*ERROR 10*: We found something that is not an IFC entity, not a list, not a string, and not a character. Check!");
+            } else {
+                TypeVO t = getType(tmpList, j);
+                if (t != null && typeRemembrance == null) {
+                    typeRemembrance = t;
+                } else
+                    literals.add(tmpList, j);
             }
         }
 
         // interpret parse
-        if (literals.isEmpty()) {
+        if (literals.size() == 0) {
             if (typeRemembrance != null) {
                 if ((tvo != null)) {
                     LOG.warn("*WARNING 20*: this part of the code has not been checked - it can't be correct");
 
                     String[] primtypeArr = tvo.getPrimarytype().split(" ");
                     String primType = primtypeArr[primtypeArr.length - 1].replace(";", "") + "_" + primtypeArr[0].substring(0, 1).toUpperCase() + primtypeArr[0].substring(1).toLowerCase();
-                    String typeURI = ontNS + primType;
-                    OntResource range = ontModel.getOntResource(typeURI);
-                    OntResource listrange = getListContentType(range.asClass());
-                    List<Object> literalObjects = new ArrayList<>();
-                    literalObjects.addAll(literals);
-                    addDirectRegularListProperty(r, range, listrange, literalObjects, 0);
+                    AttributeTable.Range range = attributes.getSchemaRange(primType);
+                    AttributeTable.Range listrange = getListContentType(range);
+                    addDirectRegularListProperty(r, range, listrange, literals.build());
                 } else {
                     LOG.warn("*WARNING 21*: Nothing happened. Not sure if this is good or bad, possible or not.");
                 }
@@ -617,12 +716,9 @@ public class RDFWriter {
             } else if ((tvo != null)) {
                 String[] primTypeArr = tvo.getPrimarytype().split(" ");
                 String primType = primTypeArr[primTypeArr.length - 1].replace(";", "") + "_" + primTypeArr[0].substring(0, 1).toUpperCase() + primTypeArr[0].substring(1).toLowerCase();
-                String typeURI = ontNS + primType;
-                OntResource range = ontModel.getOntResource(typeURI);
-                List<Object> literalObjects = new ArrayList<>();
-                literalObjects.addAll(literals);
-                OntResource listrange = getListContentType(range.asClass());
-                addDirectRegularListProperty(r, range, listrange, literalObjects, 0);
+                AttributeTable.Range range = attributes.getSchemaRange(primType);
+                AttributeTable.Range listrange = getListContentType(range);
+                addDirectRegularListProperty(r, range, listrange, literals.build());
             }
         }
     }
@@ -631,67 +727,98 @@ public class RDFWriter {
     // EVERYTHING TO DO WITH LISTS
     // --------------------------------------
 
-    private void addSinglePropertyFromTypeRemembrance(Resource r, OntProperty p, String literalString, TypeVO typeremembrance) throws IOException {
-        OntResource range = ontModel.getOntResource(ontNS + typeremembrance.getName());
+    private void addSinglePropertyFromTypeRemembrance(Resource r, Property p, ValueList values, int index, TypeVO typeremembrance) throws IOException {
+        AttributeTable.Range range = attributes.getSchemaRange(typeremembrance.getName());
 
         if (range.isClass()) {
-            if (range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "ENUMERATION"))) {
+            if (range.isEnumeration()) {
                 // Check for ENUM
-                addEnumProperty(r, p, range, literalString);
-            } else if (range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "SELECT"))) {
+                addEnumProperty(r, p, range, getLiteralString(values, index));
+            } else if (range.isSelect()) {
                 // Check for SELECT
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("*OK 24*: found subClass of SELECT Class, now doing nothing with it: " + p + " - " + range
-                            .getLocalName() + " - " + literalString);
+                            .getResource().getLocalName() + " - " + getLiteralString(values, index));
                 }
-                createLiteralProperty(r, p, range, literalString);
-            } else if (range.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
+                createLiteralProperty(r, p, range, values, index);
+            } else if (range.isList()) {
                 // Check for LIST
-                LOG.warn("*WARNING 24*: found LIST property (but doing nothing with it): " + p + " - " + range.getLocalName() + " - " + literalString);
+                LOG.warn("*WARNING 24*: found LIST property (but doing nothing with it): " + p + " - " + range.getResource().getLocalName() + " - " + getLiteralString(values, index));
             } else {
-                createLiteralProperty(r, p, range, literalString);
+                createLiteralProperty(r, p, range, values, index);
             }
         } else {
-            LOG.warn("*WARNING 26*: found other kind of property: " + p + " - " + range.getLocalName());
+            LOG.warn("*WARNING 26*: found other kind of property: " + p + " - " + range.getResource().getLocalName());
         }
     }
 
-    private void addEnumProperty(Resource r, Property p, OntResource range, String literalString) throws IOException {
-        for (ExtendedIterator<? extends OntResource> instances = range.asClass().listInstances(); instances.hasNext(); ) {
-            OntResource rangeInstance = instances.next();
-            if (rangeInstance.getProperty(RDFS.label).getString().equalsIgnoreCase(filterPoints(literalString))) {
-                ttlWriter.triple(new Triple(r.asNode(), p.asNode(), rangeInstance.asNode()));
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("*OK 2*: added ENUM statement " + r.getLocalName() + " - " + p.getLocalName() + " - "
-                            + rangeInstance.getLocalName());
-                }
-                return;
+    private void addEnumProperty(Resource r, Property p, AttributeTable.Range range, String literalString) throws IOException {
+        Node individual = range.getIndividual(literalString);
+        if (individual != null) {
+            ttlWriter.triple(new Triple(r.asNode(), p.asNode(), individual));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("*OK 2*: added ENUM statement " + r.getLocalName() + " - " + p.getLocalName() + " - "
+                        + individual.getLocalName());
             }
+            return;
         }
         LOG.error("*ERROR 9*: did not find ENUM individual for " + literalString + "\r\nQuitting the application without output!");
     }
 
-    private void addLiteralToResource(Resource r1, OntProperty valueProp, String xsdType, String literalString) throws IOException {
-        if ("integer".equalsIgnoreCase(xsdType))
-            addLiteral(r1, valueProp, ResourceFactory.createTypedLiteral(literalString, XSDDatatype.XSDinteger));
-        else if ("double".equalsIgnoreCase(xsdType))
-            addLiteral(r1, valueProp, ResourceFactory.createTypedLiteral(literalString, XSDDatatype.XSDdouble));
-        else if ("hexBinary".equalsIgnoreCase(xsdType))
+    /**
+     * Adds the literal of a value. INTEGER and REAL values make their numeric
+     * literal from the value the parser read; the literal string, as given by
+     * {@link #getLiteralString}, is used for all others and for a malformed
+     * REAL.
+     *
+     * @param literalString the literal string, or null if it was not made yet
+     */
+    private void addLiteralToResource(Resource r1, Property valueProp, String xsdType, ValueList values, int index, String literalString) throws IOException {
+        byte kind = values.getKind(index);
+        Node value = null;
+        if ("integer".equalsIgnoreCase(xsdType) && kind == ValueList.INTEGER && fitsLong(values.getLong(index)))
+            value = NumericLiterals.integerLiteral(values.getLong(index));
+        else if ("double".equalsIgnoreCase(xsdType) && (kind == ValueList.REAL && !Double.isNaN(values.getDouble(index))
+                || kind == ValueList.INTEGER && fitsLong(values.getLong(index))))
+            value = NumericLiterals.doubleLiteral(values.getDouble(index));
+        if (value != null) {
+            addLiteral(r1, valueProp, value);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("*OK 4*: added literal: " + r1.getLocalName() + " - " + valueProp + " - " + value.getLiteralLexicalForm());
+            }
+            return;
+        }
+
+        if (literalString == null)
+            literalString = values.getLexicalForm(index);
+        if ("integer".equalsIgnoreCase(xsdType)) {
+            Node literal = NumericLiterals.integerLiteral(literalString);
+            if (literal != null)
+                addLiteral(r1, valueProp, literal);
+            else
+                addLiteral(r1, valueProp, ResourceFactory.createTypedLiteral(literalString, XSDDatatype.XSDinteger));
+        } else if ("double".equalsIgnoreCase(xsdType)) {
+            Node literal = NumericLiterals.doubleLiteral(literalString);
+            if (literal != null)
+                addLiteral(r1, valueProp, literal);
+            else
+                addLiteral(r1, valueProp, ResourceFactory.createTypedLiteral(literalString, XSDDatatype.XSDdouble));
+        } else if ("hexBinary".equalsIgnoreCase(xsdType))
             addLiteral(r1, valueProp, ResourceFactory.createTypedLiteral(literalString, XSDDatatype.XSDhexBinary));
         else if ("boolean".equalsIgnoreCase(xsdType)) {
             if (".F.".equalsIgnoreCase(literalString))
-                addLiteral(r1, valueProp, ResourceFactory.createTypedLiteral("false", XSDDatatype.XSDboolean));
+                addLiteral(r1, valueProp, BOOLEAN_FALSE);
             else if (".T.".equalsIgnoreCase(literalString))
-                addLiteral(r1, valueProp, ResourceFactory.createTypedLiteral("true", XSDDatatype.XSDboolean));
+                addLiteral(r1, valueProp, BOOLEAN_TRUE);
             else
                 LOG.warn("*WARNING 10*: found odd boolean value: " + literalString);
         } else if ("logical".equalsIgnoreCase(xsdType)) {
             if (".F.".equalsIgnoreCase(literalString))
-                addProperty(r1, valueProp, ontModel.getResource(EXPRESS_NS + "FALSE"));
+                addProperty(r1, valueProp, LOGICAL_FALSE);
             else if (".T.".equalsIgnoreCase(literalString))
-                addProperty(r1, valueProp, ontModel.getResource(EXPRESS_NS + "TRUE"));
+                addProperty(r1, valueProp, LOGICAL_TRUE);
             else if (".U.".equalsIgnoreCase(literalString))
-                addProperty(r1, valueProp, ontModel.getResource(EXPRESS_NS + "UNKNOWN"));
+                addProperty(r1, valueProp, LOGICAL_UNKNOWN);
             else
                 LOG.warn("*WARNING 9*: found odd logical value: " + literalString);
         } else if ("string".equalsIgnoreCase(xsdType))
@@ -704,81 +831,86 @@ public class RDFWriter {
     }
 
     // LIST HANDLING
-    private void addDirectRegularListProperty(Resource r, OntResource range, OntResource listrange, List<Object> el, int mySwitch) throws IOException {
-
-        if (range.isClass()) {
-            if (listrange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
-                LOG.warn("*WARNING 27*: Found unhandled ListOfList");
-            } else {
-                List<Resource> reslist = new ArrayList<>();
-                // createrequirednumberofresources
-                for (int i = 0; i < el.size(); i++) {
-                    if (i == 0)
-                        reslist.add(r);
-                    else {
-                        Resource r1 = getResource(baseURI + range.getLocalName() + "_" + idCounter, range);
-                        reslist.add(r1);
-                        idCounter++;
-                    }
-                }
+    private void addDirectRegularListProperty(Resource r, AttributeTable.Range range, AttributeTable.Range listrange, ValueList el) throws IOException {
+        List<Resource> reslist = createDirectListResources(r, range, listrange, el.size());
+        if (reslist != null)
+            addListInstanceProperties(reslist, el, listrange);
+    }
 
-                if (mySwitch == 0) {
-                    // bind the properties with literal values only if we are
-                    // actually dealing with literals
-                    List<String> literals = new ArrayList<>();
-                    for (int i = 0; i < el.size(); i++) {
-                        literals.add((String) el.get(i));
-                    }
-                    addListInstanceProperties(reslist, literals, listrange);
-                } else {
-                    for (int i = 0; i < reslist.size(); i++) {
-                        Resource r1 = reslist.get(i);
-                        IFCVO vo = (IFCVO) el.get(i);
-                        EntityVO evorange = ent.get(ExpressReader.formatClassName((vo).getName()));
-                        OntResource rclass = ontModel.getOntResource(ontNS + evorange.getName());
-                        Resource r2 = getResource(baseURI + evorange.getName() + "_" + (vo).getLineNum(), rclass);
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("*OK 21*: created resource: " + r2.getLocalName());
-                        }
-                        idCounter++;
-                        ttlWriter.triple(new Triple(r1.asNode(), ontModel.getOntProperty(LIST_NS + "hasContents").asNode(), r2.asNode()));
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("*OK 22*: added property: " + r1.getLocalName() + " - " + "-hasContents-" + " - " + r2
-                                    .getLocalName());
-                        }
+    private void addDirectInstanceListProperty(Resource r, AttributeTable.Range range, AttributeTable.Range listrange, List<IfcInstance> el) throws IOException {
+        List<Resource> reslist = createDirectListResources(r, range, listrange, el.size());
+        if (reslist == null)
+            return;
+        for (int i = 0; i < reslist.size(); i++) {
+            Resource r1 = reslist.get(i);
+            IfcInstance vo = el.get(i);
+            EntityVO evorange = ent.get(formatClassName((vo).getName()));
+            Resource rclass = getSchemaClass(evorange.getName());
+            Resource r2 = getReferencedResource(evorange.getName(), (vo).getLineNum(), rclass);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("*OK 21*: created resource: " + r2.getLocalName());
+            }
+            idCounter++;
+            ttlWriter.triple(new Triple(r1.asNode(), attributes.getHasContents().asNode(), r2.asNode()));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("*OK 22*: added property: " + r1.getLocalName() + " - " + "-hasContents-" + " - " + r2
+                        .getLocalName());
+            }
 
-                        if (i < el.size() - 1) {
-                            ttlWriter.triple(new Triple(r1.asNode(), ontModel.getOntProperty(LIST_NS + "hasNext").asNode(), reslist.get(i + 1).asNode()));
-                            if (LOG.isDebugEnabled()) {
-                                LOG.debug("*OK 23*: added property: " + r1.getLocalName() + " - " + "-hasNext-" + " - " + reslist
-                                        .get(i + 1).getLocalName());
-                            }
-                        }
-                    }
+            if (i < el.size() - 1) {
+                ttlWriter.triple(new Triple(r1.asNode(), attributes.getHasNext().asNode(), reslist.get(i + 1).asNode()));
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("*OK 23*: added property: " + r1.getLocalName() + " - " + "-hasNext-" + " - " + reslist
+                            .get(i + 1).getLocalName());
                 }
             }
         }
     }
 
-    private void addRegularListProperty(Resource r, OntProperty p, List<String> el, TypeVO typeRemembranceOverride) throws IOException {
-        OntResource range = p.getRange();
-        if (range.isClass()) {
-            OntResource listrange = getListContentType(range.asClass());
+    /**
+     * @return the resources of the elements of a list, starting with the
+     * given one, or null if the list cannot be written
+     */
+    private List<Resource> createDirectListResources(Resource r, AttributeTable.Range range, AttributeTable.Range listrange, int size) {
+        if (!range.isClass())
+            return null;
+        if (listrange.isList()) {
+            LOG.warn("*WARNING 27*: Found unhandled ListOfList");
+            return null;
+        }
+        List<Resource> reslist = new ArrayList<>();
+        // createrequirednumberofresources
+        for (int i = 0; i < size; i++) {
+            if (i == 0)
+                reslist.add(r);
+            else {
+                Resource r1 = getResource(range, idCounter);
+                reslist.add(r1);
+                idCounter++;
+            }
+        }
+        return reslist;
+    }
+
+    private void addRegularListProperty(Resource r, Property p, AttributeTable.Range propertyRange, ValueList el, TypeVO typeRemembranceOverride) throws IOException {
+        Resource range = propertyRange.getResource();
+        if (propertyRange.isClass()) {
+            AttributeTable.Range listrange = getListContentType(propertyRange);
             if (typeRemembranceOverride != null) {
-                OntClass cla = ontModel.getOntClass(ontNS + typeRemembranceOverride.getName());
-                listrange = cla;
+                AttributeTable.Range cla = attributes.getSchemaRange(typeRemembranceOverride.getName());
+                listrange = cla != null && cla.isClass() ? cla : null;
             }
 
             if (listrange == null) {
                 LOG.error("*ERROR 14*: We could not find what kind of content is expected in the LIST.");
             } else {
-                if (listrange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
+                if (listrange.isList()) {
                     LOG.warn("*WARNING 28*: Found unhandled ListOfList");
                 } else {
                     List<Resource> reslist = new ArrayList<>();
                     // createrequirednumberofresources
                     for (int ii = 0; ii < el.size(); ii++) {
-                        Resource r1 = getResource(baseURI + range.getLocalName() + "_" + idCounter, range);
+                        Resource r1 = getResource(propertyRange, idCounter);
                         reslist.add(r1);
                         idCounter++;
                         if (ii == 0) {
@@ -796,58 +928,53 @@ public class RDFWriter {
         }
     }
 
-    private void createLiteralProperty(Resource r, OntResource p, OntResource range, String literalString) throws IOException {
-        String xsdType = getXSDTypeFromRange(range);
-        if (xsdType == null) {
-            xsdType = getXSDTypeFromRangeExpensiveMethod(range);
-        }
+    private void createLiteralProperty(Resource r, Resource p, AttributeTable.Range range, ValueList values, int index) throws IOException {
+        String xsdType = range.getXSDType();
         if (xsdType != null) {
-            String xsdTypeCAP = Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1);
-            OntProperty valueProp = ontModel.getOntProperty(EXPRESS_NS + "has" + xsdTypeCAP);
-            String key = valueProp.toString() + ":" + xsdType + ":" + literalString;
+            Property valueProp = range.getValueProperty();
 
-            Resource r1 = propertyResourceMap.get(key);
+            String literalString = isNumber(values, index) ? null : getLiteralString(values, index);
+            Resource r1 = getValueResource(range, values, index, literalString);
             if (r1 == null) {
-                r1 = ResourceFactory.createResource(baseURI + range.getLocalName() + "_" + idCounter);
-                ttlWriter.triple(new Triple(r1.asNode(), RDF.type.asNode(), range.asNode()));
+                r1 = iris.get(range, idCounter);
+                ttlWriter.triple(new Triple(r1.asNode(), RDF.type.asNode(), range.getNode()));
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("*OK 17*: created resource: " + r1.getLocalName());
                 }
+                valueNodes.put(idCounter, range);
                 idCounter++;
-                propertyResourceMap.put(key, r1);
-                addLiteralToResource(r1, valueProp, xsdType, literalString);
+                addLiteralToResource(r1, valueProp, xsdType, values, index, literalString);
             }
             ttlWriter.triple(new Triple(r.asNode(), p.asNode(), r1.asNode()));
             if (LOG.isDebugEnabled()) {
                 LOG.debug("*OK 3*: added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + r1.getLocalName());
             }
         } else {
-            LOG.error("*ERROR 1*: XSD type not found for: " + p + " - " + range.getURI() + " - " + literalString);
+            LOG.error("*ERROR 1*: XSD type not found for: " + p + " - " + range.getResource().getURI() + " - " + getLiteralString(values, index));
         }
     }
 
-    private void addListPropertyToGivenEntities(Resource r, OntProperty p, List<Resource> el) throws IOException {
-        OntResource range = p.getRange();
-        if (range.isClass()) {
-            OntResource listrange = getListContentType(range.asClass());
+    private void addListPropertyToGivenEntities(Resource r, Property p, AttributeTable.Range propertyRange, List<Resource> el) throws IOException {
+        Resource range = propertyRange.getResource();
+        if (propertyRange.isClass()) {
+            AttributeTable.Range listrange = getListContentType(propertyRange);
 
             if (listrange != null) {
-                if (listrange.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
+                if (listrange.isList()) {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("*OK 20*: Handling list of list");
                     }
-                    listrange = range;
                 }
                 for (int i = 0; i < el.size(); i++) {
                     Resource r1 = el.get(i);
-                    Resource r2 = ResourceFactory.createResource(baseURI + range.getLocalName() + "_" + idCounter); // was
+                    Resource r2 = iris.get(propertyRange, idCounter); // was
                     // listrange
                     ttlWriter.triple(new Triple(r2.asNode(), RDF.type.asNode(), range.asNode()));
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("*OK 14*: added property: " + r2.getLocalName() + " - rdf:type - " + range.getLocalName());
                     }
                     idCounter++;
-                    Resource r3 = ResourceFactory.createResource(baseURI + range.getLocalName() + "_" + idCounter);
+                    Resource r3 = iris.get(propertyRange, idCounter);
 
                     if (i == 0) {
                         ttlWriter.triple(new Triple(r.asNode(), p.asNode(), r2.asNode()));
@@ -856,13 +983,13 @@ public class RDFWriter {
                                     .getLocalName());
                         }
                     }
-                    ttlWriter.triple(new Triple(r2.asNode(), ontModel.getOntProperty(LIST_NS + "hasContents").asNode(), r1.asNode()));
+                    ttlWriter.triple(new Triple(r2.asNode(), attributes.getHasContents().asNode(), r1.asNode()));
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("*OK 16*: added property: " + r2.getLocalName() + " - " + "-hasContents-" + " - " + r1
                                 .getLocalName());
                     }
                     if (i < el.size() - 1) {
-                        ttlWriter.triple(new Triple(r2.asNode(), ontModel.getOntProperty(LIST_NS + "hasNext").asNode(), r3.asNode()));
+                        ttlWriter.triple(new Triple(r2.asNode(), attributes.getHasNext().asNode(), r3.asNode()));
                         if (LOG.isDebugEnabled()) {
                             LOG.debug("*OK 17*: added property: " + r2.getLocalName() + " - " + "-hasNext-" + " - " + r3
                                     .getLocalName());
@@ -873,17 +1000,17 @@ public class RDFWriter {
         }
     }
 
-    private void fillClassInstanceList(LinkedList<Object> tmpList, OntResource typerange, OntProperty p, Resource r) throws IOException {
+    private void fillClassInstanceList(ValueList tmpList, AttributeTable.Range typerange, Property p, Resource r) throws IOException {
         List<Resource> reslist = new ArrayList<>();
-        List<IFCVO> entlist = new ArrayList<>();
+        List<IfcInstance> entlist = new ArrayList<>();
 
         // createrequirednumberofresources
         for (int i = 0; i < tmpList.size(); i++) {
-            if (IFCVO.class.isInstance(tmpList.get(i))) {
-                Resource r1 = getResource(baseURI + typerange.getLocalName() + "_" + idCounter, typerange);
+            if (tmpList.getKind(i) == ValueList.REFERENCE) {
+                Resource r1 = getResource(typerange, idCounter);
                 reslist.add(r1);
                 idCounter++;
-                entlist.add((IFCVO) tmpList.get(i));
+                entlist.add(getInstance(tmpList.getReference(i)));
                 if (i == 0) {
                     ttlWriter.triple(new Triple(r.asNode(), p.asNode(), r1.asNode()));
                     if (LOG.isDebugEnabled()) {
@@ -897,27 +1024,27 @@ public class RDFWriter {
         addClassInstanceListProperties(reslist, entlist);
     }
 
-    private void addClassInstanceListProperties(List<Resource> reslist, List<IFCVO> entlist) throws IOException {
-        OntProperty listp = ontModel.getOntProperty(LIST_NS + "hasContents");
-        OntProperty isfollowed = ontModel.getOntProperty(LIST_NS + "hasNext");
+    private void addClassInstanceListProperties(List<Resource> reslist, List<IfcInstance> entlist) throws IOException {
+        Property listp = attributes.getHasContents();
+        Property isfollowed = attributes.getHasNext();
 
         for (int i = 0; i < reslist.size(); i++) {
             Resource r = reslist.get(i);
 
-            OntResource rclass = null;
-            EntityVO evorange = ent.get(ExpressReader.formatClassName(entlist.get(i).getName()));
+            Resource rclass = null;
+            EntityVO evorange = ent.get(formatClassName(entlist.get(i).getName()));
             if (evorange == null) {
-                TypeVO typerange = typ.get(ExpressReader.formatClassName(entlist.get(i).getName()));
-                rclass = ontModel.getOntResource(ontNS + typerange.getName());
-                Resource r1 = getResource(baseURI + typerange.getName() + "_" + entlist.get(i).getLineNum(), rclass);
+                TypeVO typerange = typ.get(formatClassName(entlist.get(i).getName()));
+                rclass = getSchemaClass(typerange.getName());
+                Resource r1 = getReferencedResource(typerange.getName(), entlist.get(i).getLineNum(), rclass);
                 ttlWriter.triple(new Triple(r.asNode(), listp.asNode(), r1.asNode()));
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("*OK 8*: created property: " + r.getLocalName() + " - " + listp.getLocalName() + " - " + r1
                             .getLocalName());
                 }
             } else {
-                rclass = ontModel.getOntResource(ontNS + evorange.getName());
-                Resource r1 = getResource(baseURI + evorange.getName() + "_" + entlist.get(i).getLineNum(), rclass);
+                rclass = getSchemaClass(evorange.getName());
+                Resource r1 = getReferencedResource(evorange.getName(), entlist.get(i).getLineNum(), rclass);
                 ttlWriter.triple(new Triple(r.asNode(), listp.asNode(), r1.asNode()));
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("*OK 9*: created property: " + r.getLocalName() + " - " + listp.getLocalName() + " - " + r1
@@ -935,39 +1062,35 @@ public class RDFWriter {
         }
     }
 
-    private void addListInstanceProperties(List<Resource> reslist, List<String> listelements, OntResource listrange) throws IOException {
+    private void addListInstanceProperties(List<Resource> reslist, ValueList listelements, AttributeTable.Range listrange) throws IOException {
         // GetListType
-        String xsdType = getXSDTypeFromRange(listrange);
-        if (xsdType == null)
-            xsdType = getXSDTypeFromRangeExpensiveMethod(listrange);
+        String xsdType = listrange.getXSDType();
         if (xsdType != null) {
-            String xsdTypeCAP = Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1);
-            OntProperty valueProp = ontModel.getOntProperty(EXPRESS_NS + "has" + xsdTypeCAP);
+            Property valueProp = listrange.getValueProperty();
 
             // Adding Content only if found
             for (int i = 0; i < reslist.size(); i++) {
                 Resource r = reslist.get(i);
-                String literalString = listelements.get(i);
-                String key = valueProp.toString() + ":" + xsdType + ":" + literalString;
-                Resource r2 = propertyResourceMap.get(key);
+                String literalString = isNumber(listelements, i) ? null : getLiteralString(listelements, i);
+                Resource r2 = getValueResource(listrange, listelements, i, literalString);
                 if (r2 == null) {
-                    r2 = ResourceFactory.createResource(baseURI + listrange.getLocalName() + "_" + idCounter);
-                    ttlWriter.triple(new Triple(r2.asNode(), RDF.type.asNode(), listrange.asNode()));
+                    r2 = iris.get(listrange, idCounter);
+                    ttlWriter.triple(new Triple(r2.asNode(), RDF.type.asNode(), listrange.getNode()));
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("*OK 19*: created resource: " + r2.getLocalName());
                     }
+                    valueNodes.put(idCounter, listrange);
                     idCounter++;
-                    propertyResourceMap.put(key, r2);
-                    addLiteralToResource(r2, valueProp, xsdType, literalString);
+                    addLiteralToResource(r2, valueProp, xsdType, listelements, i, literalString);
                 }
-                ttlWriter.triple(new Triple(r.asNode(), ontModel.getOntProperty(LIST_NS + "hasContents").asNode(), r2.asNode()));
+                ttlWriter.triple(new Triple(r.asNode(), attributes.getHasContents().asNode(), r2.asNode()));
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("*OK 11*: added property: " + r.getLocalName() + " - " + "-hasContents-" + " - " + r2
                             .getLocalName());
                 }
 
                 if (i < listelements.size() - 1) {
-                    ttlWriter.triple(new Triple(r.asNode(), ontModel.getOntProperty(LIST_NS + "hasNext").asNode(), reslist.get(i + 1).asNode()));
+                    ttlWriter.triple(new Triple(r.asNode(), attributes.getHasNext().asNode(), reslist.get(i + 1).asNode()));
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("*OK 12*: added property: " + r.getLocalName() + " - " + "-hasNext-" + " - " + reslist.get(i + 1)
                                 .getLocalName());
@@ -975,131 +1098,158 @@ public class RDFWriter {
                 }
             }
         } else {
-            LOG.error("*ERROR 5*: XSD type not found for: " + listrange.getLocalName());
+            LOG.error("*ERROR 5*: XSD type not found for: " + listrange.getResource().getLocalName());
         }
     }
 
     // HELPER METHODS
-    private String filterExtras(String txt) {
-        StringBuilder sb = new StringBuilder();
-        for (int n = 0; n < txt.length(); n++) {
-            char ch = txt.charAt(n);
-            switch (ch) {
-                case '\'':
-                    break;
-                case '=':
-                    break;
-                default:
-                    sb.append(ch);
-            }
+
+    /**
+     * @return the value node that was written for a value of a class, or null
+     * if it has none yet; it may have another class with the same value
+     * property and XSD type. A number is found by its element, other values
+     * by their literal string.
+     */
+    private Resource getValueResource(AttributeTable.Range range, ValueList values, int index, String literalString) {
+        int slot = literalString == null ? valueNodes.find(range, values, index) : valueNodes.find(range, literalString);
+        if (slot < 0)
+            return null;
+        return iris.get(valueNodes.getRange(slot), valueNodes.getNumber(slot));
+    }
+
+    private static boolean isNumber(ValueList values, int index) {
+        byte kind = values.getKind(index);
+        return kind == ValueList.INTEGER || kind == ValueList.REAL;
+    }
+
+    /**
+     * @return true if an INTEGER value was not clamped to the range of a long
+     */
+    private static boolean fitsLong(long value) {
+        return value != Long.MIN_VALUE && value != Long.MAX_VALUE;
+    }
+
+    private void releaseValueNodes() {
+        if (valueNodes.getEvictions() > 0)
+            LOG.info("Value node cache full, " + valueNodes.getEvictions() + " value nodes were replaced");
+        valueNodes.clear();
+    }
+
+    /**
+     * @return the TYPE named by a {@link ValueList#KEYWORD} element, e.g. the
+     * IFCLABEL of IFCLABEL('x'), or null
+     */
+    private TypeVO getType(ValueList values, int index) {
+        if (values.getKind(index) != ValueList.KEYWORD)
+            return null;
+        return typ.get(formatClassName(values.getString(index)));
+    }
+
+    /**
+     * @return the text of a value as it is used for literals: strings are
+     * decoded and lose their trailing whitespace, other values are taken as
+     * written in the file
+     */
+    private String getLiteralString(ValueList values, int index) {
+        if (values.getKind(index) == ValueList.STRING) {
+            literalBuilder.setLength(0);
+            values.getStepString(index).decodeTo(literalBuilder);
+            int end = literalBuilder.length();
+            while (end > 0 && literalBuilder.charAt(end - 1) <= ' ')
+                end--;
+            literalBuilder.setLength(end);
+            return literalBuilder.toString();
         }
-        return sb.toString();
+        return values.getLexicalForm(index);
     }
 
-    private String filterPoints(String txt) {
-        StringBuilder sb = new StringBuilder();
-        for (int n = 0; n < txt.length(); n++) {
-            char ch = txt.charAt(n);
-            switch (ch) {
-                case '.':
-                    break;
-                default:
+    /**
+     * Same as ExpressReader.formatClassName, whose cache is not safe for
+     * conversions that run at the same time.
+     */
+    static String formatClassName(String name) {
+        String formatted = CLASS_NAMES.get(name);
+        if (formatted == null) {
+            StringBuilder sb = new StringBuilder(name.length());
+            for (int n = 0; n < name.length(); n++) {
+                char ch = name.charAt(n);
+                if (ch != '(' && ch != ')' && ch != ',' && ch != ';')
                     sb.append(ch);
             }
+            formatted = sb.toString().toUpperCase();
+            CLASS_NAMES.put(name, formatted);
         }
-        return sb.toString();
+        return formatted;
     }
 
-    private void addLiteral(Resource r, OntProperty valueProp, Literal l) {
-        ttlWriter.triple(new Triple(r.asNode(), valueProp.asNode(), l.asNode()));
+    private void addLiteral(Resource r, Property valueProp, Literal l) {
+        addLiteral(r, valueProp, l.asNode());
     }
 
-    private void addProperty(Resource r, OntProperty valueProp, Resource r1) {
+    private void addLiteral(Resource r, Property valueProp, Node l) {
+        ttlWriter.triple(new Triple(r.asNode(), valueProp.asNode(), l));
+    }
+
+    private void addProperty(Resource r, Property valueProp, Resource r1) {
         ttlWriter.triple(new Triple(r.asNode(), valueProp.asNode(), r1.asNode()));
     }
 
-    private OntResource getListContentType(OntClass range) throws IOException {
-        String resourceURI = range.asClass().getURI();
-        if ((EXPRESS_NS + "STRING_List").equalsIgnoreCase(resourceURI)
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "STRING_List")))
-            return ontModel.getOntResource(EXPRESS_NS + "STRING");
-        else if ((EXPRESS_NS + "REAL_List").equalsIgnoreCase(resourceURI)
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "REAL_List")))
-            return ontModel.getOntResource(EXPRESS_NS + "REAL");
-        else if ((EXPRESS_NS + "INTEGER_List").equalsIgnoreCase(resourceURI)
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "INTEGER_List")))
-            return ontModel.getOntResource(EXPRESS_NS + "INTEGER");
-        else if ((EXPRESS_NS + "BINARY_List").equalsIgnoreCase(resourceURI)
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "BINARY_List")))
-            return ontModel.getOntResource(EXPRESS_NS + "BINARY");
-        else if ((EXPRESS_NS + "BOOLEAN_List").equalsIgnoreCase(resourceURI)
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "BOOLEAN_List")))
-            return ontModel.getOntResource(EXPRESS_NS + "BOOLEAN");
-        else if ((EXPRESS_NS + "LOGICAL_List").equalsIgnoreCase(resourceURI)
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "LOGICAL_List")))
-            return ontModel.getOntResource(EXPRESS_NS + "LOGICAL");
-        else if ((EXPRESS_NS + "NUMBER_List").equalsIgnoreCase(resourceURI)
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "NUMBER_List")))
-            return ontModel.getOntResource(EXPRESS_NS + "NUMBER");
-        else if (range.asClass().hasSuperClass(ontModel.getOntClass(LIST_NS + "OWLList"))) {
-            String listvaluepropURI = ontNS + range.getLocalName().substring(0, range.getLocalName().length() - 5);
-            return ontModel.getOntResource(listvaluepropURI);
-        } else {
-            LOG.warn("*WARNING 29*: did not find listcontenttype for : {}", range.getLocalName());
-            return null;
-        }
+    private AttributeTable.Range getListContentType(AttributeTable.Range range) {
+        AttributeTable.Range content = attributes.getRange(range.getListContentType());
+        if (content == null)
+            LOG.warn("*WARNING 29*: did not find listcontenttype for : {}", range.getResource().getLocalName());
+        return content;
     }
 
-    private String getXSDTypeFromRange(OntResource range) {
-        if (range.asClass().getURI().equalsIgnoreCase(EXPRESS_NS + "STRING")
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "STRING")))
-            return "string";
-        else if (range.asClass().getURI().equalsIgnoreCase(EXPRESS_NS + "REAL")
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "REAL")))
-            return "double";
-        else if (range.asClass().getURI().equalsIgnoreCase(EXPRESS_NS + "INTEGER")
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "INTEGER")))
-            return "integer";
-        else if (range.asClass().getURI().equalsIgnoreCase(EXPRESS_NS + "BINARY")
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "BINARY")))
-            return "hexBinary";
-        else if (range.asClass().getURI().equalsIgnoreCase(EXPRESS_NS + "BOOLEAN")
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "BOOLEAN")))
-            return "boolean";
-        else if (range.asClass().getURI().equalsIgnoreCase(EXPRESS_NS + "LOGICAL")
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "LOGICAL")))
-            return "logical";
-        else if (range.asClass().getURI().equalsIgnoreCase(EXPRESS_NS + "NUMBER")
-                || range.asClass().hasSuperClass(ontModel.getOntClass(EXPRESS_NS + "NUMBER")))
-            return "double";
-        else
-            return null;
+    /**
+     * @return the class of the IFC schema with the given name, or null if the
+     * ontology does not contain it
+     */
+    private Resource getSchemaClass(String name) {
+        AttributeTable.Range range = attributes.getSchemaRange(name);
+        return range == null || !range.isClass() ? null : range.getResource();
     }
 
-    private String getXSDTypeFromRangeExpensiveMethod(OntResource range) {
-        ExtendedIterator<OntClass> iter = range.asClass().listSuperClasses();
-        while (iter.hasNext()) {
-            OntClass superc = iter.next();
-            if (!superc.isAnon()) {
-                String type = getXSDTypeFromRange(superc);
-                if (type != null)
-                    return type;
-            }
-        }
-        return null;
+    /**
+     * Returns the resource of a referenced entity. The rdf:type of every
+     * entity is written when the entity itself is converted, so in streaming
+     * mode, where no set of written resources is kept, nothing is written here.
+     */
+    private Resource getReferencedResource(String className, long number, Resource rclass) {
+        if (typeTable != null)
+            return iris.get(className, number);
+        return getResource(className, number, rclass);
     }
 
-    private Resource getResource(String uri, OntResource rclass) {
-        Resource r = resourceMap.get(uri);
-        if (r == null) {
-            r = ResourceFactory.createResource(uri);
-            resourceMap.put(uri, r);
-            try {
-                ttlWriter.triple(new Triple(r.asNode(), RDF.type.asNode(), rclass.asNode()));
-            } catch (Exception e) {
-                LOG.error("*ERROR 2*: getResource failed for " + uri);
-                return null;
-            }
+    private Resource getResource(String className, long number, Resource rclass) {
+        return writeType(iris.get(className, number), number, rclass);
+    }
+
+    /**
+     * @return the generated resource with the given number of the class of a
+     * range
+     */
+    private Resource getResource(AttributeTable.Range range, long number) {
+        return writeType(iris.get(range, number), number, range.getResource());
+    }
+
+    /**
+     * Writes the rdf:type of an entity or generated resource the first time.
+     * The number is the line number of the entity or the counter of the
+     * generated resource, which identifies the resource as well as its URI:
+     * line numbers come below all generated numbers, and a line number always
+     * gets the class of its entity.
+     *
+     * @return the resource, or null if the type could not be written
+     */
+    private Resource writeType(Resource r, long number, Resource rclass) {
+        if (typeTable == null && !emitted.add(number))
+            return r;
+        try {
+            ttlWriter.triple(new Triple(r.asNode(), RDF.type.asNode(), rclass.asNode()));
+        } catch (Exception e) {
+            LOG.error("*ERROR 2*: getResource failed for " + r.getURI());
+            return null;
         }
         return r;
     }
@@ -1112,4 +1262,41 @@ public class RDFWriter {
         this.removeDuplicates = removeDuplicates;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Converts the input in two passes without keeping the parsed entities in
+     * memory, for models that do not fit in the heap. This requires an input
+     * that can be opened twice.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getValueCacheSize() {
+        return valueCacheSize;
+    }
+
+    /**
+     * Caps the memory of the table of written value nodes (values such as
+     * IfcLengthMeasure_123 that are written once and then referenced), at
+     * about 24 bytes per node. When the table is full, values that were not
+     * used recently are forgotten, and a value that comes again gets a new
+     * node, so the output may hold several nodes with the same value. 0, the
+     * default, keeps every value.
+     */
+    public void setValueCacheSize(long valueCacheSize) {
+        this.valueCacheSize = valueCacheSize;
+    }
+
 }
@@ -0,0 +1,417 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.sparql.graph.GraphReadOnly;
+import org.apache.jena.vocabulary.OWL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.buildingsmart.tech.ifcowl.ExpressReader;
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+import com.buildingsmart.tech.ifcowl.vo.TypeVO;
+
+/**
+ * The EXPRESS schemas that have been loaded in this JVM. A schema is loaded on
+ * first use, at most once even when several threads ask for it at the same
+ * time, and is then shared by every conversion: its entity and type maps,
+ * ontology and {@link AttributeTable} are read-only.
+ * <p>
+ * A long-running process that only converts files of some schemas can limit
+ * the number of schemas that are kept, and the time an unused schema is kept.
+ * An evicted schema stays usable by the conversions that hold it, and is
+ * loaded again when it is needed again.
+ */
+public class SchemaRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaRegistry.class);
+
+    private static final String ONTOLOGY_BASE = "http://standards.buildingsmart.org/IFC/DEV/";
+
+    // the schemas whose EXPRESS file and ontology are bundled
+    private static final Set<String> SCHEMAS = new HashSet<>(Arrays.asList("IFC2X3_Final", "IFC2X3_TC1", "IFC4",
+            "IFC4_ADD1", "IFC4_ADD2", "IFC4_ADD2_TC1", "IFC4x1", "IFC4x3_RC1"));
+
+    private static final SchemaRegistry INSTANCE = new SchemaRegistry();
+
+    private final Map<String, Entry> schemas = new ConcurrentHashMap<>();
+    private volatile int maxSchemas = Integer.MAX_VALUE;
+    private volatile long expireAfterNanos = Long.MAX_VALUE;
+
+    /**
+     * @return the registry that is shared by the whole process
+     */
+    public static SchemaRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a schema, loading it if it is not loaded yet. Threads that ask
+     * for a schema that is being loaded wait for that load.
+     *
+     * @param name the EXPRESS schema name, e.g. IFC2X3_TC1 or IFC4_ADD2_TC1
+     * @throws IllegalArgumentException if the schema is not bundled
+     */
+    public Schema get(String name) {
+        if (!isSupported(name))
+            throw new IllegalArgumentException("Unrecognised EXPRESS schema: " + name);
+        Entry entry = schemas.get(name);
+        if (entry == null) {
+            Entry loading = new Entry(name);
+            entry = schemas.putIfAbsent(name, loading);
+            if (entry == null) {
+                entry = loading;
+                loading.task.run();
+            }
+        }
+        entry.lastUsed = System.nanoTime();
+        Schema schema;
+        try {
+            schema = entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading schema " + name, e);
+        } catch (ExecutionException e) {
+            // do not remember failures, a later call tries again
+            schemas.remove(name, entry);
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Could not load schema " + name, e.getCause());
+        }
+        evict(entry);
+        return schema;
+    }
+
+    /**
+     * @return true if the schema is bundled, so that files of that schema can
+     * be converted
+     */
+    public static boolean isSupported(String name) {
+        return SCHEMAS.contains(name);
+    }
+
+    /**
+     * @return true if the schema is loaded or being loaded
+     */
+    public boolean isLoaded(String name) {
+        return schemas.containsKey(name);
+    }
+
+    /**
+     * Forgets a schema, so that it is loaded again on next use.
+     */
+    public void evict(String name) {
+        schemas.remove(name);
+    }
+
+    /**
+     * Forgets all schemas.
+     */
+    public void clear() {
+        schemas.clear();
+    }
+
+    /**
+     * Sets the number of schemas that are kept. When more schemas are loaded,
+     * the ones that were used least recently are evicted. By default all
+     * schemas are kept.
+     */
+    public void setMaxSchemas(int maxSchemas) {
+        if (maxSchemas < 1)
+            throw new IllegalArgumentException("At least one schema must be kept");
+        this.maxSchemas = maxSchemas;
+    }
+
+    /**
+     * Sets the time after which a schema that has not been used is evicted.
+     * By default schemas are never evicted because of their age.
+     */
+    public void setExpireAfter(long duration, TimeUnit unit) {
+        this.expireAfterNanos = unit.toNanos(duration);
+    }
+
+    private void evict(Entry current) {
+        long now = System.nanoTime();
+        for (Entry entry : schemas.values()) {
+            if (entry != current && entry.task.isDone() && now - entry.lastUsed > expireAfterNanos) {
+                if (schemas.remove(entry.name, entry))
+                    LOG.info("Evicted schema " + entry.name + " that has not been used for a while");
+            }
+        }
+        while (schemas.size() > maxSchemas) {
+            Entry oldest = null;
+            for (Entry entry : schemas.values()) {
+                if (entry != current && entry.task.isDone() && (oldest == null || entry.lastUsed < oldest.lastUsed))
+                    oldest = entry;
+            }
+            if (oldest == null)
+                return;
+            if (schemas.remove(oldest.name, oldest))
+                LOG.info("Evicted schema " + oldest.name + " that was used least recently");
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final FutureTask<Schema> task;
+        private volatile long lastUsed = System.nanoTime();
+
+        private Entry(String name) {
+            this.name = name;
+            this.task = new FutureTask<>(() -> load(name));
+        }
+    }
+
+    private static Schema load(String name) {
+        long start = System.currentTimeMillis();
+        SchemaSnapshot snapshot = readSnapshot(name);
+        if (snapshot == null) {
+            LOG.warn("*WARNING 44*: There is no snapshot of schema " + name + ", reading its EXPRESS file and ontology instead.");
+            snapshot = buildSnapshot(name);
+        }
+        Schema schema = new Schema(snapshot);
+        LOG.info("Loaded schema " + name + " in " + (System.currentTimeMillis() - start) + " ms");
+        return schema;
+    }
+
+    /**
+     * @return the bundled snapshot of a schema, or null if it is not bundled
+     */
+    private static SchemaSnapshot readSnapshot(String name) {
+        URL url = SchemaRegistry.class.getResource("/" + name + ".snapshot");
+        if (url == null)
+            url = SchemaRegistry.class.getResource("/resources/" + name + ".snapshot");  // Eclipse FIX
+        if (url == null)
+            return null;
+        try {
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    return SchemaSnapshot.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+            try (InputStream in = url.openStream()) {
+                return SchemaSnapshot.read(ByteBuffer.wrap(in.readAllBytes()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not read the snapshot of schema " + name, e);
+        }
+    }
+
+    /**
+     * Builds the snapshot of a schema that has none from its bundled EXPRESS
+     * file and ontology, as {@link SchemaSnapshot#main(String[])} does.
+     */
+    private static SchemaSnapshot buildSnapshot(String name) {
+        try (InputStream exp = open("/" + name + ".exp")) {
+            if (exp == null)
+                throw new IllegalArgumentException("Unrecognised EXPRESS schema: " + name);
+            ExpressReader reader = new ExpressReader(exp);
+            reader.readAndBuild();
+            Model ontology = readOntology(name, SchemaRegistry::openBundledOntology);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SchemaSnapshot.write(name, reader.getEntities(), reader.getTypes(), ontology, out);
+            return SchemaSnapshot.read(ByteBuffer.wrap(out.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the URI of the ifcOWL ontology of an EXPRESS schema
+     */
+    public static String getOntologyURI(String name) {
+        String inAlt = name;
+        if (name.equalsIgnoreCase("IFC2X3_Final"))
+            inAlt = "IFC2x3/FINAL/";
+        if (name.equalsIgnoreCase("IFC2X3_TC1"))
+            inAlt = "IFC2x3/TC1/";
+        if (name.equalsIgnoreCase("IFC4_ADD1"))
+            inAlt = "IFC4/ADD1/";
+        if (name.equalsIgnoreCase("IFC4_ADD2"))
+            inAlt = "IFC4/ADD2/";
+        if (name.equalsIgnoreCase("IFC4_ADD2_TC1"))
+            inAlt = "IFC4/ADD2_TC1/";
+        if (name.equalsIgnoreCase("IFC4x1"))
+            inAlt = "IFC4_1/";
+        if (name.equalsIgnoreCase("IFC4x3"))
+            inAlt = "IFC4_3/RC1/";
+        if (name.equalsIgnoreCase("IFC4x3_RC1"))
+            inAlt = "IFC4_3/RC1/";
+        if (name.equalsIgnoreCase("IFC4"))
+            inAlt = "IFC4/FINAL/";
+        return ONTOLOGY_BASE + inAlt + "OWL";
+    }
+
+    /**
+     * Reads the ifcOWL ontology of the schema together with the ontologies it
+     * imports into a plain Model. The subclass closure that the conversion
+     * needs is computed by {@link AttributeTable}, and the imported express
+     * and list ontologies are read from the given copies instead of being
+     * downloaded.
+     */
+    static Model readOntology(String name, OntologySource source) throws IOException {
+        Model om = ModelFactory.createDefaultModel();
+        if (!readOntology(om, name, source))
+            throw new IllegalArgumentException("Unrecognised EXPRESS schema: " + name);
+        Set<String> imported = new HashSet<>();
+        List<String> imports = new ArrayList<>();
+        do {
+            imports.clear();
+            for (Statement s : om.listStatements(null, OWL.imports, (RDFNode) null).toList()) {
+                if (s.getObject().isURIResource() && imported.add(s.getResource().getURI()))
+                    imports.add(s.getResource().getURI());
+            }
+            for (String uri : imports) {
+                String imp = uri.substring(uri.lastIndexOf('/') + 1);
+                if (!readOntology(om, imp, source)) {
+                    LOG.warn("*WARNING 43*: Imported ontology " + uri + " is not bundled, reading it from the web.");
+                    om.read(uri);
+                }
+            }
+        } while (!imports.isEmpty());
+        return om;
+    }
+
+    private static boolean readOntology(Model om, String name, OntologySource source) throws IOException {
+        try (InputStream ttl = source.open(name)) {
+            if (ttl == null)
+                return false;
+            om.read(ttl, null, "TTL");
+            return true;
+        }
+    }
+
+    /**
+     * Where the Turtle files of an ontology and of the ontologies it imports
+     * are read from.
+     */
+    interface OntologySource {
+        /**
+         * @return the Turtle file of an ontology, e.g. IFC4 or express, or
+         * null if there is none
+         */
+        InputStream open(String name) throws IOException;
+    }
+
+    /**
+     * @return the bundled ontology of a schema or an imported ontology, or
+     * null if it is not bundled
+     */
+    static InputStream openBundledOntology(String name) {
+        return open("/" + name + ".ttl");
+    }
+
+    private static InputStream open(String resource) {
+        InputStream in = SchemaRegistry.class.getResourceAsStream(resource);
+        if (in == null)
+            in = SchemaRegistry.class.getResourceAsStream("/resources" + resource);  // Eclipse FIX
+        return in;
+    }
+
+    /**
+     * A loaded EXPRESS schema. Every part of it is read-only and can be used
+     * by several conversions at the same time. The conversion only needs the
+     * snapshot of the schema; the ontology is read when it is first asked for.
+     */
+    public static final class Schema {
+        private final SchemaSnapshot snapshot;
+        private volatile Model ontology;
+
+        private Schema(SchemaSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public String getName() {
+            return snapshot.getName();
+        }
+
+        public String getOntURI() {
+            return snapshot.getOntURI();
+        }
+
+        public Map<String, EntityVO> getEntityMap() {
+            return snapshot.getEntityMap();
+        }
+
+        public Map<String, TypeVO> getTypeMap() {
+            return snapshot.getTypeMap();
+        }
+
+        /**
+         * @return a read-only view of the ontology and the ontologies it
+         * imports
+         */
+        public Model getOntology() {
+            Model view = ontology;
+            if (view == null) {
+                synchronized (this) {
+                    view = ontology;
+                    if (view == null) {
+                        Model om;
+                        try {
+                            om = readOntology(getName(), SchemaRegistry::openBundledOntology);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        // the view keeps conversions from changing the shared ontology
+                        view = ModelFactory.createModelForGraph(new GraphReadOnly(om.getGraph()));
+                        view.setNsPrefixes(om.getNsPrefixMap());
+                        ontology = view;
+                    }
+                }
+            }
+            return view;
+        }
+
+        public AttributeTable getAttributeTable() {
+            return snapshot.getAttributeTable();
+        }
+
+        /**
+         * @return a new conversion of an input that uses this schema
+         */
+        public RDFWriter createWriter(SpfSource source, String baseURI) {
+            RDFWriter writer = new RDFWriter(null, source, baseURI, getEntityMap(), getTypeMap(), getOntURI());
+            writer.setAttributeTable(getAttributeTable());
+            return writer;
+        }
+    }
+}
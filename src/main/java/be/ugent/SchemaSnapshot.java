@@ -0,0 +1,491 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+
+import com.buildingsmart.tech.ifcowl.ExpressReader;
+import com.buildingsmart.tech.ifcowl.vo.AttributeVO;
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+import com.buildingsmart.tech.ifcowl.vo.TypeVO;
+
+/**
+ * Everything the conversion needs to know about an EXPRESS schema in one
+ * compact binary file: the entities with their derived attribute lists, the
+ * types, and the {@link AttributeTable} answers of the ifcOWL ontology. It is
+ * generated from the <code>.exp</code> and <code>.ttl</code> files by
+ * {@link #main(String[])}, and read from a (mapped) buffer without reflection
+ * and without reading the ontology.
+ * <p>
+ * After a four byte magic number and a four byte version, all numbers are
+ * variable-length integers of seven bits per byte:
+ * <pre>
+ * header    schema name, ontology URI
+ * strings   count, then per string its UTF-8 length and namespace, and bytes
+ * types     count, then per type: key, name, primary type, select entities,
+ *           enumeration entities, two list cardinalities
+ * ranges    count, then per range: URI, flags, XSD type, value property,
+ *           list content type, individuals with their labels
+ * entities  count, then per entity: key, name, superclass, abstract flag,
+ *           derived attributes with their name, original name, type name,
+ *           primary type, flags, four cardinalities, property and range
+ * </pre>
+ * Strings are written as their index in the string table plus one, 0 for
+ * null, and the URIs of the schema, express and list namespaces without the
+ * namespace. A key of 0 is the upper case name. Lists are written as a count
+ * followed by their elements.
+ */
+public final class SchemaSnapshot {
+
+    private static final int MAGIC = 0x49464353;
+    private static final int VERSION = 1;
+
+    private static final String EXPRESS_NS = "https://w3id.org/express#";
+    private static final String LIST_NS = "https://w3id.org/list#";
+
+    private static final int RANGE_CLASS = 1;
+    private static final int RANGE_ENUMERATION = 2;
+    private static final int RANGE_SELECT = 4;
+    private static final int RANGE_LIST = 8;
+
+    private static final int ATTRIBUTE_ARRAY = 1;
+    private static final int ATTRIBUTE_SET = 2;
+    private static final int ATTRIBUTE_LIST = 4;
+    private static final int ATTRIBUTE_LIST_OF_LIST = 8;
+    private static final int ATTRIBUTE_OPTIONAL = 16;
+    private static final int ATTRIBUTE_UNIQUE = 32;
+    private static final int ATTRIBUTE_ONE_TO_ONE = 64;
+
+    private final String name;
+    private final String ontURI;
+    private final Map<String, EntityVO> ent;
+    private final Map<String, TypeVO> typ;
+    private final AttributeTable attributes;
+
+    private SchemaSnapshot(String name, String ontURI, Map<String, EntityVO> ent, Map<String, TypeVO> typ, AttributeTable attributes) {
+        this.name = name;
+        this.ontURI = ontURI;
+        this.ent = ent;
+        this.typ = typ;
+        this.attributes = attributes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOntURI() {
+        return ontURI;
+    }
+
+    public Map<String, EntityVO> getEntityMap() {
+        return ent;
+    }
+
+    public Map<String, TypeVO> getTypeMap() {
+        return typ;
+    }
+
+    public AttributeTable getAttributeTable() {
+        return attributes;
+    }
+
+    /**
+     * Generates the snapshots of EXPRESS schemas.
+     *
+     * @param args the directory with the <code>.exp</code> and
+     *             <code>.ttl</code> files, the directory to write the
+     *             snapshots to, and the schema names
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: SchemaSnapshot <resource directory> <output directory> <schema>...");
+            return;
+        }
+        for (int i = 2; i < args.length; i++) {
+            File output = new File(args[1], args[i] + ".snapshot");
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+                generate(new File(args[0]), args[i], out);
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot of a schema, reading its EXPRESS file and its
+     * ontology with the ontologies it imports from a directory.
+     */
+    public static void generate(File resources, String name, OutputStream out) throws IOException {
+        ExpressReader reader;
+        try (InputStream exp = new FileInputStream(new File(resources, name + ".exp"))) {
+            reader = new ExpressReader(exp);
+            reader.readAndBuild();
+        }
+        Model ontology = SchemaRegistry.readOntology(name, imp -> {
+            File ttl = new File(resources, imp + ".ttl");
+            return ttl.isFile() ? new FileInputStream(ttl) : null;
+        });
+        write(name, reader.getEntities(), reader.getTypes(), ontology, out);
+    }
+
+    /**
+     * Writes the snapshot of a schema. Besides the ranges of the attributes
+     * and the classes of the entities and types, the snapshot holds every
+     * named class and every resource of the schema namespace: all the
+     * resources the conversion can look up.
+     */
+    static void write(String name, Map<String, EntityVO> ent, Map<String, TypeVO> typ, Model ontology, OutputStream out) throws IOException {
+        String ontURI = SchemaRegistry.getOntologyURI(name);
+        String[] namespaces = {ontURI + "#", EXPRESS_NS, LIST_NS};
+        AttributeTable table = new AttributeTable(ontology, ent, typ, namespaces[0]);
+        for (String uri : listResources(ontology, namespaces[0]))
+            table.getRange(uri);
+        boolean added;
+        do {
+            added = false;
+            for (AttributeTable.Range range : new ArrayList<>(table.getRanges().values())) {
+                Resource content = range.getListContentType();
+                if (content != null && !table.getRanges().containsKey(content.getURI()))
+                    added |= table.getRange(content) != null;
+            }
+        } while (added);
+
+        Writer body = new Writer();
+
+        Map<String, TypeVO> types = new TreeMap<>(typ);
+        body.writeInt(types.size());
+        for (Map.Entry<String, TypeVO> e : types.entrySet()) {
+            TypeVO tvo = e.getValue();
+            body.writeKey(e.getKey(), tvo.getName());
+            body.writeString(tvo.getName());
+            body.writeString(tvo.getPrimarytype());
+            body.writeStrings(tvo.getSelectEntities());
+            body.writeStrings(tvo.getEnumEntities());
+            int[] cardinalities = tvo.getListCardinalities();
+            body.writeSigned(cardinalities == null || cardinalities.length < 1 ? 0 : cardinalities[0]);
+            body.writeSigned(cardinalities == null || cardinalities.length < 2 ? 0 : cardinalities[1]);
+        }
+
+        Map<String, AttributeTable.Range> ranges = new TreeMap<>(table.getRanges());
+        Map<AttributeTable.Range, Integer> rangeIndexes = new HashMap<>();
+        body.writeInt(ranges.size());
+        for (Map.Entry<String, AttributeTable.Range> e : ranges.entrySet()) {
+            AttributeTable.Range range = e.getValue();
+            rangeIndexes.put(range, rangeIndexes.size());
+            body.writeString(e.getKey());
+            body.writeInt((range.isClass() ? RANGE_CLASS : 0) | (range.isEnumeration() ? RANGE_ENUMERATION : 0)
+                    | (range.isSelect() ? RANGE_SELECT : 0) | (range.isList() ? RANGE_LIST : 0));
+            body.writeString(range.getXSDType());
+            body.writeString(range.getValueProperty() == null ? null : range.getValueProperty().getURI());
+            body.writeString(range.getListContentType() == null ? null : range.getListContentType().getURI());
+            body.writeInt(range.getIndividuals().size());
+            for (AttributeTable.EnumIndividual individual : range.getIndividuals()) {
+                body.writeString(individual.getNode().getURI());
+                body.writeString(individual.getLabel());
+            }
+        }
+
+        Map<String, EntityVO> entities = new TreeMap<>(ent);
+        body.writeInt(entities.size());
+        for (Map.Entry<String, EntityVO> e : entities.entrySet()) {
+            EntityVO evo = e.getValue();
+            body.writeKey(e.getKey(), evo.getName());
+            body.writeString(evo.getName());
+            body.writeString(evo.getSuperclass());
+            body.writeInt(evo.isAbstractSuperclass() ? 1 : 0);
+            List<AttributeVO> derived = evo.getDerivedAttributeList() == null ? Collections.emptyList() : evo.getDerivedAttributeList();
+            body.writeInt(derived.size());
+            for (int i = 0; i < derived.size(); i++) {
+                AttributeVO avo = derived.get(i);
+                AttributeTable.Attribute attribute = table.getAttribute(evo, i);
+                AttributeTable.Range range = attribute.getRange();
+                if (range != null && !rangeIndexes.containsKey(range))
+                    throw new IllegalStateException("The range of " + attribute.getProperty() + " is not a named class");
+                body.writeString(avo.getName());
+                body.writeString(avo.getOriginalName());
+                body.writeString(avo.getType() == null ? null : avo.getType().getName());
+                body.writeString(avo.getType() == null ? null : avo.getType().getPrimarytype());
+                body.writeInt((avo.isArray() ? ATTRIBUTE_ARRAY : 0) | (avo.isSet() ? ATTRIBUTE_SET : 0)
+                        | (avo.isList() ? ATTRIBUTE_LIST : 0) | (avo.isListOfList() ? ATTRIBUTE_LIST_OF_LIST : 0)
+                        | (avo.isOptional() ? ATTRIBUTE_OPTIONAL : 0) | (avo.isUnique() ? ATTRIBUTE_UNIQUE : 0)
+                        | (avo.isOne2One() ? ATTRIBUTE_ONE_TO_ONE : 0));
+                body.writeSigned(avo.getMinCard());
+                body.writeSigned(avo.getMaxCard());
+                body.writeSigned(avo.getMinCardListOfList());
+                body.writeSigned(avo.getMaxCardListOfList());
+                body.writeString(attribute.getProperty() == null ? null : attribute.getProperty().getURI());
+                body.writeInt(range == null ? 0 : rangeIndexes.get(range) + 1);
+            }
+        }
+
+        Writer header = new Writer();
+        header.writeBytes(name.getBytes(StandardCharsets.UTF_8), 0);
+        header.writeBytes(ontURI.getBytes(StandardCharsets.UTF_8), 0);
+        header.writeInt(body.strings.size());
+        for (String s : body.strings) {
+            int namespace = 0;
+            for (int i = 0; i < namespaces.length && namespace == 0; i++) {
+                if (s.startsWith(namespaces[i]) && s.length() > namespaces[i].length()) {
+                    namespace = i + 1;
+                    s = s.substring(namespaces[i].length());
+                }
+            }
+            header.writeBytes(s.getBytes(StandardCharsets.UTF_8), namespace);
+        }
+
+        ByteBuffer start = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+        out.write(start.array());
+        header.bytes.writeTo(out);
+        body.bytes.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Reads a snapshot, from the current position of the buffer.
+     *
+     * @throws IllegalArgumentException if the buffer does not hold a snapshot
+     *                                  of this version
+     */
+    public static SchemaSnapshot read(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException("Not a schema snapshot");
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported schema snapshot version " + version);
+        Reader in = new Reader(buffer);
+        String name = in.readBytes(null);
+        String ontURI = in.readBytes(null);
+        String[] namespaces = {ontURI + "#", EXPRESS_NS, LIST_NS};
+        in.strings = new String[in.readInt()];
+        for (int i = 0; i < in.strings.length; i++)
+            in.strings[i] = in.readBytes(namespaces);
+
+        // the library keeps every TypeVO it creates in a static list, so
+        // every load of a schema leaves its types there
+        Map<String, TypeVO> typ = new LinkedHashMap<>();
+        Map<String, TypeVO> typesByName = new HashMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            TypeVO tvo = new TypeVO(in.readString(), in.readString());
+            tvo.setSelectEntities(in.readStrings());
+            tvo.setEnumEntities(in.readStrings());
+            tvo.setListCardinalities(new int[]{in.readSigned(), in.readSigned()});
+            typ.put(key == null ? tvo.getName().toUpperCase() : key, tvo);
+            typesByName.put(tvo.getName(), tvo);
+        }
+
+        AttributeTable.Range[] rangeList = new AttributeTable.Range[in.readInt()];
+        Map<String, AttributeTable.Range> ranges = new HashMap<>();
+        for (int i = 0; i < rangeList.length; i++) {
+            String uri = in.readString();
+            int flags = in.readInt();
+            String xsdType = in.readString();
+            String valueProperty = in.readString();
+            String listContentType = in.readString();
+            int individualCount = in.readInt();
+            List<AttributeTable.EnumIndividual> individuals = new ArrayList<>(individualCount);
+            for (int j = 0; j < individualCount; j++) {
+                Resource individual = ResourceFactory.createResource(in.readString());
+                individuals.add(new AttributeTable.EnumIndividual(individual, in.readString()));
+            }
+            rangeList[i] = new AttributeTable.Range(ResourceFactory.createResource(uri), (flags & RANGE_CLASS) != 0,
+                    (flags & RANGE_ENUMERATION) != 0, (flags & RANGE_SELECT) != 0, (flags & RANGE_LIST) != 0, xsdType,
+                    valueProperty == null ? null : ResourceFactory.createProperty(valueProperty),
+                    listContentType == null ? null : ResourceFactory.createResource(listContentType),
+                    individuals.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(individuals));
+            ranges.put(uri, rangeList[i]);
+        }
+
+        Map<String, EntityVO> ent = new LinkedHashMap<>();
+        Map<String, AttributeTable.Attribute[]> attributeLists = new HashMap<>();
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            EntityVO evo = new EntityVO();
+            evo.setName(in.readString());
+            evo.setSuperclass(in.readString());
+            evo.setAbstractSuperclass(in.readInt() != 0);
+            AttributeTable.Attribute[] attributes = new AttributeTable.Attribute[in.readInt()];
+            List<AttributeVO> derived = new ArrayList<>(attributes.length);
+            for (int j = 0; j < attributes.length; j++) {
+                String attributeName = in.readString();
+                String originalName = in.readString();
+                String typeName = in.readString();
+                String primaryType = in.readString();
+                int flags = in.readInt();
+                TypeVO type = null;
+                if (typeName != null)
+                    type = typesByName.computeIfAbsent(typeName, n -> new TypeVO(n, primaryType));
+                AttributeVO avo = new AttributeVO(attributeName, type, (flags & ATTRIBUTE_ARRAY) != 0,
+                        (flags & ATTRIBUTE_SET) != 0, (flags & ATTRIBUTE_LIST) != 0, (flags & ATTRIBUTE_LIST_OF_LIST) != 0,
+                        in.readSigned(), in.readSigned(), in.readSigned(), in.readSigned(), (flags & ATTRIBUTE_OPTIONAL) != 0);
+                avo.setOriginalName(originalName);
+                avo.setUnique((flags & ATTRIBUTE_UNIQUE) != 0);
+                avo.setOne2One((flags & ATTRIBUTE_ONE_TO_ONE) != 0);
+                avo.setDomain(evo);
+                derived.add(avo);
+                String property = in.readString();
+                int range = in.readInt();
+                attributes[j] = new AttributeTable.Attribute(property == null ? null : ResourceFactory.createProperty(property),
+                        range == 0 ? null : rangeList[range - 1]);
+            }
+            evo.setDerivedAttributeList(derived);
+            ent.put(key == null ? evo.getName().toUpperCase() : key, evo);
+            attributeLists.put(evo.getName(), attributes);
+        }
+        AttributeTable table = new AttributeTable(namespaces[0], attributeLists, ranges);
+        return new SchemaSnapshot(name, ontURI, Collections.unmodifiableMap(ent), Collections.unmodifiableMap(typ), table);
+    }
+
+    private static List<String> listResources(Model ontology, String ontNS) {
+        TreeSet<String> uris = new TreeSet<>();
+        StmtIterator it = ontology.listStatements();
+        while (it.hasNext()) {
+            Statement s = it.next();
+            addResource(uris, s.getSubject(), ontNS);
+            addResource(uris, s.getPredicate(), ontNS);
+            addResource(uris, s.getObject(), ontNS);
+            if (s.getPredicate().equals(RDF.type) && s.getObject().equals(OWL.Class) && s.getSubject().isURIResource())
+                uris.add(s.getSubject().getURI());
+        }
+        return new ArrayList<>(uris);
+    }
+
+    private static void addResource(TreeSet<String> uris, RDFNode node, String ontNS) {
+        if (node.isURIResource() && node.asResource().getURI().startsWith(ontNS))
+            uris.add(node.asResource().getURI());
+    }
+
+    private static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        void writeInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write(value);
+        }
+
+        void writeSigned(int value) {
+            writeInt((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeInt(0);
+                return;
+            }
+            writeInt(indexes.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size();
+            }));
+        }
+
+        void writeKey(String key, String name) {
+            writeString(key.equals(name.toUpperCase()) ? null : key);
+        }
+
+        void writeStrings(List<String> list) {
+            if (list == null) {
+                writeSigned(-1);
+                return;
+            }
+            writeSigned(list.size());
+            for (String s : list)
+                writeString(s);
+        }
+
+        void writeBytes(byte[] b, int namespace) {
+            writeInt(b.length << 2 | namespace);
+            bytes.write(b, 0, b.length);
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private String[] strings;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int readInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+        }
+
+        int readSigned() {
+            int value = readInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            int index = readInt();
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        List<String> readStrings() {
+            int count = readSigned();
+            if (count < 0)
+                return null;
+            List<String> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                list.add(readString());
+            return list;
+        }
+
+        String readBytes(String[] namespaces) {
+            int header = readInt();
+            byte[] b = new byte[header >>> 2];
+            buffer.get(b);
+            String s = new String(b, StandardCharsets.UTF_8);
+            int namespace = header & 3;
+            return namespace == 0 ? s : namespaces[namespace - 1] + s;
+        }
+    }
+}
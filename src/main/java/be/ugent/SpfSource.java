@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An IFC-SPF input that can be opened more than once, which the streaming
+ * conversion needs for its second pass.
+ */
+public interface SpfSource {
+
+    /**
+     * @return a new stream positioned at the start of the input, to be closed
+     * by the caller
+     */
+    InputStream open() throws IOException;
+
+    /**
+     * @return false if the input can only be read once
+     */
+    default boolean isReopenable() {
+        return true;
+    }
+
+    /**
+     * Opens a file, which is decompressed while it is read when it starts with
+     * the gzip magic bytes. Of a zip file, such as an .ifczip file, the entry
+     * with the SPF file is read from the archive. A file that is not
+     * compressed is opened as a {@link FileInputStream}, so the parser can
+     * read its channel.
+     */
+    static SpfSource of(File file) {
+        return () -> {
+            int magic;
+            try (InputStream in = new FileInputStream(file)) {
+                magic = in.read() << 8 | in.read();
+            }
+            // gzip and the local file header of zip
+            if (magic == 0x1f8b)
+                return new GZIPInputStream(new FileInputStream(file), 1 << 16);
+            if (magic == 0x504b)
+                return openSpfEntry(file);
+            return new FileInputStream(file);
+        };
+    }
+
+    /**
+     * Opens the only .ifc entry of a zip file, or its only entry when it has
+     * no .ifc entry. Closing the stream closes the archive.
+     */
+    private static InputStream openSpfEntry(File file) throws IOException {
+        ZipFile zip = new ZipFile(file);
+        try {
+            ZipEntry spf = null;
+            ZipEntry only = null;
+            int files = 0;
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.isDirectory() || entry.getName().startsWith("__MACOSX/"))
+                    continue;
+                files++;
+                only = entry;
+                if (entry.getName().toLowerCase(Locale.ROOT).endsWith(".ifc")) {
+                    if (spf != null)
+                        throw new IOException(file + " contains more than one IFC file: " + spf.getName() + " and " + entry.getName());
+                    spf = entry;
+                }
+            }
+            if (spf == null && files == 1)
+                spf = only;
+            if (spf == null)
+                throw new IOException(file + " does not contain an IFC file");
+            return new FilterInputStream(zip.getInputStream(spf)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zip.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps a stream that was opened by someone else, and can therefore only
+     * be read once.
+     */
+    static SpfSource of(InputStream inputStream) {
+        return new SpfSource() {
+            private boolean opened = false;
+
+            @Override
+            public InputStream open() throws IOException {
+                if (opened)
+                    throw new IOException("The input stream has already been read");
+                opened = true;
+                return inputStream;
+            }
+
+            @Override
+            public boolean isReopenable() {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The content of a STRING parameter as it is written in the file: the bytes
+ * between the enclosing quotes, with doubled quotes and the control
+ * directives of ISO 10303-21 (<code>\X2\...\X0\</code>, <code>\X\hh</code>,
+ * <code>\S\c</code>, ...) still encoded. The text is only decoded when it is
+ * asked for, in one pass with {@link #decodeTo(StringBuilder)}.
+ * <p>
+ * Two StepStrings are equal when their encoded bytes are equal.
+ */
+public final class StepString {
+
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final Charset[] CODE_PAGES = new Charset[9];
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    private StepString(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return the encoded form of a text, with quotes doubled, backslashes
+     * escaped and other characters as UTF-8
+     */
+    public static StepString of(String text) {
+        String encoded = text.replace("\\", "\\\\").replace("'", "''");
+        byte[] bytes = encoded.getBytes(StandardCharsets.UTF_8);
+        return new StepString(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the number of encoded bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the encoded bytes as they were written in the file
+     */
+    public String getEncoded() {
+        return new String(data, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the decoded text. Bytes outside of control directives are
+     * decoded as UTF-8; a malformed directive is appended as written.
+     */
+    public void decodeTo(StringBuilder sb) {
+        Charset codePage = null; // ISO 8859-1
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int b = data[i] & 0xFF;
+            if (b == '\'') {
+                sb.append('\'');
+                i += i + 1 < end && data[i + 1] == '\'' ? 2 : 1;
+            } else if (b == '\\') {
+                int next = decodeDirective(i, end, sb, codePage);
+                if (next > 0) {
+                    i = next;
+                } else if (i + 3 < end && data[i + 1] == 'P' && data[i + 3] == '\\'
+                        && data[i + 2] >= 'A' && data[i + 2] <= 'I') {
+                    codePage = codePage(data[i + 2] - 'A');
+                    i += 4;
+                } else {
+                    sb.append('\\');
+                    i++;
+                }
+            } else if (b < 0x80) {
+                sb.append((char) b);
+                i++;
+            } else {
+                i = decodeUtf8(i, end, sb);
+            }
+        }
+    }
+
+    /**
+     * Decodes the directive that starts with the backslash at index i.
+     *
+     * @return the index after the directive, or -1 if it is not a complete
+     * \\, \S\, \X\, \X2\ or \X4\ directive
+     */
+    private int decodeDirective(int i, int end, StringBuilder sb, Charset codePage) {
+        if (i + 1 >= end)
+            return -1;
+        byte d = data[i + 1];
+        if (d == '\\') {
+            sb.append('\\');
+            return i + 2;
+        }
+        if (d == 'S' && i + 3 < end && data[i + 2] == '\\') {
+            int c = (data[i + 3] & 0x7F) + 0x80;
+            if (codePage == null)
+                sb.append((char) c);
+            else
+                sb.append(new String(new byte[]{(byte) c}, codePage));
+            // a quote is doubled after the directive as anywhere else
+            return data[i + 3] == '\'' && i + 4 < end && data[i + 4] == '\'' ? i + 5 : i + 4;
+        }
+        if (d != 'X' || i + 2 >= end)
+            return -1;
+        if (data[i + 2] == '\\') {
+            int c = hex(i + 3, 2, end);
+            if (c < 0)
+                return -1;
+            sb.append((char) c);
+            return i + 5;
+        }
+        int digits = data[i + 2] == '2' ? 4 : data[i + 2] == '4' ? 8 : 0;
+        if (digits == 0 || i + 3 >= end || data[i + 3] != '\\')
+            return -1;
+        int mark = sb.length();
+        int j = i + 4;
+        while (true) {
+            if (j + 3 < end && data[j] == '\\' && data[j + 1] == 'X' && data[j + 2] == '0' && data[j + 3] == '\\')
+                return j + 4;
+            int c = hex(j, digits, end);
+            if (c < 0 || (digits == 8 && !Character.isValidCodePoint(c))) {
+                sb.setLength(mark);
+                return -1;
+            }
+            if (digits == 4)
+                sb.append((char) c);
+            else
+                sb.appendCodePoint(c);
+            j += digits;
+        }
+    }
+
+    /**
+     * @return the value of a number of hexadecimal digits, or -1
+     */
+    private int hex(int i, int digits, int end) {
+        if (i + digits > end)
+            return -1;
+        int value = 0;
+        for (int j = i; j < i + digits; j++) {
+            int digit = Character.digit(data[j], 16);
+            if (digit < 0)
+                return -1;
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private int decodeUtf8(int i, int end, StringBuilder sb) {
+        int b = data[i] & 0xFF;
+        int count = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : -1;
+        if (count < 0 || b >= 0xF8 || i + count >= end) {
+            sb.append(REPLACEMENT);
+            return i + 1;
+        }
+        int c = b & (0x3F >> count);
+        for (int j = 1; j <= count; j++) {
+            int next = data[i + j] & 0xFF;
+            if ((next & 0xC0) != 0x80) {
+                sb.append(REPLACEMENT);
+                return i + j;
+            }
+            c = c << 6 | next & 0x3F;
+        }
+        if (Character.isValidCodePoint(c))
+            sb.appendCodePoint(c);
+        else
+            sb.append(REPLACEMENT);
+        return i + count + 1;
+    }
+
+    private static Charset codePage(int page) {
+        if (page == 0)
+            return null;
+        Charset charset = CODE_PAGES[page];
+        if (charset == null) {
+            charset = Charset.forName("ISO-8859-" + (page + 1));
+            CODE_PAGES[page] = charset;
+        }
+        return charset;
+    }
+
+    /**
+     * Adds the length and the encoded bytes, eight per long.
+     */
+    void addTo(Fingerprint fingerprint) {
+        fingerprint.add(length);
+        int end = offset + length;
+        int i = offset;
+        for (; i + 8 <= end; i += 8) {
+            long k = 0;
+            for (int j = 7; j >= 0; j--)
+                k = k << 8 | data[i + j] & 0xFF;
+            fingerprint.add(k);
+        }
+        long rest = 0;
+        for (int shift = 0; i < end; i++, shift += 8)
+            rest |= (long) (data[i] & 0xFF) << shift;
+        if (rest != 0)
+            fingerprint.add(rest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof StepString))
+            return false;
+        StepString other = (StepString) o;
+        if (length != other.length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (data[offset + i] != other.data[other.offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++)
+            hash = 31 * hash + data[i];
+        return hash;
+    }
+
+    /**
+     * @return the decoded text
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length);
+        decodeTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Copies the content of string tokens into shared blocks, so that the
+     * many short strings of a model do not each need an array of their own.
+     * An arena is used by one thread.
+     */
+    static final class Arena {
+
+        private static final int BLOCK_SIZE = 1 << 16;
+        private static final int MAX_SHARED = BLOCK_SIZE / 8;
+
+        private byte[] block = new byte[0];
+        private int used = 0;
+
+        /**
+         * @return the bytes from index start to end of a buffer
+         */
+        StepString copy(ByteBuffer buffer, int start, int end) {
+            int length = end - start;
+            byte[] target;
+            int offset;
+            if (length > MAX_SHARED) {
+                target = new byte[length];
+                offset = 0;
+            } else {
+                if (used + length > block.length) {
+                    block = new byte[BLOCK_SIZE];
+                    used = 0;
+                }
+                target = block;
+                offset = used;
+                used += length;
+            }
+            for (int i = 0; i < length; i++)
+                target[offset + i] = buffer.get(start + i);
+            return new StepString(target, offset, length);
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * The parameters of an entity instance, or the elements of an aggregate, as a
+ * compact typed array. Every element has a kind. References, INTEGER and REAL
+ * values are stored as primitives, strings as {@link StepString}s that are
+ * only decoded when they are asked for, enumerations, binaries and keywords
+ * as Strings and nested aggregates as nested ValueLists.
+ * <p>
+ * A typed parameter such as <code>IFCLABEL('x')</code> is stored as a
+ * {@link #KEYWORD} element immediately followed by the {@link #LIST} of its
+ * arguments.
+ * <p>
+ * REAL and INTEGER values remember their lexical form, so that
+ * {@link #getLexicalForm(int)} returns the number as it was written in the
+ * file. For the common case of a plain decimal with at most 15 significant
+ * digits the lexical form is rebuilt from the value and the number of
+ * fraction digits; other forms (exponents, leading zeros, a <code>+</code>
+ * sign) are kept as a String.
+ */
+public final class ValueList {
+
+    public static final byte UNSET = 0;
+    public static final byte DERIVED = 1;
+    public static final byte REFERENCE = 2;
+    public static final byte INTEGER = 3;
+    public static final byte REAL = 4;
+    public static final byte STRING = 5;
+    public static final byte ENUMERATION = 6;
+    public static final byte BINARY = 7;
+    public static final byte KEYWORD = 8;
+    public static final byte LIST = 9;
+
+    private static final int KIND_MASK = 0x0F;
+    private static final int FRACTION_SHIFT = 4;
+    private static final int MAX_FRACTION_DIGITS = 15;
+    private static final long MAX_UNSCALED = 1_000_000_000_000_000L;
+    private static final double[] POWERS_OF_TEN = new double[MAX_FRACTION_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    static final ValueList EMPTY = new ValueList(new byte[0], null, null);
+
+    // the low 4 bits hold the kind, the high 4 bits the fraction digits of a REAL
+    private final byte[] kinds;
+    // null when no element has a primitive value
+    private final long[] values;
+    // null when no element has an object value
+    private final Object[] objects;
+
+    private ValueList(byte[] kinds, long[] values, Object[] objects) {
+        this.kinds = kinds;
+        this.values = values;
+        this.objects = objects;
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public byte getKind(int index) {
+        return (byte) (kinds[index] & KIND_MASK);
+    }
+
+    /**
+     * @return the line number referenced by a {@link #REFERENCE} element, or
+     * {@link Long#MIN_VALUE} if the reference could not be read as a number
+     */
+    public long getReference(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the value of an {@link #INTEGER} element, clamped to the range
+     * of a long
+     */
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the value of a {@link #REAL} or {@link #INTEGER} element
+     */
+    public double getDouble(int index) {
+        if (getKind(index) == INTEGER)
+            return values[index];
+        return Double.longBitsToDouble(values[index]);
+    }
+
+    /**
+     * @return the kind of an element, with the number of fraction digits of a
+     * REAL that is written as a plain decimal in the high bits
+     */
+    byte getFormat(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * @return the value of a {@link #REFERENCE} or {@link #INTEGER} element,
+     * or the bits of the value of a {@link #REAL} element
+     */
+    long getBits(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the lexical form that is kept for an {@link #INTEGER} or
+     * {@link #REAL} element that is not rebuilt from its value, or null
+     */
+    String getKeptLexicalForm(int index) {
+        return objects == null ? null : (String) objects[index];
+    }
+
+    /**
+     * @return the decoded content of a {@link #STRING} element, or the token
+     * of an {@link #ENUMERATION}, {@link #BINARY} or {@link #KEYWORD} element
+     * as it was written in the file
+     */
+    public String getString(int index) {
+        return objects[index].toString();
+    }
+
+    /**
+     * @return the undecoded content of a {@link #STRING} element
+     */
+    public StepString getStepString(int index) {
+        return (StepString) objects[index];
+    }
+
+    public ValueList getList(int index) {
+        return (ValueList) objects[index];
+    }
+
+    /**
+     * @return the element as it was written in the file; a {@link #STRING} is
+     * returned decoded, like {@link #getString(int)}, and a
+     * {@link #LIST} is rendered with {@link #toString()}
+     */
+    public String getLexicalForm(int index) {
+        switch (getKind(index)) {
+            case UNSET:
+                return "$";
+            case DERIVED:
+                return "*";
+            case REFERENCE:
+                return "#" + values[index];
+            case INTEGER:
+                if (objects != null && objects[index] != null)
+                    return (String) objects[index];
+                return Long.toString(values[index]);
+            case REAL:
+                if (objects != null && objects[index] != null)
+                    return (String) objects[index];
+                return formatDecimal(Double.longBitsToDouble(values[index]), (kinds[index] & 0xFF) >>> FRACTION_SHIFT);
+            default:
+                return objects[index].toString();
+        }
+    }
+
+    private static String formatDecimal(double value, int fractionDigits) {
+        long unscaled = Math.round(Math.abs(value) * POWERS_OF_TEN[fractionDigits]);
+        String digits = Long.toString(unscaled);
+        StringBuilder sb = new StringBuilder(digits.length() + fractionDigits + 3);
+        if (Double.doubleToRawLongBits(value) < 0)
+            sb.append('-');
+        for (int i = digits.length(); i <= fractionDigits; i++)
+            sb.append('0');
+        sb.append(digits);
+        sb.insert(sb.length() - fractionDigits, '.');
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ValueList))
+            return false;
+        ValueList other = (ValueList) o;
+        return Arrays.equals(kinds, other.kinds) && Arrays.equals(values, other.values)
+                && Arrays.equals(objects, other.objects);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(kinds), Arrays.hashCode(values), Arrays.hashCode(objects));
+    }
+
+    /**
+     * Adds the content of the list to a fingerprint, with every reference
+     * replaced by the line number it resolves to. Lists that are
+     * {@link #equalsResolved equal} after resolving give the same fingerprint.
+     */
+    void addTo(Fingerprint fingerprint, LongUnaryOperator resolve) {
+        fingerprint.add(kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+            fingerprint.add(kinds[i]);
+            switch (getKind(i)) {
+                case UNSET:
+                case DERIVED:
+                    break;
+                case REFERENCE:
+                    fingerprint.add(resolve.applyAsLong(values[i]));
+                    break;
+                case INTEGER:
+                case REAL:
+                    fingerprint.add(values[i]);
+                    if (objects != null && objects[i] != null)
+                        fingerprint.add((String) objects[i]);
+                    else
+                        fingerprint.add(-1);
+                    break;
+                case LIST:
+                    getList(i).addTo(fingerprint, resolve);
+                    break;
+                case STRING:
+                    getStepString(i).addTo(fingerprint);
+                    break;
+                default:
+                    fingerprint.add((String) objects[i]);
+            }
+        }
+    }
+
+    /**
+     * @return true if both lists are equal when every reference is replaced
+     *         by the line number it resolves to
+     */
+    boolean equalsResolved(ValueList other, LongUnaryOperator resolve) {
+        if (!Arrays.equals(kinds, other.kinds))
+            return false;
+        for (int i = 0; i < kinds.length; i++) {
+            switch (getKind(i)) {
+                case UNSET:
+                case DERIVED:
+                    break;
+                case REFERENCE:
+                    if (values[i] != other.values[i]
+                            && resolve.applyAsLong(values[i]) != resolve.applyAsLong(other.values[i]))
+                        return false;
+                    break;
+                case INTEGER:
+                case REAL:
+                    if (values[i] != other.values[i] || !Objects.equals(objects == null ? null : objects[i],
+                            other.objects == null ? null : other.objects[i]))
+                        return false;
+                    break;
+                case LIST:
+                    if (!getList(i).equalsResolved(other.getList(i), resolve))
+                        return false;
+                    break;
+                default:
+                    if (!objects[i].equals(other.objects[i]))
+                        return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders the list in SPF syntax, e.g. <code>(#3,'a''b',$,(1.,2.))</code>.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    void appendTo(StringBuilder sb) {
+        sb.append('(');
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0 && !(getKind(i) == LIST && getKind(i - 1) == KEYWORD))
+                sb.append(',');
+            if (getKind(i) == LIST)
+                getList(i).appendTo(sb);
+            else if (getKind(i) == STRING)
+                sb.append('\'').append(getStepString(i).getEncoded()).append('\'');
+            else
+                sb.append(getLexicalForm(i));
+        }
+        sb.append(')');
+    }
+
+    /**
+     * Collects the elements of a list. A builder can be reused after
+     * {@link #build()}.
+     */
+    public static final class Builder {
+
+        private byte[] kinds = new byte[16];
+        private long[] values = new long[16];
+        private Object[] objects = new Object[16];
+        private int size = 0;
+        private boolean hasValues = false;
+        private boolean hasObjects = false;
+
+        public Builder addUnset() {
+            return add(UNSET, 0, null);
+        }
+
+        public Builder addDerived() {
+            return add(DERIVED, 0, null);
+        }
+
+        public Builder addReference(long lineNum) {
+            hasValues = true;
+            return add(REFERENCE, lineNum, null);
+        }
+
+        /**
+         * @param lexicalForm the number as written in the file, or null if it
+         *                    is written the way {@link Long#toString(long)}
+         *                    would write it
+         */
+        public Builder addInteger(long value, String lexicalForm) {
+            hasValues = true;
+            return add(INTEGER, value, lexicalForm);
+        }
+
+        /**
+         * Adds a REAL written as a plain decimal, e.g. <code>-12.50</code>,
+         * given as its digits without the point (<code>1250</code>) and the
+         * number of digits after the point (<code>2</code>). The unscaled
+         * value must be below 10<sup>15</sup>, so that the double value is
+         * exact to the last written digit.
+         */
+        public Builder addDecimal(long unscaled, int fractionDigits, boolean negative) {
+            if (unscaled < 0 || unscaled >= MAX_UNSCALED || fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS)
+                throw new IllegalArgumentException("Decimal out of range: " + unscaled + "E-" + fractionDigits);
+            double value = unscaled / POWERS_OF_TEN[fractionDigits];
+            hasValues = true;
+            return add((byte) (REAL | fractionDigits << FRACTION_SHIFT), Double.doubleToRawLongBits(negative ? -value : value), null);
+        }
+
+        /**
+         * Adds a REAL in any other form, keeping its lexical form.
+         */
+        public Builder addReal(double value, String lexicalForm) {
+            hasValues = true;
+            return add(REAL, Double.doubleToRawLongBits(value), Objects.requireNonNull(lexicalForm));
+        }
+
+        public Builder addString(String content) {
+            return add(STRING, 0, StepString.of(content));
+        }
+
+        public Builder addString(StepString content) {
+            return add(STRING, 0, Objects.requireNonNull(content));
+        }
+
+        public Builder addEnumeration(String token) {
+            return add(ENUMERATION, 0, Objects.requireNonNull(token));
+        }
+
+        public Builder addBinary(String token) {
+            return add(BINARY, 0, Objects.requireNonNull(token));
+        }
+
+        public Builder addKeyword(String token) {
+            return add(KEYWORD, 0, Objects.requireNonNull(token));
+        }
+
+        public Builder addList(ValueList list) {
+            return add(LIST, 0, Objects.requireNonNull(list));
+        }
+
+        /**
+         * Adds a copy of an element of another list.
+         */
+        public Builder add(ValueList list, int index) {
+            hasValues |= list.values != null;
+            return add(list.kinds[index], list.values == null ? 0 : list.values[index],
+                    list.objects == null ? null : list.objects[index]);
+        }
+
+        private Builder add(byte kind, long value, Object object) {
+            if (size == kinds.length) {
+                kinds = Arrays.copyOf(kinds, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                objects = Arrays.copyOf(objects, size * 2);
+            }
+            kinds[size] = kind;
+            values[size] = value;
+            objects[size] = object;
+            hasObjects |= object != null;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Removes the collected elements.
+         */
+        public void clear() {
+            Arrays.fill(objects, 0, size, null);
+            size = 0;
+            hasValues = false;
+            hasObjects = false;
+        }
+
+        /**
+         * @return a list with the collected elements, after which the builder
+         * is empty
+         */
+        public ValueList build() {
+            ValueList list = size == 0 ? EMPTY : new ValueList(Arrays.copyOf(kinds, size),
+                    hasValues ? Arrays.copyOf(values, size) : null, hasObjects ? Arrays.copyOf(objects, size) : null);
+            clear();
+            return list;
+        }
+    }
+}
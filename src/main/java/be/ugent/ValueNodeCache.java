@@ -0,0 +1,317 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The value nodes written by a conversion, e.g. IfcLengthMeasure_123 with
+ * express:hasDouble 0.5, so that every value is written once and then
+ * referenced.
+ * <p>
+ * A node is found by the value property and XSD type of its class and by its
+ * value. An INTEGER or REAL is found by the element of the {@link ValueList}
+ * it was parsed into: its format, the bits of its value and the lexical form
+ * that is kept for numbers that are not rebuilt from their value, so that no
+ * String is made to look it up. Other values are found by their literal
+ * string. A hit is compared by content, so two values never share a node by
+ * accident. A node takes about 25 bytes: its hash, number, class, value bits
+ * and format, and a reference to its literal string, which is counted too.
+ * The nodes are kept in buckets of eight, and a key can only be in the bucket
+ * its hash points to.
+ * <p>
+ * Without a memory cap the table grows with the number of values, up to 2^30
+ * nodes. With a cap it grows up to the cap, and then a new value replaces a
+ * node of its bucket that was not found since the clock hand of the bucket
+ * last passed it (CLOCK); without a cap the same happens once the table has
+ * its maximum size. A new node counts as not found yet, so values that are
+ * used once go before those that are used again. A value whose node was
+ * replaced gets a new node when it comes again, so the output may hold
+ * several nodes with the same value.
+ */
+final class ValueNodeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ValueNodeCache.class);
+
+    private static final int WAYS = 8;
+    private static final int BYTES_PER_NODE = 4 + 4 + 4 + 8 + 1 + 4;
+    private static final int BYTES_PER_BUCKET = WAYS * BYTES_PER_NODE + 2;
+    // the header of a String and of its array
+    private static final int BYTES_PER_STRING = 24 + 16;
+    private static final int INITIAL_BUCKETS = 1 << 10;
+    private static final int MAX_BUCKETS = 1 << 27;
+    // the format of a value that is found by its literal string
+    private static final byte TEXT = ValueList.UNSET;
+
+    private final long maxBytes;
+    private final int maxBuckets;
+    private int[] hashes;
+    // the number of the node, 0 for an empty slot
+    private int[] numbers;
+    private AttributeTable.Range[] ranges;
+    private long[] values;
+    private byte[] formats;
+    private String[] texts;
+    // per bucket: the slots that were used since the hand passed, and the hand
+    private byte[] referenced;
+    private byte[] hands;
+    private int bucketMask;
+    private int size = 0;
+    private long textBytes = 0;
+    private long evictions = 0;
+
+    // the key of the last find
+    private int hash;
+    private long value;
+    private byte format;
+    private String text;
+
+    /**
+     * @param maxBytes the memory cap of the table, or 0 for no cap
+     */
+    ValueNodeCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        if (maxBytes <= 0) {
+            maxBuckets = MAX_BUCKETS;
+        } else {
+            int buckets = 1;
+            while (buckets < MAX_BUCKETS && 2L * buckets * BYTES_PER_BUCKET <= maxBytes)
+                buckets *= 2;
+            maxBuckets = buckets;
+        }
+        allocate(Math.min(INITIAL_BUCKETS, maxBuckets));
+    }
+
+    /**
+     * Looks up the node of an INTEGER or REAL element of a list, for a class.
+     * After a miss, {@link #put(int, AttributeTable.Range)} stores the node of
+     * the element.
+     *
+     * @return the slot of the node, or -1 if the element has no node
+     */
+    int find(AttributeTable.Range range, ValueList list, int index) {
+        value = list.getBits(index);
+        format = list.getFormat(index);
+        text = list.getKeptLexicalForm(index);
+        hash = hash(range.getLiteralKey(), mix(value + format) ^ (text == null ? 0 : text.hashCode()));
+        return find(range);
+    }
+
+    /**
+     * Looks up the node of a literal of a class. After a miss,
+     * {@link #put(int, AttributeTable.Range)} stores the node of the literal.
+     *
+     * @return the slot of the node, or -1 if the literal has no node
+     */
+    int find(AttributeTable.Range range, String literal) {
+        value = 0;
+        format = TEXT;
+        text = literal;
+        hash = hash(range.getLiteralKey(), literal.hashCode());
+        return find(range);
+    }
+
+    private int find(AttributeTable.Range range) {
+        int bucket = hash & bucketMask;
+        for (int slot = bucket * WAYS; slot < bucket * WAYS + WAYS; slot++) {
+            if (numbers[slot] != 0 && hashes[slot] == hash && values[slot] == value && formats[slot] == format
+                    && Objects.equals(texts[slot], text) && sameLiteral(ranges[slot], range)) {
+                referenced[bucket] |= 1 << (slot - bucket * WAYS);
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of the node in a slot
+     */
+    int getNumber(int slot) {
+        return numbers[slot];
+    }
+
+    /**
+     * @return the class of the node in a slot, which is that of the first
+     * literal of the node
+     */
+    AttributeTable.Range getRange(int slot) {
+        return ranges[slot];
+    }
+
+    /**
+     * Stores the node of the value of the last {@link #find}, which must have
+     * missed.
+     *
+     * @param number the number of the node, which is not 0
+     */
+    void put(int number, AttributeTable.Range range) {
+        int slot = -1;
+        if (!isFull()) {
+            slot = freeSlot(hash & bucketMask);
+            while (slot < 0 && bucketMask + 1 < maxBuckets) {
+                grow();
+                slot = freeSlot(hash & bucketMask);
+            }
+        }
+        if (slot < 0)
+            slot = evict(hash & bucketMask);
+        store(slot, hash, number, range, value, format, text);
+        size++;
+        if (size > (bucketMask + 1) * WAYS / 4 * 3 && bucketMask + 1 < maxBuckets && !isFull())
+            grow();
+    }
+
+    /**
+     * @return the number of nodes in the table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of nodes that were replaced because of the memory
+     * cap or the maximum size of the table
+     */
+    long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes all nodes and frees the table.
+     */
+    void clear() {
+        allocate(Math.min(INITIAL_BUCKETS, maxBuckets));
+        size = 0;
+        textBytes = 0;
+    }
+
+    /**
+     * @return true if the table and the literal strings it refers to take the
+     * memory cap
+     */
+    private boolean isFull() {
+        return maxBytes > 0 && (long) (bucketMask + 1) * BYTES_PER_BUCKET + textBytes > maxBytes;
+    }
+
+    private int freeSlot(int bucket) {
+        for (int slot = bucket * WAYS; slot < bucket * WAYS + WAYS; slot++) {
+            if (numbers[slot] == 0)
+                return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Frees the first node of a bucket from its clock hand on that was not
+     * found since the hand last passed it, or returns an empty slot if the
+     * bucket has no nodes.
+     */
+    private int evict(int bucket) {
+        if (isEmpty(bucket))
+            return bucket * WAYS;
+        int hand = hands[bucket];
+        while ((referenced[bucket] & 1 << hand) != 0 || numbers[bucket * WAYS + hand] == 0) {
+            referenced[bucket] &= ~(1 << hand);
+            hand = (hand + 1) % WAYS;
+        }
+        hands[bucket] = (byte) ((hand + 1) % WAYS);
+        int slot = bucket * WAYS + hand;
+        if (evictions == 0 && maxBytes <= 0)
+            LOG.warn("*WARNING 46*: The value node table has its maximum size of " + (long) maxBuckets * WAYS
+                    + " nodes, new values now replace the nodes of others.");
+        evictions++;
+        size--;
+        if (texts[slot] != null)
+            textBytes -= BYTES_PER_STRING + texts[slot].length();
+        return slot;
+    }
+
+    private boolean isEmpty(int bucket) {
+        for (int slot = bucket * WAYS; slot < bucket * WAYS + WAYS; slot++) {
+            if (numbers[slot] != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private void store(int slot, int hash, int number, AttributeTable.Range range, long value, byte format, String text) {
+        hashes[slot] = hash;
+        numbers[slot] = number;
+        ranges[slot] = range;
+        values[slot] = value;
+        formats[slot] = format;
+        texts[slot] = text;
+        if (text != null)
+            textBytes += BYTES_PER_STRING + text.length();
+    }
+
+    /**
+     * Doubles the number of buckets. The nodes of a bucket are split over two
+     * buckets, so every node finds a slot.
+     */
+    private void grow() {
+        int[] oldHashes = hashes;
+        int[] oldNumbers = numbers;
+        AttributeTable.Range[] oldRanges = ranges;
+        long[] oldValues = values;
+        byte[] oldFormats = formats;
+        String[] oldTexts = texts;
+        allocate((bucketMask + 1) * 2);
+        for (int i = 0; i < oldNumbers.length; i++) {
+            if (oldNumbers[i] != 0)
+                store(freeSlot(oldHashes[i] & bucketMask), oldHashes[i], oldNumbers[i], oldRanges[i], oldValues[i],
+                        oldFormats[i], oldTexts[i]);
+        }
+    }
+
+    private void allocate(int buckets) {
+        hashes = new int[buckets * WAYS];
+        numbers = new int[buckets * WAYS];
+        ranges = new AttributeTable.Range[buckets * WAYS];
+        values = new long[buckets * WAYS];
+        formats = new byte[buckets * WAYS];
+        texts = new String[buckets * WAYS];
+        referenced = new byte[buckets];
+        hands = new byte[buckets];
+        bucketMask = buckets - 1;
+        textBytes = 0;
+    }
+
+    /**
+     * @return true if literals of both classes are written with the same value
+     * property and XSD type
+     */
+    private static boolean sameLiteral(AttributeTable.Range a, AttributeTable.Range b) {
+        return a == b || a.getLiteralKey() == b.getLiteralKey() && a.getValueProperty().equals(b.getValueProperty())
+                && Objects.equals(a.getXSDType(), b.getXSDType());
+    }
+
+    private static int hash(long literalKey, long key) {
+        return (int) mix(literalKey ^ mix(key));
+    }
+
+    /**
+     * The finalization step of MurmurHash3 x64.
+     */
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        return k ^ k >>> 33;
+    }
+}
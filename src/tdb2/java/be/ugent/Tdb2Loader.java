@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.IRILib;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import org.apache.jena.tdb2.loader.base.MonitorOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads IFC files straight into a TDB2 database with the TDB2 bulk loader,
+ * without writing and parsing an RDF file in between. The triples of every
+ * file go into a named graph: the base URI followed by the file name.
+ * <p>
+ * Built with the <code>tdb2</code> profile, which adds jena-tdb2.
+ */
+public class Tdb2Loader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Tdb2Loader.class);
+    private static final String DEFAULT_BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+
+    /**
+     * The TDB2 bulk loaders. They do not take a number of threads; each uses
+     * a fixed number of them.
+     */
+    public enum Loader {
+        /** builds the indexes one after the other on the calling thread */
+        SEQUENTIAL,
+        /** builds the indexes in phases, on up to three threads */
+        PHASED,
+        /** builds all indexes at once, on a thread per index */
+        PARALLEL;
+
+        /**
+         * @return the loader with a name, in any case, or null if there is
+         * none
+         */
+        public static Loader forName(String name) {
+            for (Loader loader : values()) {
+                if (loader.name().equalsIgnoreCase(name))
+                    return loader;
+            }
+            return null;
+        }
+    }
+
+    private final DatasetGraph dataset;
+    private Loader loader = Loader.SEQUENTIAL;
+    private boolean removeDuplicates = false;
+    private int parallelism = 1;
+    private boolean streaming = false;
+
+    /**
+     * @param location the directory of the TDB2 database, which is created
+     *                 when it does not exist
+     */
+    public Tdb2Loader(String location) {
+        this.dataset = DatabaseMgr.connectDatasetGraph(location);
+    }
+
+    /**
+     * Loads the triples of an IFC file into its named graph.
+     *
+     * @return the number of triples loaded
+     */
+    public long load(String ifcFile, String baseURI) throws IOException {
+        IfcSpfReader reader = new IfcSpfReader();
+        reader.setRemoveDuplicates(removeDuplicates);
+        reader.setParallelism(parallelism);
+        reader.setStreaming(streaming);
+        reader.setup(ifcFile);
+
+        Node graph = graphName(ifcFile, baseURI);
+        DataLoader dataLoader = createLoader(graph);
+        long[] triples = new long[1];
+        dataLoader.startBulk();
+        try {
+            reader.convert(ifcFile, baseURI, writer -> {
+                try {
+                    writer.parseModelToStreamRdf(dataLoader.stream());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                triples[0] = writer.getTripleCount();
+            });
+            dataLoader.finishBulk();
+        } catch (RuntimeException e) {
+            dataLoader.finishException(e);
+            throw e;
+        }
+        LOG.info("Loaded " + triples[0] + " triples of " + ifcFile + " into graph " + graph.getURI());
+        return triples[0];
+    }
+
+    /**
+     * @return the name of the graph of an IFC file
+     */
+    public static Node graphName(String ifcFile, String baseURI) {
+        return NodeFactory.createURI(baseURI + IRILib.encodeUriComponent(new File(ifcFile).getName()));
+    }
+
+    private DataLoader createLoader(Node graph) {
+        MonitorOutput output = LoaderOps.outputToLog();
+        switch (loader) {
+            case PHASED:
+                return LoaderFactory.phasedLoader(dataset, graph, output);
+            case PARALLEL:
+                return LoaderFactory.parallelLoader(dataset, graph, output);
+            default:
+                return LoaderFactory.sequentialLoader(dataset, graph, output);
+        }
+    }
+
+    /**
+     * @return the dataset of the database
+     */
+    public DatasetGraph getDataset() {
+        return dataset;
+    }
+
+    public Loader getLoader() {
+        return loader;
+    }
+
+    /**
+     * Sets the TDB2 loader that builds the indexes, {@link Loader#SEQUENTIAL}
+     * by default.
+     */
+    public void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    public void setRemoveDuplicates(boolean removeDuplicates) {
+        this.removeDuplicates = removeDuplicates;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Loads IFC files into a TDB2 database.
+     *
+     * @param args <code>[--baseURI &lt;baseURI&gt;] [--loader sequential|phased|parallel]
+     *             [--threads &lt;n&gt;] [--remove-duplicates] [--streaming]
+     *             &lt;database_directory&gt; &lt;input_file&gt;...</code>
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> argsList = new ArrayList<>(Arrays.asList(args));
+        String baseURI = IfcSpfReader.removeOptionWithValue(argsList, "--baseURI");
+        String loaderName = IfcSpfReader.removeOptionWithValue(argsList, "--loader");
+        String threads = IfcSpfReader.removeOptionWithValue(argsList, "--threads");
+        boolean removeDuplicates = argsList.remove("--remove-duplicates");
+        boolean streaming = argsList.remove("--streaming");
+        if (argsList.size() < 2) {
+            LOG.info("Usage:\n"
+                    + "    Tdb2Loader [--baseURI <baseURI>] [--loader sequential|phased|parallel] [--threads <n>] [--remove-duplicates] [--streaming] <database_directory> <input_file>...\n");
+            return;
+        }
+        Loader kind = loaderName == null ? Loader.SEQUENTIAL : Loader.forName(loaderName);
+        if (kind == null) {
+            LOG.error("*ERROR 29*: Unknown loader " + loaderName + ", expected sequential, phased or parallel.");
+            return;
+        }
+
+        Tdb2Loader loader = new Tdb2Loader(argsList.get(0));
+        loader.setLoader(kind);
+        loader.setParallelism(threads == null ? 1 : Integer.parseInt(threads));
+        loader.setRemoveDuplicates(removeDuplicates);
+        loader.setStreaming(streaming);
+        for (String inputFile : argsList.subList(1, argsList.size())) {
+            LOG.info("Loading file: " + inputFile);
+            loader.load(inputFile, baseURI == null ? DEFAULT_BASE_URI : baseURI);
+        }
+    }
+}
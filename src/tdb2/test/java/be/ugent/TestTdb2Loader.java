@@ -0,0 +1,73 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.system.Txn;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestTdb2Loader {
+
+    private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+    private static final String RESOURCES = "src/test/resources/convertIFCFileToOutputTTL/";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Every file is loaded into its own graph, with the same triples as its
+     * conversion into a graph in memory, by each kind of loader.
+     */
+    @Test
+    public final void testLoad() throws IOException {
+        Tdb2Loader loader = new Tdb2Loader(dir.resolve("database").toString());
+        String[] files = {RESOURCES + "PiPauwel_IFCtoRDF_test1.ifc", RESOURCES + "PiPauwel_IFCtoRDF_test2.ifc"};
+        Tdb2Loader.Loader[] kinds = {Tdb2Loader.Loader.SEQUENTIAL, Tdb2Loader.Loader.PARALLEL};
+        for (int i = 0; i < files.length; i++) {
+            loader.setLoader(kinds[i]);
+            long triples = loader.load(files[i], BASE_URI);
+            Assertions.assertTrue(triples > 0);
+        }
+
+        for (String file : files) {
+            IfcSpfReader reader = new IfcSpfReader();
+            reader.setup(file);
+            Graph expected = reader.convert(file, BASE_URI);
+            Node graphName = Tdb2Loader.graphName(file, BASE_URI);
+            Graph loaded = Txn.calculateRead(loader.getDataset(), () -> {
+                Graph copy = GraphFactory.createGraphMem();
+                loader.getDataset().getGraph(graphName).find().forEachRemaining(copy::add);
+                return copy;
+            });
+            Assertions.assertEquals(expected.size(), loaded.size(), new File(file).getName());
+            Assertions.assertTrue(expected.isIsomorphicWith(loaded), new File(file).getName());
+        }
+    }
+
+    @Test
+    public final void testLoaderForName() {
+        Assertions.assertEquals(Tdb2Loader.Loader.PHASED, Tdb2Loader.Loader.forName("phased"));
+        Assertions.assertEquals(Tdb2Loader.Loader.PARALLEL, Tdb2Loader.Loader.forName("PARALLEL"));
+        Assertions.assertNull(Tdb2Loader.Loader.forName("4"));
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+
+/**
+ * Writes synthetic IFC-SPF models of a chosen schema and size, for scale and
+ * memory tests that cannot ship customer models. The same schema, seed and
+ * size always give the same file.
+ * <p>
+ * A model is a project with a site, a building and storeys of up to 1000
+ * walls and slabs. Every element has a placement, a faceted brep or, in
+ * schemas that have them, a triangulated face set on an indexed point list,
+ * a few property sets and an element quantity, so that geometry, properties,
+ * relationships and strings occur in about the proportions of exported
+ * models. Like exporters do, placements repeat the same points and
+ * directions, which gives the duplicate removal work. The number of
+ * attributes of every entity comes from the schema, attributes that are not
+ * written are $.
+ */
+public class SyntheticIfcModel {
+
+    private static final char[] GUID_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz_$".toCharArray();
+    private static final int ELEMENTS_PER_STOREY = 1000;
+    private static final String[] MATERIALS = {"Concrete", "Brick", "Gypsum Board", "Mineral Wool", "Timber",
+            "Steel", "Glass", "Plaster"};
+    private static final String[] PROPERTY_SETS = {"Pset_Common", "Identity Data", "Constraints", "Phasing",
+            "Analytical Properties", "Other"};
+    private static final String[] PROPERTIES = {"Reference", "LoadBearing", "IsExternal", "FireRating",
+            "ThermalTransmittance", "AcousticRating", "Combustible", "Status", "Manufacturer", "ModelReference",
+            "Comments", "Mark", "Width", "Height", "Area", "Volume", "Structural", "Phase Created"};
+    private static final String[] WORDS = {"wall", "slab", "level", "generic", "exterior", "interior", "finish",
+            "core", "layer", "fire", "rated", "insulated", "load", "bearing", "partition", "north", "south",
+            "facade", "ground", "floor", "roof", "structure", "caf\\X2\\00E9\\X0\\", "architect's", "200mm"};
+
+    private final SchemaRegistry.Schema schema;
+    private final long seed;
+    private long targetSize = 1 << 20;
+
+    private final Map<String, Integer> attributeCounts = new HashMap<>();
+    private final Map<String, Long> entityCounts = new TreeMap<>();
+    private Random random;
+    private Writer out;
+    private long written;
+    private long nextId;
+
+    private long ownerHistory;
+    private long context;
+    private long[] materials;
+
+    /**
+     * @param schema the name of the schema, e.g. IFC2X3_TC1 or IFC4_ADD2_TC1
+     */
+    public SyntheticIfcModel(String schema, long seed) {
+        this.schema = SchemaRegistry.getInstance().get(schema);
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the size in bytes after which no more elements are written. The
+     * file ends a few kilobytes after it.
+     */
+    public void setTargetSize(long targetSize) {
+        this.targetSize = targetSize;
+    }
+
+    /**
+     * @return the number of instances of every entity in the last model that
+     *         was written
+     */
+    public Map<String, Long> getEntityCounts() {
+        return Collections.unmodifiableMap(entityCounts);
+    }
+
+    public void write(File file) throws IOException {
+        try (OutputStream stream = new FileOutputStream(file)) {
+            write(stream);
+        }
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        random = new Random(seed);
+        written = 0;
+        nextId = 1;
+        entityCounts.clear();
+        out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII), 1 << 16);
+        writeHeader();
+        long building = writeProject();
+        List<Long> storeys = new ArrayList<>();
+        int elements = 0;
+        while (elements == 0 || written < targetSize) {
+            long storeyPlacement = localPlacement(-1, 0, 0, storeys.size() * 3000.0);
+            long storey = entity("IfcBuildingStorey", guid(), ref(ownerHistory), string("Level " + storeys.size()),
+                    "$", "$", ref(storeyPlacement), "$", "$", ".ELEMENT.", real(storeys.size() * 3000.0));
+            storeys.add(storey);
+            List<Long> contained = new ArrayList<>();
+            List<List<Long>> byMaterial = new ArrayList<>();
+            for (int i = 0; i < materials.length; i++)
+                byMaterial.add(new ArrayList<>());
+            while (contained.size() < ELEMENTS_PER_STOREY && (elements == 0 || written < targetSize)) {
+                long element = writeElement(storeyPlacement, elements++);
+                contained.add(element);
+                byMaterial.get(random.nextInt(materials.length)).add(element);
+            }
+            entity("IfcRelContainedInSpatialStructure", guid(), ref(ownerHistory), "$", "$", refs(contained), ref(storey));
+            for (int i = 0; i < materials.length; i++) {
+                if (!byMaterial.get(i).isEmpty())
+                    entity("IfcRelAssociatesMaterial", guid(), ref(ownerHistory), "$", "$", refs(byMaterial.get(i)),
+                            ref(materials[i]));
+            }
+        }
+        entity("IfcRelAggregates", guid(), ref(ownerHistory), "$", "$", ref(building), refs(storeys));
+        write("ENDSEC;\nEND-ISO-10303-21;\n");
+        out.flush();
+    }
+
+    private void writeHeader() throws IOException {
+        String fileSchema;
+        if (schema.getName().startsWith("IFC2X3"))
+            fileSchema = "IFC2X3";
+        else if (schema.getName().equalsIgnoreCase("IFC4x1"))
+            fileSchema = "IFC4X1";
+        else if (schema.getName().equalsIgnoreCase("IFC4x3_RC1"))
+            fileSchema = "IFC4X3_RC1";
+        else
+            fileSchema = "IFC4";
+        write("ISO-10303-21;\nHEADER;\nFILE_DESCRIPTION(('ViewDefinition [CoordinationView]'),'2;1');\n"
+                + "FILE_NAME('synthetic.ifc','2020-01-01T00:00:00',('IFCtoRDF'),('IFCtoRDF'),'','SyntheticIfcModel " + seed
+                + "','');\nFILE_SCHEMA(('" + fileSchema + "'));\nENDSEC;\nDATA;\n");
+    }
+
+    /**
+     * Writes the owner history, units, context, project, site and building.
+     *
+     * @return the building
+     */
+    private long writeProject() throws IOException {
+        long person = entity("IfcPerson", "$", string("Doe"), string("Jane"));
+        long organization = entity("IfcOrganization", "$", string("IFCtoRDF"));
+        long user = entity("IfcPersonAndOrganization", ref(person), ref(organization));
+        long application = entity("IfcApplication", ref(organization), string("0.5"), string("SyntheticIfcModel"),
+                string("SyntheticIfcModel"));
+        ownerHistory = entity("IfcOwnerHistory", ref(user), ref(application), "$", ".ADDED.", "$", "$", "$", "1577836800");
+
+        List<Long> units = new ArrayList<>();
+        units.add(entity("IfcSIUnit", "*", ".LENGTHUNIT.", ".MILLI.", ".METRE."));
+        units.add(entity("IfcSIUnit", "*", ".AREAUNIT.", "$", ".SQUARE_METRE."));
+        units.add(entity("IfcSIUnit", "*", ".VOLUMEUNIT.", "$", ".CUBIC_METRE."));
+        units.add(entity("IfcSIUnit", "*", ".PLANEANGLEUNIT.", "$", ".RADIAN."));
+        long unitAssignment = entity("IfcUnitAssignment", refs(units));
+
+        context = entity("IfcGeometricRepresentationContext", "$", string("Model"), "3", "1.E-05",
+                ref(axisPlacement(0, 0, 0)), "$");
+        long project = entity("IfcProject", guid(), ref(ownerHistory), string("Synthetic project"), "$", "$", "$", "$",
+                refs(Collections.singletonList(context)), ref(unitAssignment));
+        long site = entity("IfcSite", guid(), ref(ownerHistory), string("Site"), "$", "$",
+                ref(localPlacement(-1, 0, 0, 0)), "$", "$", ".ELEMENT.");
+        long building = entity("IfcBuilding", guid(), ref(ownerHistory), string("Building"), "$", "$",
+                ref(localPlacement(-1, 0, 0, 0)), "$", "$", ".ELEMENT.");
+        entity("IfcRelAggregates", guid(), ref(ownerHistory), "$", "$", ref(project), refs(Collections.singletonList(site)));
+        entity("IfcRelAggregates", guid(), ref(ownerHistory), "$", "$", ref(site), refs(Collections.singletonList(building)));
+
+        materials = new long[MATERIALS.length];
+        for (int i = 0; i < MATERIALS.length; i++)
+            materials[i] = entity("IfcMaterial", string(MATERIALS[i]));
+        return building;
+    }
+
+    private long writeElement(long storeyPlacement, int number) throws IOException {
+        double x = random.nextInt(100000);
+        double y = random.nextInt(100000);
+        long placement = localPlacement(storeyPlacement, x, y, 0);
+
+        int sides = 4 + random.nextInt(7);
+        double radius = 200 + random.nextInt(5000);
+        double height = 200 + random.nextInt(3000);
+        boolean tessellated = hasEntity("IfcTriangulatedFaceSet") && random.nextInt(3) == 0;
+        long item = tessellated ? triangulatedFaceSet(sides, radius, height) : facetedBrep(sides, radius, height);
+        long representation = entity("IfcShapeRepresentation", ref(context), string("Body"),
+                string(tessellated ? "Tessellation" : "Brep"), refs(Collections.singletonList(item)));
+        long shape = entity("IfcProductDefinitionShape", "$", "$", refs(Collections.singletonList(representation)));
+
+        long element;
+        if (random.nextInt(5) == 0)
+            element = entity("IfcSlab", guid(), ref(ownerHistory), string("Slab " + number), "$",
+                    string("Floor:Generic " + (int) height + "mm"), ref(placement), ref(shape), string(Integer.toString(number)),
+                    ".FLOOR.");
+        else
+            element = entity("IfcWall", guid(), ref(ownerHistory), string("Wall " + number), "$",
+                    string("Basic Wall:Generic " + (int) radius + "mm"), ref(placement), ref(shape),
+                    string(Integer.toString(number)));
+
+        int propertySets = 2 + random.nextInt(3);
+        for (int i = 0; i < propertySets; i++) {
+            List<Long> properties = new ArrayList<>();
+            int count = 4 + random.nextInt(9);
+            for (int j = 0; j < count; j++)
+                properties.add(entity("IfcPropertySingleValue", string(PROPERTIES[random.nextInt(PROPERTIES.length)]), "$",
+                        propertyValue(), "$"));
+            long propertySet = entity("IfcPropertySet", guid(), ref(ownerHistory),
+                    string(PROPERTY_SETS[random.nextInt(PROPERTY_SETS.length)]), "$", refs(properties));
+            entity("IfcRelDefinesByProperties", guid(), ref(ownerHistory), "$", "$", refs(Collections.singletonList(element)),
+                    ref(propertySet));
+        }
+
+        List<Long> quantities = new ArrayList<>();
+        quantities.add(entity("IfcQuantityLength", string("Height"), "$", "$", real(height)));
+        quantities.add(entity("IfcQuantityLength", string("Width"), "$", "$", real(radius)));
+        quantities.add(entity("IfcQuantityLength", string("Perimeter"), "$", "$", real(2 * Math.PI * radius)));
+        quantities.add(entity("IfcQuantityArea", string("GrossFootprintArea"), "$", "$", real(Math.PI * radius * radius / 1e6)));
+        quantities.add(entity("IfcQuantityArea", string("GrossSideArea"), "$", "$", real(2 * Math.PI * radius * height / 1e6)));
+        quantities.add(entity("IfcQuantityVolume", string("GrossVolume"), "$", "$", real(Math.PI * radius * radius * height / 1e9)));
+        long elementQuantity = entity("IfcElementQuantity", guid(), ref(ownerHistory), string("BaseQuantities"), "$", "$",
+                refs(quantities));
+        entity("IfcRelDefinesByProperties", guid(), ref(ownerHistory), "$", "$", refs(Collections.singletonList(element)),
+                ref(elementQuantity));
+        return element;
+    }
+
+    /**
+     * A prism on a regular polygon, with a loop of points for every face.
+     */
+    private long facetedBrep(int sides, double radius, double height) throws IOException {
+        long[] bottom = new long[sides];
+        long[] top = new long[sides];
+        for (int i = 0; i < sides; i++) {
+            double angle = 2 * Math.PI * i / sides;
+            bottom[i] = point(radius * Math.cos(angle), radius * Math.sin(angle), 0);
+            top[i] = point(radius * Math.cos(angle), radius * Math.sin(angle), height);
+        }
+        List<Long> faces = new ArrayList<>();
+        List<Long> loop = new ArrayList<>();
+        for (int i = sides - 1; i >= 0; i--)
+            loop.add(bottom[i]);
+        faces.add(face(loop));
+        loop = new ArrayList<>();
+        for (int i = 0; i < sides; i++)
+            loop.add(top[i]);
+        faces.add(face(loop));
+        for (int i = 0; i < sides; i++) {
+            int next = (i + 1) % sides;
+            List<Long> side = new ArrayList<>();
+            side.add(bottom[i]);
+            side.add(bottom[next]);
+            side.add(top[next]);
+            side.add(top[i]);
+            faces.add(face(side));
+        }
+        long shell = entity("IfcClosedShell", refs(faces));
+        return entity("IfcFacetedBrep", ref(shell));
+    }
+
+    private long face(List<Long> points) throws IOException {
+        long loop = entity("IfcPolyLoop", refs(points));
+        long bound = entity("IfcFaceOuterBound", ref(loop), ".T.");
+        return entity("IfcFace", refs(Collections.singletonList(bound)));
+    }
+
+    /**
+     * The same prism as {@link #facetedBrep}, as triangles on an indexed
+     * point list.
+     */
+    private long triangulatedFaceSet(int sides, double radius, double height) throws IOException {
+        StringBuilder coordinates = new StringBuilder("(");
+        for (int level = 0; level < 2; level++) {
+            for (int i = 0; i < sides; i++) {
+                double angle = 2 * Math.PI * i / sides;
+                if (coordinates.length() > 1)
+                    coordinates.append(',');
+                coordinates.append('(').append(real(radius * Math.cos(angle))).append(',')
+                        .append(real(radius * Math.sin(angle))).append(',').append(real(level * height)).append(')');
+            }
+        }
+        long pointList = entity("IfcCartesianPointList3D", coordinates.append(')').toString());
+
+        StringBuilder triangles = new StringBuilder("(");
+        for (int i = 1; i < sides - 1; i++) {
+            triangle(triangles, 1, i + 2, i + 1);
+            triangle(triangles, sides + 1, sides + i + 1, sides + i + 2);
+        }
+        for (int i = 0; i < sides; i++) {
+            int next = (i + 1) % sides;
+            triangle(triangles, i + 1, next + 1, sides + next + 1);
+            triangle(triangles, i + 1, sides + next + 1, sides + i + 1);
+        }
+        return entity("IfcTriangulatedFaceSet", ref(pointList), "$", ".T.", triangles.append(')').toString());
+    }
+
+    private static void triangle(StringBuilder triangles, int a, int b, int c) {
+        if (triangles.length() > 1)
+            triangles.append(',');
+        triangles.append('(').append(a).append(',').append(b).append(',').append(c).append(')');
+    }
+
+    private String propertyValue() {
+        switch (random.nextInt(6)) {
+            case 0:
+                return "IFCBOOLEAN(" + (random.nextBoolean() ? ".T." : ".F.") + ")";
+            case 1:
+                return "IFCLENGTHMEASURE(" + real(random.nextInt(1000000) / 100.0) + ")";
+            case 2:
+                return "IFCREAL(" + real(random.nextDouble()) + ")";
+            case 3:
+                return "IFCIDENTIFIER(" + string(Integer.toString(random.nextInt(100000))) + ")";
+            case 4:
+                return "IFCTEXT(" + string(words(8 + random.nextInt(24))) + ")";
+            default:
+                return "IFCLABEL(" + string(words(1 + random.nextInt(4))) + ")";
+        }
+    }
+
+    private String words(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private long localPlacement(long relativeTo, double x, double y, double z) throws IOException {
+        return entity("IfcLocalPlacement", relativeTo < 0 ? "$" : ref(relativeTo), ref(axisPlacement(x, y, z)));
+    }
+
+    private long axisPlacement(double x, double y, double z) throws IOException {
+        long location = point(x, y, z);
+        long axis = entity("IfcDirection", "(0.,0.,1.)");
+        long refDirection = entity("IfcDirection", "(1.,0.,0.)");
+        return entity("IfcAxis2Placement3D", ref(location), ref(axis), ref(refDirection));
+    }
+
+    private long point(double x, double y, double z) throws IOException {
+        return entity("IfcCartesianPoint", "(" + real(x) + "," + real(y) + "," + real(z) + ")");
+    }
+
+    /**
+     * Writes an entity instance with the given attributes, followed by $ up to
+     * the number of attributes of the entity in the schema.
+     *
+     * @return the line number of the instance
+     */
+    private long entity(String name, String... attributes) throws IOException {
+        String keyword = name.toUpperCase(Locale.ROOT);
+        Integer count = attributeCounts.get(keyword);
+        if (count == null) {
+            EntityVO entity = schema.getEntityMap().get(keyword);
+            if (entity == null)
+                throw new IllegalArgumentException(name + " is not an entity of " + schema.getName());
+            count = entity.getDerivedAttributeList().size();
+            attributeCounts.put(keyword, count);
+        }
+        if (attributes.length > count)
+            throw new IllegalArgumentException(name + " has " + count + " attributes in " + schema.getName());
+        long id = nextId++;
+        StringBuilder line = new StringBuilder(64).append('#').append(id).append('=').append(keyword).append('(');
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                line.append(',');
+            line.append(i < attributes.length ? attributes[i] : "$");
+        }
+        write(line.append(");\n").toString());
+        entityCounts.merge(name, 1L, Long::sum);
+        return id;
+    }
+
+    private boolean hasEntity(String name) {
+        return schema.getEntityMap().containsKey(name.toUpperCase(Locale.ROOT));
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text);
+        written += text.length();
+    }
+
+    private String guid() {
+        char[] guid = new char[22];
+        guid[0] = GUID_CHARS[random.nextInt(4)];
+        for (int i = 1; i < guid.length; i++)
+            guid[i] = GUID_CHARS[random.nextInt(GUID_CHARS.length)];
+        return "'" + new String(guid) + "'";
+    }
+
+    private static String ref(long id) {
+        return "#" + id;
+    }
+
+    private static String refs(List<Long> ids) {
+        StringBuilder list = new StringBuilder("(");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0)
+                list.append(',');
+            list.append('#').append(ids.get(i));
+        }
+        return list.append(')').toString();
+    }
+
+    private static String string(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private static String real(double value) {
+        String text = String.format(Locale.ROOT, "%.4f", value);
+        int end = text.length();
+        while (text.charAt(end - 1) == '0')
+            end--;
+        return text.substring(0, end);
+    }
+
+    /**
+     * Writes a model: <code>SyntheticIfcModel &lt;schema&gt; &lt;size in MB&gt;
+     * &lt;output file&gt; [seed]</code>.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: SyntheticIfcModel <schema> <size in MB> <output file> [seed]");
+            return;
+        }
+        SyntheticIfcModel model = new SyntheticIfcModel(args[0], args.length > 3 ? Long.parseLong(args[3]) : 0);
+        model.setTargetSize(Long.parseLong(args[1]) << 20);
+        model.write(new File(args[2]));
+    }
+}
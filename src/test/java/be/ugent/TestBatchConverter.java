@@ -0,0 +1,100 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBatchConverter {
+
+    private static final String[] TEST_FILES = {"PiPauwel_IFCtoRDF_test1.ifc", "PiPauwel_IFCtoRDF_test2.ifc",
+            "PiPauwel_IFCtoRDF_test5.ifc"};
+
+    @TempDir
+    Path dir;
+
+    private List<String> copyTestFiles() throws Exception {
+        List<String> files = new ArrayList<>();
+        for (String name : TEST_FILES) {
+            Path file = dir.resolve(name);
+            Files.copy(new File("src/test/resources/convertIFCFileToOutputTTL", name).toPath(), file,
+                    StandardCopyOption.REPLACE_EXISTING);
+            files.add(file.toString());
+        }
+        return files;
+    }
+
+    @Test
+    public final void testConvert() throws Exception {
+        List<String> files = copyTestFiles();
+        BatchConverter batch = new BatchConverter();
+        batch.setJobs(2);
+        List<BatchConverter.Result> results = batch.convert(files, "http://linkedbuildingdata.net/ifc/resources/");
+        Assertions.assertEquals(files.size(), results.size());
+        for (int i = 0; i < files.size(); i++) {
+            BatchConverter.Result result = results.get(i);
+            Assertions.assertEquals(files.get(i), result.getInputFile());
+            Assertions.assertTrue(result.isSuccess(), result.getMessage());
+            Assertions.assertTrue(result.getTriples() > 0);
+            Assertions.assertTrue(new File(result.getOutputFile()).length() > 0);
+        }
+    }
+
+    /**
+     * Files that do not fit in the budget are converted one after another.
+     */
+    @Test
+    public final void testSmallBudget() throws Exception {
+        List<String> files = copyTestFiles();
+        BatchConverter batch = new BatchConverter();
+        batch.setJobs(3);
+        batch.setMemoryBudget(1);
+        for (BatchConverter.Result result : batch.convert(files, "http://linkedbuildingdata.net/ifc/resources/"))
+            Assertions.assertTrue(result.isSuccess(), result.getMessage());
+    }
+
+    /**
+     * A file that cannot be converted is reported without stopping the others.
+     */
+    @Test
+    public final void testFailureIsReported() throws Exception {
+        List<String> files = copyTestFiles();
+        Path broken = dir.resolve("broken.ifc");
+        Files.write(broken, "ISO-10303-21;\nHEADER;\nFILE_SCHEMA(('IFC5'));\nENDSEC;\n".getBytes(StandardCharsets.US_ASCII));
+        files.add(1, broken.toString());
+
+        BatchConverter batch = new BatchConverter();
+        batch.setJobs(2);
+        List<BatchConverter.Result> results = batch.convert(files, "http://linkedbuildingdata.net/ifc/resources/");
+        Assertions.assertFalse(results.get(1).isSuccess());
+        Assertions.assertNotNull(results.get(1).getMessage());
+        Assertions.assertEquals(3, results.stream().filter(BatchConverter.Result::isSuccess).count());
+
+        File summary = dir.resolve("conversion-summary.tsv").toFile();
+        BatchConverter.writeSummary(results, summary);
+        List<String> lines = Files.readAllLines(summary.toPath());
+        Assertions.assertEquals(results.size() + 1, lines.size());
+        Assertions.assertTrue(lines.get(2).startsWith(broken + "\tFAILED\t"));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestDeltaConverter {
+
+    private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+    private static final Pattern REFERENCE = Pattern.compile("#(\\d+)");
+    private static final Pattern NUMBERED = Pattern.compile("(" + Pattern.quote(BASE_URI) + "\\w+_)(\\d+)");
+
+    @TempDir
+    Path dir;
+
+    /**
+     * The second revision numbers the lines anew and renames a wall, the
+     * third moves a point. Every delta turns the store into the conversion of
+     * the next revision, with the numbers of the numbering file, and only
+     * holds the triples that changed.
+     */
+    @Test
+    public final void testConvertDelta() throws IOException {
+        File first = dir.resolve("revision1.ifc").toFile();
+        SyntheticIfcModel model = new SyntheticIfcModel("IFC4_ADD2_TC1", 5);
+        model.setTargetSize(256 * 1024);
+        model.write(first);
+        String text = new String(Files.readAllBytes(first.toPath()), StandardCharsets.ISO_8859_1);
+        String renamed = renumberLines(text, false).replaceFirst("(IFCWALL\\('[^']*',#\\d+,')", "$1Renamed ");
+        File second = write("revision2.ifc", renamed);
+        File third = write("revision3.ifc", renamed.replaceFirst("IFCCARTESIANPOINT\\(\\(", "IFCCARTESIANPOINT((0.25,"));
+        File numbering = dir.resolve("numbering.gz").toFile();
+
+        Graph store = convert(first);
+        Graph removed = GraphFactory.createGraphMem();
+        Graph added = GraphFactory.createGraphMem();
+        for (File[] revisions : new File[][]{{first, second}, {second, third}}) {
+            IfcSpfReader reader = new IfcSpfReader();
+            reader.setup(revisions[1].getPath());
+            reader.setNumberingFile(numbering);
+            removed.clear();
+            added.clear();
+            reader.convertDelta(revisions[0].getPath(), revisions[1].getPath(), BASE_URI, collect(removed), collect(added));
+
+            removed.find().forEachRemaining(t -> Assertions.assertTrue(store.contains(t), "Not in the store: " + t));
+            removed.find().forEachRemaining(store::delete);
+            added.find().forEachRemaining(store::add);
+            Graph expected = renumber(convert(revisions[1]), DeltaConverter.readNumbering(numbering));
+            Assertions.assertTrue(expected.isIsomorphicWith(store), "Patched store differs from " + revisions[1]);
+            Assertions.assertTrue(removed.size() + added.size() < 20,
+                    removed.size() + " removed and " + added.size() + " added of " + expected.size());
+        }
+        Assertions.assertTrue(numbering.exists());
+    }
+
+    @Test
+    public final void testPatchFile() throws IOException {
+        File first = dir.resolve("revision1.ifc").toFile();
+        SyntheticIfcModel model = new SyntheticIfcModel("IFC2X3_TC1", 7);
+        model.setTargetSize(64 * 1024);
+        model.write(first);
+        String text = new String(Files.readAllBytes(first.toPath()), StandardCharsets.ISO_8859_1);
+        File second = write("revision2.ifc", renumberLines(text, true)
+                .replaceFirst("IFCCARTESIANPOINT\\(\\(", "IFCCARTESIANPOINT((0.25,"));
+        File patch = dir.resolve("revision2.rdfp").toFile();
+        File numbering = dir.resolve("numbering.gz").toFile();
+        IfcSpfReader reader = new IfcSpfReader();
+        reader.setup(second.getPath());
+        reader.setNumberingFile(numbering);
+        reader.convertDelta(first.getPath(), second.getPath(), patch.getPath(), BASE_URI);
+
+        List<String> lines = Files.readAllLines(patch.toPath());
+        Assertions.assertEquals("TX .", lines.get(0));
+        Assertions.assertEquals("TC .", lines.get(lines.size() - 1));
+        Graph store = convert(first);
+        boolean adding = false;
+        for (String line : lines.subList(1, lines.size() - 1)) {
+            Assertions.assertTrue(line.startsWith("D ") || line.startsWith("A "), line);
+            // all deletions come before the additions
+            Assertions.assertFalse(adding && line.startsWith("D "), line);
+            adding = line.startsWith("A ");
+            Graph triple = GraphFactory.createGraphMem();
+            RDFDataMgr.read(triple, new ByteArrayInputStream(line.substring(2).getBytes(StandardCharsets.UTF_8)),
+                    Lang.NTRIPLES);
+            if (adding)
+                triple.find().forEachRemaining(store::add);
+            else
+                triple.find().forEachRemaining(store::delete);
+        }
+        Assertions.assertTrue(adding);
+        Assertions.assertTrue(renumber(convert(second), DeltaConverter.readNumbering(numbering)).isIsomorphicWith(store));
+    }
+
+    /**
+     * @return the SPF text with other line numbers in the DATA section, as if
+     * the file had been exported again. Value nodes take the class of the
+     * first entity that uses them, so a new order of the entities also
+     * changes some triples.
+     */
+    private static String renumberLines(String text, boolean reverse) {
+        int data = text.indexOf("DATA;");
+        Matcher matcher = REFERENCE.matcher(text.substring(data));
+        long max = 0;
+        while (matcher.find())
+            max = Math.max(max, Long.parseLong(matcher.group(1)));
+        matcher.reset();
+        StringBuffer sb = new StringBuffer(text.substring(0, data));
+        while (matcher.find())
+            matcher.appendReplacement(sb, "#" + (reverse ? max + 1 - Long.parseLong(matcher.group(1))
+                    : 3 * Long.parseLong(matcher.group(1)) + 7));
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * @return the graph with the numbers of its resources replaced as in the
+     * store
+     */
+    private static Graph renumber(Graph graph, int[] numbering) {
+        Graph renumbered = GraphFactory.createGraphMem();
+        graph.find().forEachRemaining(t -> renumbered.add(Triple.create(renumber(t.getSubject(), numbering),
+                t.getPredicate(), renumber(t.getObject(), numbering))));
+        return renumbered;
+    }
+
+    private static Node renumber(Node node, int[] numbering) {
+        Matcher matcher = NUMBERED.matcher(node.isURI() ? node.getURI() : "");
+        if (!matcher.matches())
+            return node;
+        return NodeFactory.createURI(matcher.group(1) + numbering[Integer.parseInt(matcher.group(2))]);
+    }
+
+    private File write(String name, String text) throws IOException {
+        File file = dir.resolve(name).toFile();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    private static Graph convert(File file) throws IOException {
+        IfcSpfReader reader = new IfcSpfReader();
+        reader.setup(file.getPath());
+        return reader.convert(file.getPath(), BASE_URI);
+    }
+
+    private static StreamRDFBase collect(Graph graph) {
+        return new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                graph.add(triple);
+            }
+        };
+    }
+}
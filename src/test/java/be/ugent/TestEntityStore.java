@@ -0,0 +1,83 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestEntityStore {
+
+    @Test
+    public final void testPutAndGet() {
+        EntityStore<String> store = new EntityStore<>();
+        store.put(1, "a");
+        store.put(70000, "b");
+        store.put(1L << 40, "c");
+        store.put(1, "d");
+        Assertions.assertEquals(3, store.size());
+        Assertions.assertEquals("d", store.get(1));
+        Assertions.assertEquals("b", store.get(70000));
+        Assertions.assertEquals("c", store.get(1L << 40));
+        Assertions.assertNull(store.get(2));
+        Assertions.assertNull(store.get(1L << 20));
+        Assertions.assertNull(store.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    public final void testIterationOrder() {
+        EntityStore<String> store = new EntityStore<>();
+        store.put(1L << 40, "e");
+        store.put(9000, "d");
+        store.put(3, "b");
+        store.put(0, "a");
+        store.put(4096, "c");
+        List<String> values = new ArrayList<>();
+        store.forEach(values::add);
+        Assertions.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), values);
+    }
+
+    @Test
+    public final void testRedirect() {
+        EntityStore<String> store = new EntityStore<>();
+        store.put(1, "a");
+        store.put(2, "b");
+        store.put(3, "c");
+        store.put(1L << 40, "d");
+        for (String value : store) {
+            if (value.equals("b"))
+                store.redirect(2, 1);
+        }
+        store.redirect(1L << 40, 3);
+        Assertions.assertEquals(2, store.size());
+        Assertions.assertEquals(2, store.getRedirectCount());
+        Assertions.assertEquals("a", store.get(2));
+        Assertions.assertEquals("c", store.get(1L << 40));
+        Assertions.assertFalse(store.contains(2));
+        Assertions.assertTrue(store.contains(1));
+        List<String> values = new ArrayList<>();
+        store.forEach(values::add);
+        Assertions.assertEquals(Arrays.asList("a", "c"), values);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.redirect(3, 2));
+
+        store.put(2, "e");
+        Assertions.assertEquals(3, store.size());
+        Assertions.assertEquals(1, store.getRedirectCount());
+        Assertions.assertEquals("e", store.get(2));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestEntityTypeTable {
+
+    @Test
+    public final void testNames() {
+        EntityTypeTable table = new EntityTypeTable();
+        table.put(1, "IFCWALL");
+        table.put(70000, "IFCDOOR");
+        table.put(1L << 40, "IFCWALL");
+        table.put(70000, "IFCWINDOW");
+        Assertions.assertEquals(3, table.size());
+        Assertions.assertEquals("IFCWALL", table.getName(1));
+        Assertions.assertEquals("IFCWINDOW", table.getName(70000));
+        Assertions.assertEquals("IFCWALL", table.getName(1L << 40));
+        Assertions.assertNull(table.getName(2));
+        Assertions.assertNull(table.getName(1L << 30));
+        Assertions.assertFalse(table.contains(-1));
+    }
+
+    @Test
+    public final void testMissingReference() {
+        EntityTypeTable table = new EntityTypeTable();
+        table.put(1, "IFCWALL");
+        table.put(1L << 40, "IFCWALL");
+        table.markReferenced(1);
+        table.markReferenced(1L << 40);
+        Assertions.assertNull(table.findMissingReference());
+        table.markReferenced(5000);
+        Assertions.assertEquals(Long.valueOf(5000), table.findMissingReference());
+        table.put(5000, "IFCDOOR");
+        table.markReferenced(1L << 41);
+        Assertions.assertEquals(Long.valueOf(1L << 41), table.findMissingReference());
+    }
+}
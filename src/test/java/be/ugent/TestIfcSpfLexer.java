@@ -0,0 +1,67 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class TestIfcSpfLexer {
+
+    private static IfcSpfLexer lexer(String text, boolean endOfInput) {
+        return new IfcSpfLexer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), 0, endOfInput);
+    }
+
+    @Test
+    public final void testTokenTypesAndOffsets() {
+        IfcSpfLexer lexer = lexer("#12= IFCWALL(#3,.T.,-1.5E-3,42,$,*,\"0AF\");", true);
+        int[] expected = new int[]{IfcSpfLexer.ENTITY_NAME, IfcSpfLexer.EQUALS, IfcSpfLexer.KEYWORD, IfcSpfLexer.OPEN,
+                IfcSpfLexer.ENTITY_NAME, IfcSpfLexer.COMMA, IfcSpfLexer.ENUMERATION, IfcSpfLexer.COMMA, IfcSpfLexer.REAL,
+                IfcSpfLexer.COMMA, IfcSpfLexer.INTEGER, IfcSpfLexer.COMMA, IfcSpfLexer.UNSET, IfcSpfLexer.COMMA,
+                IfcSpfLexer.DERIVED, IfcSpfLexer.COMMA, IfcSpfLexer.BINARY, IfcSpfLexer.CLOSE, IfcSpfLexer.SEMICOLON,
+                IfcSpfLexer.EOF};
+        for (int type : expected) {
+            Assertions.assertEquals(type, lexer.next());
+        }
+        lexer = lexer("#12= IFCWALL", true);
+        lexer.next();
+        Assertions.assertEquals(12, lexer.getTokenAsLong());
+        lexer.next();
+        lexer.next();
+        Assertions.assertEquals(5, lexer.getTokenOffset());
+        Assertions.assertEquals("IFCWALL", lexer.getTokenText());
+    }
+
+    @Test
+    public final void testStringsAndComments() {
+        IfcSpfLexer lexer = lexer("/* a comment; with 'quotes' */ 'it''s;(a),test' /**/ ;", true);
+        Assertions.assertEquals(IfcSpfLexer.STRING, lexer.next());
+        Assertions.assertEquals("it's;(a),test", lexer.getStringContent());
+        Assertions.assertEquals(IfcSpfLexer.SEMICOLON, lexer.next());
+        Assertions.assertEquals(IfcSpfLexer.EOF, lexer.next());
+    }
+
+    @Test
+    public final void testIncompleteTokens() {
+        Assertions.assertEquals(IfcSpfLexer.INCOMPLETE, lexer("'unterminated", false).next());
+        Assertions.assertEquals(IfcSpfLexer.INCOMPLETE, lexer("'ends with a quote'", false).next());
+        Assertions.assertEquals(IfcSpfLexer.INCOMPLETE, lexer("/* open comment", false).next());
+        Assertions.assertEquals(IfcSpfLexer.INCOMPLETE, lexer("1.25", false).next());
+        Assertions.assertEquals(IfcSpfLexer.REAL, lexer("1.25", true).next());
+        Assertions.assertEquals(IfcSpfLexer.STRING, lexer("'ends with a quote'", true).next());
+    }
+}
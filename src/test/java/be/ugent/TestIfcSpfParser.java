@@ -0,0 +1,219 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestIfcSpfParser {
+
+    private static final String OFFICE_MODEL = "showfiles/nested/20160414office_model_CV2_fordesign.ifc";
+
+    private static File officeModel() {
+        return new File(TestIfcSpfParser.class.getClassLoader().getResource(OFFICE_MODEL).getFile().replaceAll("%20", " "));
+    }
+
+    private static IfcSpfParser parse(File file, int parallelism) throws IOException {
+        IfcSpfParser parser = new IfcSpfParser(new FileInputStream(file));
+        parser.setParallelism(parallelism);
+        parser.readModel();
+        return parser;
+    }
+
+    @Test
+    public final void testSemicolonInsideString() throws IOException {
+        String model = "ISO-10303-21;\nHEADER;\nFILE_SCHEMA(('IFC4'));\nENDSEC;\nDATA;\n"
+                + "#1= IFCORGANIZATION($,'Ghent; University',$,$,$);#2= IFCTEST('a''b',\n(1.,2.));\n"
+                + "ENDSEC;\nEND-ISO-10303-21;\n";
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8)));
+        parser.readModel();
+        EntityStore<IfcInstance> linemap = parser.getLinemap();
+        Assertions.assertEquals(2, linemap.size());
+        Assertions.assertEquals("IFCORGANIZATION", linemap.get(1L).getName());
+        Assertions.assertEquals("Ghent; University", linemap.get(1L).getValues().getString(1));
+        Assertions.assertEquals("a'b", linemap.get(2L).getValues().getString(0));
+        Assertions.assertEquals("#2= IFCTEST('a''b',(1.,2.));", linemap.get(2L).toString());
+    }
+
+    @Test
+    public final void testParameterValues() throws IOException {
+        String model = "DATA;\n#7= IFCTEST(#12,$,*,-3,1.50,1.5E-3,.T.,\"0AF\",IFCLABEL('x'),(#1,(2,3)),());\nENDSEC;\n";
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8)));
+        parser.readModel();
+        ValueList values = parser.getLinemap().get(7).getValues();
+        byte[] kinds = new byte[]{ValueList.REFERENCE, ValueList.UNSET, ValueList.DERIVED, ValueList.INTEGER,
+                ValueList.REAL, ValueList.REAL, ValueList.ENUMERATION, ValueList.BINARY, ValueList.KEYWORD,
+                ValueList.LIST, ValueList.LIST, ValueList.LIST};
+        Assertions.assertEquals(kinds.length, values.size());
+        for (int i = 0; i < kinds.length; i++)
+            Assertions.assertEquals(kinds[i], values.getKind(i));
+        Assertions.assertEquals(12, values.getReference(0));
+        Assertions.assertEquals(-3, values.getLong(3));
+        Assertions.assertEquals(1.5, values.getDouble(4));
+        Assertions.assertEquals("1.50", values.getLexicalForm(4));
+        Assertions.assertEquals(0.0015, values.getDouble(5));
+        Assertions.assertEquals("1.5E-3", values.getLexicalForm(5));
+        Assertions.assertEquals(".T.", values.getString(6));
+        Assertions.assertEquals("IFCLABEL", values.getString(8));
+        Assertions.assertEquals("x", values.getList(9).getString(0));
+        Assertions.assertEquals(3, values.getList(10).getList(1).getLong(1));
+        Assertions.assertEquals(0, values.getList(11).size());
+        Assertions.assertEquals("#7= IFCTEST(#12,$,*,-3,1.50,1.5E-3,.T.,\"0AF\",IFCLABEL('x'),(#1,(2,3)),());",
+                parser.getLinemap().get(7).toString());
+    }
+
+    /**
+     * A REAL without exponent digits is kept with its text instead of
+     * failing the parse.
+     */
+    @Test
+    public final void testMalformedReal() throws IOException {
+        String model = "DATA;\n#3= IFCCARTESIANPOINT((1.E,2.5E+,3.));\nENDSEC;\n";
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8)));
+        parser.readModel();
+        ValueList coordinates = parser.getLinemap().get(3).getValues().getList(0);
+        Assertions.assertEquals(3, coordinates.size());
+        Assertions.assertEquals(ValueList.REAL, coordinates.getKind(0));
+        Assertions.assertTrue(Double.isNaN(coordinates.getDouble(0)));
+        Assertions.assertEquals("1.E", coordinates.getLexicalForm(0));
+        Assertions.assertEquals("2.5E+", coordinates.getLexicalForm(1));
+        Assertions.assertEquals(3.0, coordinates.getDouble(2));
+    }
+
+    @Test
+    public final void testResolveDuplicates() throws IOException {
+        String model = "DATA;\n#1= IFCCARTESIANPOINT((0.,0.,0.));\n#2= IFCCARTESIANPOINT((0.,0.,\n0.));\n"
+                + "#3= IFCCARTESIANPOINT((0.,0.,0.0));\n#4= IFCPOLYLINE((#1,#2,#3));\n#5= IFCPOLYLINE((#1,#9));\nENDSEC;\n";
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8)));
+        parser.readModel();
+        parser.resolveDuplicates();
+        EntityStore<IfcInstance> linemap = parser.getLinemap();
+        Assertions.assertEquals(4, linemap.size());
+        Assertions.assertSame(linemap.get(1), linemap.get(2));
+        Assertions.assertNotSame(linemap.get(1), linemap.get(3));
+        // #5 refers to a line that does not exist
+        Assertions.assertFalse(parser.mapEntries());
+    }
+
+    /**
+     * Instances that only differ in references to duplicates are duplicates
+     * too, at any depth and also through forward references. The instance
+     * with the lowest line number is kept.
+     */
+    @Test
+    public final void testResolveDuplicatesToFixpoint() throws IOException {
+        String model = "DATA;\n#1= IFCCARTESIANPOINT((0.,0.,0.));\n#2= IFCCARTESIANPOINT((1.,0.,0.));\n"
+                + "#3= IFCPOLYLOOP((#1,#2,#8));\n#4= IFCFACEOUTERBOUND(#3,.T.);\n#5= IFCFACE((#4));\n"
+                + "#6= IFCCARTESIANPOINT((0.,0.,0.));\n#7= IFCCARTESIANPOINT((1.,0.,0.));\n#8= IFCCARTESIANPOINT((0.,1.,0.));\n"
+                + "#9= IFCCARTESIANPOINT((0.,1.,0.));\n#10= IFCPOLYLOOP((#6,#7,#9));\n#11= IFCFACEOUTERBOUND(#10,.T.);\n"
+                + "#12= IFCFACE((#11));\n#13= IFCFACEOUTERBOUND(#10,.F.);\n#14= IFCCLOSEDSHELL((#5,#12));\n"
+                + "#15= IFCCLOSEDSHELL((#12,#5));\nENDSEC;\n";
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8)));
+        parser.readModel();
+        parser.resolveDuplicates();
+        EntityStore<IfcInstance> linemap = parser.getLinemap();
+        Assertions.assertEquals(7, linemap.getRedirectCount());
+        for (long[] duplicate : new long[][]{{6, 1}, {7, 2}, {9, 8}, {10, 3}, {11, 4}, {12, 5}}) {
+            Assertions.assertFalse(linemap.contains(duplicate[0]));
+            Assertions.assertEquals(duplicate[1], linemap.get(duplicate[0]).getLineNum());
+        }
+        // a different orientation
+        Assertions.assertTrue(linemap.contains(13));
+        // (#5,#12) and (#12,#5) are both (#5,#5)
+        Assertions.assertTrue(linemap.contains(14));
+        Assertions.assertEquals(14, linemap.get(15).getLineNum());
+        Assertions.assertTrue(parser.mapEntries());
+    }
+
+    @Test
+    public final void testParallelResolveDuplicates() throws IOException {
+        File model = officeModel();
+        IfcSpfParser sequential = parse(model, 1);
+        sequential.resolveDuplicates();
+        IfcSpfParser parallel = parse(model, 4);
+        parallel.resolveDuplicates();
+        Assertions.assertEquals(sequential.getLinemap().getRedirectCount(), parallel.getLinemap().getRedirectCount());
+        for (long line = 1; line <= sequential.getIdCounter(); line++) {
+            IfcInstance expected = sequential.getLinemap().get(line);
+            if (expected != null)
+                Assertions.assertEquals(expected.getLineNum(), parallel.getLinemap().get(line).getLineNum());
+        }
+    }
+
+    @Test
+    public final void testStatementsAcrossWindows() throws IOException {
+        File model = officeModel();
+        IfcSpfParser reference = parse(model, 1);
+
+        IfcSpfParser mapped = new IfcSpfParser(new FileInputStream(model));
+        mapped.mappedWindowSize = 4093;
+        mapped.readModel();
+        assertSameModel(reference, mapped);
+
+        IfcSpfParser streamed = new IfcSpfParser(new ByteArrayInputStream(Files.readAllBytes(model.toPath())));
+        streamed.streamBufferSize = 64;
+        streamed.readModel();
+        assertSameModel(reference, streamed);
+    }
+
+    @Test
+    public final void testParallelParse() throws IOException {
+        File model = officeModel();
+        assertSameModel(parse(model, 1), parse(model, 4));
+    }
+
+    @Test
+    public final void testParallelParseWithBoundaryInsideString(@TempDir Path dir) throws IOException {
+        StringBuilder sb = new StringBuilder("ISO-10303-21;\nHEADER;\nFILE_SCHEMA(('IFC4'));\nENDSEC;\nDATA;\n");
+        long line = 1;
+        while (sb.length() < 1000000)
+            sb.append('#').append(line++).append("= IFCCARTESIANPOINT((0.,1.,2.));\n");
+        // a string that looks like a sequence of statements around the first
+        // chunk boundary, at 1 MB
+        sb.append('#').append(line++).append("= IFCLABEL('");
+        while (sb.length() < 1100000)
+            sb.append(";#9= IFCLABEL('x');");
+        sb.append("');\n");
+        while (sb.length() < 2200000)
+            sb.append('#').append(line++).append("= IFCCARTESIANPOINT((0.,1.,2.));\n");
+        sb.append("ENDSEC;\nEND-ISO-10303-21;\n");
+        Path file = dir.resolve("boundaries.ifc");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        IfcSpfParser sequential = parse(file.toFile(), 1);
+        Assertions.assertEquals(line - 1, sequential.getLinemap().size());
+        assertSameModel(sequential, parse(file.toFile(), 4));
+    }
+
+    private static void assertSameModel(IfcSpfParser expected, IfcSpfParser actual) {
+        Assertions.assertEquals(expected.getIdCounter(), actual.getIdCounter());
+        Assertions.assertEquals(expected.getLinemap().size(), actual.getLinemap().size());
+        for (IfcInstance expectedVo : expected.getLinemap()) {
+            IfcInstance vo = actual.getLinemap().get(expectedVo.getLineNum());
+            Assertions.assertNotNull(vo);
+            Assertions.assertEquals(expectedVo.getName(), vo.getName());
+            Assertions.assertTrue(expectedVo.hasSameContent(vo));
+        }
+    }
+}
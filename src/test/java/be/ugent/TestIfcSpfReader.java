@@ -14,15 +14,21 @@
  */
 package be.ugent;
 
+import org.apache.jena.datatypes.xsd.XSDDatatype;
 import org.apache.jena.ext.com.google.common.collect.Streams;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.graph.impl.GraphMatcher;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.sparql.graph.GraphFactory;
 import org.apache.jena.sparql.graph.GraphOps;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -33,10 +39,14 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.*;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static java.util.stream.Collectors.joining;
 
@@ -150,6 +160,114 @@ public class TestIfcSpfReader {
 
     }
 
+    /**
+     * The streaming conversion must produce the same graph as the in-memory
+     * conversion.
+     */
+    @Test
+    public final void testConvertStreaming() throws IOException {
+        List<String> inputFiles = showAllFiles(TestIfcSpfReader.class.getClassLoader().getResource("convertIFCFileToOutputTTL").getFile());
+        for (String inputFile : inputFiles) {
+            if (!inputFile.endsWith(".ifc"))
+                continue;
+            String path = new File(inputFile).getAbsolutePath();
+            reader.setup(path);
+            reader.setStreaming(false);
+            Graph expected = reader.convert(path, "http://linkedbuildingdata.net/ifc/resources/");
+            reader.setStreaming(true);
+            Graph actual = reader.convert(path, "http://linkedbuildingdata.net/ifc/resources/");
+            Assertions.assertTrue(expected.isIsomorphicWith(actual), "Streaming output differs for " + inputFile);
+        }
+    }
+
+    /**
+     * The RDF Thrift output must hold the same graph, with the header as
+     * triples of the ontology.
+     */
+    @Test
+    public final void testConvertThrift() throws IOException {
+        String baseURI = "http://linkedbuildingdata.net/ifc/resources/";
+        List<String> inputFiles = showAllFiles(TestIfcSpfReader.class.getClassLoader().getResource("convertIFCFileToOutputTTL").getFile());
+        for (String inputFile : inputFiles) {
+            if (!inputFile.endsWith(".ifc"))
+                continue;
+            String path = new File(inputFile).getAbsolutePath();
+            reader.setup(path);
+            Graph expected = reader.convert(path, baseURI);
+            File output = File.createTempFile("ifc", ".trdf");
+            output.deleteOnExit();
+            reader.setOutputFormat(OutputFormat.THRIFT);
+            reader.convert(path, output.getPath(), baseURI);
+            Graph actual = GraphFactory.createGraphMem();
+            RDFDataMgr.read(actual, output.getPath(), RDFLanguages.RDFTHRIFT);
+
+            Node ontology = NodeFactory.createURI(baseURI);
+            Triple imports = Triple.create(ontology, OWL.imports.asNode(), NodeFactory.createURI(reader.getOntURI()));
+            Assertions.assertTrue(actual.contains(imports), "No header in " + output);
+            expected.add(imports);
+            expected.add(Triple.create(ontology, RDF.type.asNode(), OWL.Ontology.asNode()));
+            Assertions.assertTrue(expected.isIsomorphicWith(actual), "RDF Thrift output differs for " + inputFile);
+        }
+    }
+
+    /**
+     * An .ifczip archive is read from its IFC entry, also by the two passes of
+     * the streaming conversion.
+     */
+    @Test
+    public final void testConvertIfcZip() throws IOException {
+        String baseURI = "http://linkedbuildingdata.net/ifc/resources/";
+        File input = new File("src/test/resources/convertIFCFileToOutputTTL/PiPauwel_IFCtoRDF_test5.ifc");
+        File archive = File.createTempFile("test5", ".ifczip");
+        archive.deleteOnExit();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("readme.txt"));
+            zip.write("not a model".getBytes());
+            zip.putNextEntry(new ZipEntry("model/test5.ifc"));
+            Files.copy(input.toPath(), zip);
+        }
+        reader.setup(input.getAbsolutePath());
+        Graph expected = reader.convert(input.getAbsolutePath(), baseURI);
+
+        IfcSpfReader zipped = new IfcSpfReader();
+        zipped.setup(archive.getAbsolutePath());
+        Assertions.assertEquals(reader.getOntURI(), zipped.getOntURI());
+        Assertions.assertTrue(expected.isIsomorphicWith(zipped.convert(archive.getAbsolutePath(), baseURI)));
+        zipped.setStreaming(true);
+        Assertions.assertTrue(expected.isIsomorphicWith(zipped.convert(archive.getAbsolutePath(), baseURI)));
+    }
+
+    /**
+     * A malformed REAL is written as it is in the file, like any literal that
+     * is not read as a number.
+     */
+    @Test
+    public final void testConvertMalformedReal() throws IOException {
+        File input = new File("src/test/resources/convertIFCFileToOutputTTL/PiPauwel_IFCtoRDF_test3.ifc");
+        File malformed = File.createTempFile("malformed", ".ifc");
+        malformed.deleteOnExit();
+        String model = new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8);
+        Files.write(malformed.toPath(), model.replace("0.0254", "2.54E").getBytes(StandardCharsets.UTF_8));
+        reader.setup(malformed.getAbsolutePath());
+        Graph graph = reader.convert(malformed.getAbsolutePath(), "http://linkedbuildingdata.net/ifc/resources/");
+        Assertions.assertTrue(graph.contains(Node.ANY, Node.ANY, NodeFactory.createLiteral("2.54E", XSDDatatype.XSDdouble)));
+    }
+
+    /**
+     * A file of a schema that is not bundled is refused by the setup.
+     */
+    @Test
+    public final void testSetupUnknownSchema() throws IOException {
+        File input = new File("src/test/resources/convertIFCFileToOutputTTL/PiPauwel_IFCtoRDF_test3.ifc");
+        File unknown = File.createTempFile("unknown", ".ifc");
+        unknown.deleteOnExit();
+        String model = new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8);
+        Files.write(unknown.toPath(), model.replace("FILE_SCHEMA(('IFC4'))", "FILE_SCHEMA(('IFC5'))").getBytes(StandardCharsets.UTF_8));
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> reader.setup(unknown.getAbsolutePath()));
+        Assertions.assertTrue(e.getMessage().startsWith("Unrecognised EXPRESS schema"));
+    }
+
     /*public static Stream<Arguments> testConvertIFCFileToOutputTTL() {
         final List<String> inputFiles;
         inputFiles = showAllFiles(TestIfcSpfReader.class.getClassLoader().getResource("convertIFCFileToOutputTTL").getFile());
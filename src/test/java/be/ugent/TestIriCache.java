@@ -0,0 +1,49 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.Collections;
+
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestIriCache {
+
+    private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+
+    @Test
+    public final void testIris() {
+        IriCache iris = new IriCache(BASE_URI);
+        Resource wall = iris.get("IfcWall", 12);
+        Assertions.assertEquals(BASE_URI + "IfcWall_12", wall.getURI());
+        Assertions.assertSame(wall, iris.get("IfcWall", 12));
+        Assertions.assertEquals(BASE_URI + "IfcWall_13", iris.get("IfcWall", 13).getURI());
+        Assertions.assertEquals(BASE_URI + "IfcDoor_12", iris.get("IfcDoor", 12).getURI());
+        Assertions.assertEquals(BASE_URI + "IfcWall_" + Long.MAX_VALUE, iris.get("IfcWall", Long.MAX_VALUE).getURI());
+
+        AttributeTable.Range range = new AttributeTable.Range(ResourceFactory.createResource("http://example.org/ifc#IfcLabel"),
+                true, false, false, false, null, null, null, Collections.emptyList());
+        Resource label = iris.get(range, 7);
+        Assertions.assertEquals(BASE_URI + "IfcLabel_7", label.getURI());
+        Assertions.assertSame(label, iris.get(range, 7));
+
+        // many numbers later the resource is made again, with the same IRI
+        for (int i = 0; i < 100000; i++)
+            Assertions.assertEquals(BASE_URI + "IfcWall_" + i, iris.get("IfcWall", i).getURI());
+        Assertions.assertEquals(wall, iris.get("IfcWall", 12));
+    }
+}
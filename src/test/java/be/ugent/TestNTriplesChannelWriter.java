@@ -0,0 +1,120 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestNTriplesChannelWriter {
+
+    private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public final void testSameGraphAsTurtle() throws Exception {
+        File[] files = new File("src/test/resources/convertIFCFileToOutputTTL").listFiles((d, name) -> name.endsWith(".ifc"));
+        Assertions.assertTrue(files.length > 0);
+        IfcSpfReader reader = new IfcSpfReader();
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            reader.setup(path);
+            Graph expected = reader.convert(path, BASE_URI);
+
+            reader.setOutputFormat(OutputFormat.NTRIPLES);
+            String nt = dir.resolve(file.getName() + ".nt").toString();
+            reader.convert(path, nt, BASE_URI);
+            Graph actual = GraphFactory.createGraphMem();
+            RDFDataMgr.read(actual, nt, Lang.NTRIPLES);
+            Assertions.assertTrue(expected.isIsomorphicWith(actual), "N-Triples output differs for " + file);
+
+            reader.setOutputFormat(OutputFormat.NQUADS);
+            String nq = dir.resolve(file.getName() + ".nq").toString();
+            reader.convert(path, nq, BASE_URI);
+            Dataset dataset = DatasetFactory.create();
+            RDFDataMgr.read(dataset, nq, Lang.NQUADS);
+            Assertions.assertTrue(expected.isIsomorphicWith(dataset.getNamedModel(BASE_URI).getGraph()),
+                    "N-Quads output differs for " + file);
+            reader.setOutputFormat(OutputFormat.TURTLE);
+        }
+    }
+
+    @Test
+    public final void testEscapes() throws Exception {
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 3 << 20)
+            large.append("a \"quoted\" \\ line\r\n\u00b1\u4e2d\ud83d\ude00 ");
+        Node subject = NodeFactory.createURI(BASE_URI + "IfcLabel_1");
+        Node property = NodeFactory.createURI("https://w3id.org/express#hasString");
+        Graph expected = GraphFactory.createGraphMem();
+        expected.add(Triple.create(subject, property, NodeFactory.createLiteral("it's \"x\"\t\u00e9")));
+        expected.add(Triple.create(subject, property, NodeFactory.createLiteral(large.toString())));
+        expected.add(Triple.create(subject, property, NodeFactory.createLiteral("label", "en")));
+        expected.add(Triple.create(subject, property, NodeFactory.createLiteral("1.5", XSDDatatype.XSDdouble)));
+        expected.add(Triple.create(NodeFactory.createBlankNode("b0"), property, subject));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NTriplesChannelWriter writer = new NTriplesChannelWriter(Channels.newChannel(bytes), null);
+        writer.start();
+        expected.find().forEachRemaining(writer::triple);
+        writer.finish();
+        Assertions.assertEquals(bytes.size(), writer.getBytesWritten());
+
+        Graph actual = GraphFactory.createGraphMem();
+        RDFDataMgr.read(actual, new ByteArrayInputStream(bytes.toByteArray()), Lang.NTRIPLES);
+        Assertions.assertTrue(expected.isIsomorphicWith(actual));
+    }
+
+    @Test
+    public final void testPrefixes() throws Exception {
+        Node property = NodeFactory.createURI("https://w3id.org/express#hasString");
+        Graph expected = GraphFactory.createGraphMem();
+        for (String uri : new String[]{BASE_URI, BASE_URI + "IfcWall_1", BASE_URI + "sub/IfcWall_2",
+                "http://example.org/\u00e9/IfcDoor_3", "http://example.org/other"})
+            expected.add(Triple.create(NodeFactory.createURI(uri), property, NodeFactory.createURI(uri + "_x")));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NTriplesChannelWriter writer = new NTriplesChannelWriter(Channels.newChannel(bytes), null);
+        writer.prefix("inst", BASE_URI);
+        writer.prefix("sub", BASE_URI + "sub/");
+        writer.prefix("ex", "http://example.org/\u00e9/");
+        writer.prefix("empty", "");
+        writer.start();
+        expected.find().forEachRemaining(writer::triple);
+        writer.finish();
+
+        Graph actual = GraphFactory.createGraphMem();
+        RDFDataMgr.read(actual, new ByteArrayInputStream(bytes.toByteArray()), Lang.NTRIPLES);
+        Assertions.assertTrue(expected.isIsomorphicWith(actual));
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestNumberSet {
+
+    @Test
+    public final void testAdd() {
+        NumberSet set = new NumberSet();
+        for (long number : new long[]{0, 63, 64, 70000, 1L << 36, 1L << 40, -1}) {
+            Assertions.assertFalse(set.contains(number));
+            Assertions.assertTrue(set.add(number), "First add of " + number);
+            Assertions.assertFalse(set.add(number), "Second add of " + number);
+            Assertions.assertTrue(set.contains(number));
+        }
+        Assertions.assertEquals(7, set.size());
+        Assertions.assertFalse(set.contains(1));
+        Assertions.assertFalse(set.contains(65));
+        Assertions.assertFalse(set.contains(1L << 30));
+
+        set.clear();
+        Assertions.assertEquals(0, set.size());
+        Assertions.assertFalse(set.contains(63));
+        Assertions.assertFalse(set.contains(1L << 40));
+        Assertions.assertTrue(set.add(63));
+    }
+}
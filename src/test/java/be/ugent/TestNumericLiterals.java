@@ -0,0 +1,82 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TestNumericLiterals {
+
+    @Test
+    public final void testParseReal() {
+        String[] numbers = new String[]{"0.", "-0.", "12.", "0.5", "-0.005", "12.50", "3.14159265358979",
+                "1.5E-3", "-2.E+05", "+1.", "007.5", "1234567890123456.7", "1.E-300", "9.9E307", "2.5e2",
+                "0.000000000000000000000000001", "123456789012345678901234567890."};
+        for (String number : numbers)
+            Assertions.assertEquals(Double.parseDouble(number), NumericLiterals.parseReal(number), number);
+        Assertions.assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(NumericLiterals.parseReal("-0.")));
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            String number = (random.nextBoolean() ? "-" : "") + Math.abs(random.nextLong() % 10_000_000_000L) + "."
+                    + Math.abs(random.nextLong() % 1_000_000_000L) + (random.nextInt(4) == 0 ? "E" + (random.nextInt(60) - 30) : "");
+            Assertions.assertEquals(Double.parseDouble(number), NumericLiterals.parseReal(number), number);
+        }
+    }
+
+    @Test
+    public final void testNotAReal() {
+        for (String text : new String[]{"", "-", ".", "1.0d", "NaN", "Infinity", "0x1p3", "1.0E", "1.0E+", "1..0", "abc"})
+            Assertions.assertTrue(Double.isNaN(NumericLiterals.parseReal(text)), text);
+        Assertions.assertNull(NumericLiterals.doubleLiteral("1.0f"));
+        Assertions.assertNull(NumericLiterals.integerLiteral("99999999999999999999"));
+    }
+
+    @Test
+    public final void testLiterals() {
+        Node literal = NumericLiterals.doubleLiteral("12.");
+        Assertions.assertEquals("12.0", literal.getLiteralLexicalForm());
+        Assertions.assertEquals(NodeFactory.createLiteral("12.0", XSDDatatype.XSDdouble), literal);
+        Assertions.assertEquals("1.5E-5", NumericLiterals.doubleLiteral("0.000015").getLiteralLexicalForm());
+
+        Node integer = NumericLiterals.integerLiteral("+0042");
+        Assertions.assertEquals("42", integer.getLiteralLexicalForm());
+        Assertions.assertEquals(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger), integer);
+        Assertions.assertTrue(integer.sameValueAs(NodeFactory.createLiteral("42", XSDDatatype.XSDinteger)));
+        Assertions.assertEquals(NodeFactory.createLiteral("5000000000", XSDDatatype.XSDinteger),
+                NumericLiterals.integerLiteral("5000000000"));
+    }
+
+    /**
+     * A literal made from a value the parser read equals the one made from
+     * the text of that value.
+     */
+    @Test
+    public final void testLiteralsFromValues() {
+        ValueList values = new ValueList.Builder().addDecimal(1250, 2, true).addReal(1.5E-3, "1.5E-3")
+                .addInteger(42, null).addInteger(42, "+0042").addInteger(5_000_000_000L, null).build();
+        Assertions.assertEquals(NumericLiterals.doubleLiteral("-12.50"), NumericLiterals.doubleLiteral(values.getDouble(0)));
+        Assertions.assertEquals(NumericLiterals.doubleLiteral("1.5E-3"), NumericLiterals.doubleLiteral(values.getDouble(1)));
+        Assertions.assertEquals(NumericLiterals.doubleLiteral("42"), NumericLiterals.doubleLiteral(values.getDouble(2)));
+        for (int i = 2; i < values.size(); i++)
+            Assertions.assertEquals(NumericLiterals.integerLiteral(values.getLexicalForm(i).replace("+", "")),
+                    NumericLiterals.integerLiteral(values.getLong(i)), values.getLexicalForm(i));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestParallelGzipOutputStream {
+
+    private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public final void testRoundTrip() throws IOException {
+        Random random = new Random(11);
+        for (int size : new int[]{0, 1, 128 * 1024, 128 * 1024 + 1, 3 << 20}) {
+            byte[] text = new byte[size];
+            for (int i = 0; i < size; i++)
+                text[i] = (byte) ("IFCCARTESIANPOINT((0.,1.5,#12));\n".charAt(random.nextInt(33)));
+            byte[] noise = new byte[size];
+            random.nextBytes(noise);
+            for (byte[] data : new byte[][]{text, noise}) {
+                for (int threads : new int[]{1, 4}) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (OutputStream out = new ParallelGzipOutputStream(bytes, threads, Deflater.DEFAULT_COMPRESSION)) {
+                        // writes of uneven lengths that do not line up with the blocks
+                        for (int i = 0; i < size; ) {
+                            int n = Math.min(size - i, 1 + random.nextInt(70000));
+                            if (n == 1)
+                                out.write(data[i]);
+                            else
+                                out.write(data, i, n);
+                            i += n;
+                        }
+                    }
+                    Assertions.assertArrayEquals(data, gunzip(bytes.toByteArray()), size + " bytes on " + threads + " threads");
+                }
+            }
+        }
+    }
+
+    @Test
+    public final void testCompressedInputAndOutput() throws IOException {
+        File input = new File("src/test/resources/convertIFCFileToOutputTTL/PiPauwel_IFCtoRDF_test5.ifc");
+        File compressed = dir.resolve("test5.ifc.gz").toFile();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+            Files.copy(input.toPath(), out);
+        }
+        Assertions.assertEquals(input.length(), BatchConverter.uncompressedLength(compressed));
+
+        IfcSpfReader reader = new IfcSpfReader();
+        reader.setup(input.getAbsolutePath());
+        Graph expected = reader.convert(input.getAbsolutePath(), BASE_URI);
+        String ontURI = reader.getOntURI();
+
+        reader = new IfcSpfReader();
+        reader.setup(compressed.getAbsolutePath());
+        Assertions.assertEquals(ontURI, reader.getOntURI());
+        for (OutputFormat format : new OutputFormat[]{OutputFormat.TURTLE, OutputFormat.NTRIPLES}) {
+            reader.setOutputFormat(format);
+            String output = dir.resolve("test5." + format.getExtension() + ".gz").toString();
+            reader.convert(compressed.getAbsolutePath(), output, BASE_URI);
+            Graph actual = GraphFactory.createGraphMem();
+            try (InputStream in = new GZIPInputStream(new FileInputStream(output))) {
+                RDFDataMgr.read(actual, in, BASE_URI, format == OutputFormat.TURTLE ? Lang.TTL : Lang.NTRIPLES);
+            }
+            Assertions.assertTrue(expected.isIsomorphicWith(actual), "Output differs for " + output);
+        }
+    }
+
+    /**
+     * A stream whose last block or trailer cannot be written fails on close,
+     * so that the incomplete file is not taken for a whole one.
+     */
+    @Test
+    public final void testCloseFailure() throws IOException {
+        OutputStream failing = new OutputStream() {
+            private int written = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                // the header is written, then the disk is full
+                if (++written > 10)
+                    throw new IOException("Disk full");
+            }
+        };
+        OutputStream out = new ParallelGzipOutputStream(failing, 2, Deflater.DEFAULT_COMPRESSION);
+        out.write(new byte[1000]);
+        IOException e = Assertions.assertThrows(IOException.class, out::close);
+        Assertions.assertEquals("Could not finish the gzip stream, it is incomplete", e.getMessage());
+        Assertions.assertEquals("Disk full", e.getCause().getMessage());
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+}
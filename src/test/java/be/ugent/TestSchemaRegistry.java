@@ -0,0 +1,77 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.shared.DeleteDeniedException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestSchemaRegistry {
+
+    @Test
+    public final void testLoadedOnce() throws Exception {
+        SchemaRegistry registry = new SchemaRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<SchemaRegistry.Schema>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                futures.add(executor.submit(() -> registry.get("IFC2X3_TC1")));
+            SchemaRegistry.Schema schema = futures.get(0).get();
+            for (Future<SchemaRegistry.Schema> future : futures)
+                Assertions.assertSame(schema, future.get());
+        } finally {
+            executor.shutdown();
+        }
+        SchemaRegistry.Schema schema = registry.get("IFC2X3_TC1");
+        Assertions.assertEquals("http://standards.buildingsmart.org/IFC/DEV/IFC2x3/TC1/OWL", schema.getOntURI());
+        Assertions.assertNotNull(schema.getEntityMap().get("IFCWALL"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> schema.getEntityMap().clear());
+        Assertions.assertThrows(DeleteDeniedException.class, () -> schema.getOntology().removeAll());
+    }
+
+    @Test
+    public final void testEviction() {
+        SchemaRegistry registry = new SchemaRegistry();
+        registry.setMaxSchemas(1);
+        SchemaRegistry.Schema schema = registry.get("IFC2X3_TC1");
+        registry.get("IFC4_ADD2_TC1");
+        Assertions.assertFalse(registry.isLoaded("IFC2X3_TC1"));
+        Assertions.assertTrue(registry.isLoaded("IFC4_ADD2_TC1"));
+        Assertions.assertNotSame(schema, registry.get("IFC2X3_TC1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.get("IFC5"));
+        Assertions.assertFalse(registry.isLoaded("IFC5"));
+    }
+
+    /**
+     * An unknown or misspelled schema fails at once, without reading an
+     * EXPRESS file.
+     */
+    @Test
+    public final void testUnsupportedSchema() {
+        SchemaRegistry registry = new SchemaRegistry();
+        Assertions.assertTrue(SchemaRegistry.isSupported("IFC4x1"));
+        Assertions.assertFalse(SchemaRegistry.isSupported("IFC4X1"));
+        Assertions.assertFalse(SchemaRegistry.isSupported(""));
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> registry.get(""));
+        Assertions.assertEquals("Unrecognised EXPRESS schema: ", e.getMessage());
+        Assertions.assertFalse(registry.isLoaded(""));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+import com.buildingsmart.tech.ifcowl.vo.TypeVO;
+
+public class TestSchemaSnapshot {
+
+    /**
+     * The snapshot in the build output must be the one that is generated from
+     * the bundled EXPRESS file and ontology.
+     */
+    @Test
+    public final void testBundledSnapshotIsCurrent() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SchemaSnapshot.generate(new File("src/main/resources"), "IFC2X3_TC1", out);
+        byte[] bundled;
+        try (InputStream in = TestSchemaSnapshot.class.getResourceAsStream("/IFC2X3_TC1.snapshot")) {
+            bundled = in.readAllBytes();
+        }
+        Assertions.assertArrayEquals(bundled, out.toByteArray(),
+                "IFC2X3_TC1.snapshot is out of date, rebuild it with mvn process-classes");
+    }
+
+    @Test
+    public final void testRead() throws Exception {
+        SchemaSnapshot snapshot;
+        try (InputStream in = TestSchemaSnapshot.class.getResourceAsStream("/IFC2X3_TC1.snapshot")) {
+            snapshot = SchemaSnapshot.read(ByteBuffer.wrap(in.readAllBytes()));
+        }
+        Assertions.assertEquals("IFC2X3_TC1", snapshot.getName());
+        Assertions.assertEquals(653, snapshot.getEntityMap().size());
+        Assertions.assertEquals(327, snapshot.getTypeMap().size());
+
+        EntityVO wall = snapshot.getEntityMap().get("IFCWALL");
+        Assertions.assertEquals("IfcWall", wall.getName());
+        Assertions.assertEquals("globalId_IfcRoot", wall.getDerivedAttributeList().get(0).getLowerCaseName());
+        AttributeTable.Attribute globalId = snapshot.getAttributeTable().getAttribute(wall, 0);
+        Assertions.assertEquals(snapshot.getOntURI() + "#globalId_IfcRoot", globalId.getProperty().getURI());
+        Assertions.assertEquals(snapshot.getOntURI() + "#IfcGloballyUniqueId", globalId.getRange().getResource().getURI());
+
+        TypeVO label = snapshot.getTypeMap().get("IFCLABEL");
+        AttributeTable.Range range = snapshot.getAttributeTable().getSchemaRange(label.getName());
+        Assertions.assertEquals("string", range.getXSDType());
+        AttributeTable.Range enumeration = snapshot.getAttributeTable().getSchemaRange("IfcWallTypeEnum");
+        Assertions.assertTrue(enumeration.isEnumeration());
+        Assertions.assertEquals(snapshot.getOntURI() + "#NOTDEFINED", enumeration.getIndividual(".NOTDEFINED.").getURI());
+        Assertions.assertEquals(enumeration.getIndividual(".NOTDEFINED."), enumeration.getIndividual(".notDefined."));
+        Assertions.assertNull(enumeration.getIndividual(".NOSUCHVALUE."));
+    }
+}
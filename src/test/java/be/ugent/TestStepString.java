@@ -0,0 +1,63 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TestStepString {
+
+    private static String decode(String string) {
+        String model = "DATA;\n#1= IFCTEST('" + string + "');\nENDSEC;\n";
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8)));
+        parser.readModel();
+        return parser.getLinemap().get(1).getValues().getString(0);
+    }
+
+    @Test
+    public final void testDirectives() {
+        Assertions.assertEquals("Wall's = 1", decode("Wall''s = 1"));
+        Assertions.assertEquals("a\\b", decode("a\\\\b"));
+        Assertions.assertEquals("\u00B10.00", decode("\\X2\\00B1\\X0\\0.00"));
+        Assertions.assertEquals("\u00C4\u0416\u4E2D", decode("\\X2\\00C404164E2D\\X0\\"));
+        Assertions.assertEquals("x\uD83D\uDE00y", decode("x\\X4\\0001F600\\X0\\y"));
+        Assertions.assertEquals("caf\u00E9", decode("caf\\X\\E9"));
+        Assertions.assertEquals("\u00E4", decode("\\S\\d"));
+        Assertions.assertEquals("\u0434", decode("\\PE\\\\S\\T"));
+        Assertions.assertEquals("\u00A7", decode("\\S\\''"));
+        Assertions.assertEquals("\u00FCber", decode("\u00FCber"));
+    }
+
+    @Test
+    public final void testMalformedDirectives() {
+        Assertions.assertEquals("\\X2\\00B", decode("\\X2\\00B"));
+        Assertions.assertEquals("\\X\\G1", decode("\\X\\G1"));
+        Assertions.assertEquals("C:\\temp", decode("C:\\temp"));
+        Assertions.assertEquals("end\\", decode("end\\"));
+    }
+
+    @Test
+    public final void testEncodeRoundTrip() {
+        String text = "it's a \\ test \u00B1";
+        StepString string = StepString.of(text);
+        Assertions.assertEquals(text, string.toString());
+        Assertions.assertEquals("it''s a \\\\ test \u00B1", string.getEncoded());
+        Assertions.assertEquals(string, StepString.of(text));
+        Assertions.assertEquals(string.hashCode(), StepString.of(text).hashCode());
+    }
+}
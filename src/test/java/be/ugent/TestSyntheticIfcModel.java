@@ -0,0 +1,106 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.buildingsmart.tech.ifcowl.vo.EntityVO;
+
+public class TestSyntheticIfcModel {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public final void testDeterministic() throws Exception {
+        byte[] first = write("IFC2X3_TC1", 42, 256 * 1024);
+        Assertions.assertArrayEquals(first, write("IFC2X3_TC1", 42, 256 * 1024));
+        Assertions.assertFalse(Arrays.equals(first, write("IFC2X3_TC1", 43, 256 * 1024)));
+        Assertions.assertTrue(first.length >= 256 * 1024 && first.length < 320 * 1024, "size " + first.length);
+    }
+
+    /**
+     * Every instance has the number of attributes of its entity in the schema
+     * and all references resolve.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"IFC2X3_TC1", "IFC4_ADD2_TC1"})
+    public final void testValidInstances(String schemaName) throws Exception {
+        SchemaRegistry.Schema schema = SchemaRegistry.getInstance().get(schemaName);
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(write(schemaName, 1, 512 * 1024)));
+        parser.readModel();
+        Assertions.assertTrue(parser.mapEntries());
+        for (IfcInstance instance : parser.getLinemap()) {
+            EntityVO entity = schema.getEntityMap().get(instance.getName().toUpperCase(Locale.ROOT));
+            Assertions.assertNotNull(entity, instance.getName());
+            Assertions.assertEquals(entity.getDerivedAttributeList().size(), countAttributes(instance.getValues()),
+                    instance.toString());
+        }
+    }
+
+    /**
+     * @return the number of attributes, where a typed value is a keyword
+     *         followed by a list
+     */
+    private static int countAttributes(ValueList values) {
+        int count = values.size();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.getKind(i) == ValueList.KEYWORD)
+                count--;
+        }
+        return count;
+    }
+
+    @Test
+    public final void testConvert() throws Exception {
+        File file = dir.resolve("synthetic.ifc").toFile();
+        SyntheticIfcModel model = new SyntheticIfcModel("IFC4_ADD2_TC1", 5);
+        model.setTargetSize(512 * 1024);
+        model.write(file);
+        long walls = model.getEntityCounts().get("IfcWall");
+        Assertions.assertTrue(model.getEntityCounts().get("IfcCartesianPoint") > walls);
+        Assertions.assertTrue(model.getEntityCounts().get("IfcPropertySingleValue") > walls);
+        Assertions.assertTrue(model.getEntityCounts().containsKey("IfcTriangulatedFaceSet"));
+
+        IfcSpfReader reader = new IfcSpfReader();
+        reader.setup(file.getPath());
+        Graph graph = reader.convert(file.getPath(), "http://linkedbuildingdata.net/ifc/resources/");
+        Node wall = NodeFactory.createURI(reader.getOntURI() + "#IfcWall");
+        Assertions.assertEquals(walls, graph.find(Node.ANY, RDF.type.asNode(), wall).toList().size());
+    }
+
+    private static byte[] write(String schema, long seed, long size) throws Exception {
+        SyntheticIfcModel model = new SyntheticIfcModel(schema, seed);
+        model.setTargetSize(size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.write(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class TestValueList {
+
+    private static ValueList parse(String parameters) {
+        String model = "DATA;\n#1= IFCTEST(" + parameters + ");\nENDSEC;\n";
+        IfcSpfParser parser = new IfcSpfParser(new ByteArrayInputStream(model.getBytes(StandardCharsets.UTF_8)));
+        parser.readModel();
+        return parser.getLinemap().get(1).getValues();
+    }
+
+    @Test
+    public final void testNumberLexicalForms() {
+        String[] numbers = new String[]{"0.", "-0.", "12.", "0.5", "-0.005", "12.50", "3.14159265358979",
+                "0.000000000000001", "123456789012345.", "1.5E-3", "-2.E+05", "+1.", "007.5", "1234567890123456.7",
+                "0", "-0", "42", "-42", "+42", "0042", "99999999999999999999"};
+        ValueList values = parse(String.join(",", numbers));
+        Assertions.assertEquals(numbers.length, values.size());
+        for (int i = 0; i < numbers.length; i++) {
+            Assertions.assertEquals(numbers[i], values.getLexicalForm(i));
+            if (values.getKind(i) == ValueList.REAL)
+                Assertions.assertEquals(Double.parseDouble(numbers[i]), values.getDouble(i), numbers[i]);
+        }
+        Assertions.assertEquals(Long.MAX_VALUE, values.getLong(numbers.length - 1));
+    }
+
+    @Test
+    public final void testRandomDecimals() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        String[] numbers = new String[2000];
+        for (int i = 0; i < numbers.length; i++) {
+            int fractionDigits = random.nextInt(16);
+            long unscaled = (long) (random.nextDouble() * Math.pow(10, 1 + random.nextInt(15)));
+            String digits = Long.toString(unscaled);
+            while (digits.length() <= fractionDigits)
+                digits = "0" + digits;
+            numbers[i] = (random.nextBoolean() ? "-" : "") + digits.substring(0, digits.length() - fractionDigits)
+                    + "." + digits.substring(digits.length() - fractionDigits);
+            sb.append(i > 0 ? "," : "").append(numbers[i]);
+        }
+        ValueList values = parse(sb.toString());
+        for (int i = 0; i < numbers.length; i++) {
+            Assertions.assertEquals(numbers[i], values.getLexicalForm(i));
+            Assertions.assertEquals(Double.parseDouble(numbers[i]), values.getDouble(i), numbers[i]);
+        }
+    }
+
+    @Test
+    public final void testEquality() {
+        Assertions.assertEquals(parse("#1,'a',(1.,.T.)"), parse("#1, 'a' , ( 1. ,\n.T.)"));
+        Assertions.assertNotEquals(parse("#1,'a',(1.,.T.)"), parse("#1,'a',(1.0,.T.)"));
+        Assertions.assertNotEquals(parse("#1"), parse("1"));
+        Assertions.assertEquals(parse("#1,'a',(1.,.T.)").hashCode(), parse("#1,'a',(1.,.T.)").hashCode());
+    }
+}
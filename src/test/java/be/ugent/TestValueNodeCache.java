@@ -0,0 +1,161 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestValueNodeCache {
+
+    private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+    private static final String EXPRESS_NS = "https://w3id.org/express#";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public final void testFindAndPut() {
+        AttributeTable.Range length = range("IfcLengthMeasure", "double");
+        AttributeTable.Range ratio = range("IfcRatioMeasure", "double");
+        AttributeTable.Range label = range("IfcLabel", "string");
+        ValueNodeCache cache = new ValueNodeCache(0);
+        for (int i = 1; i <= 100000; i++) {
+            Assertions.assertEquals(-1, cache.find(length, Integer.toString(i)));
+            cache.put(i, length);
+        }
+        Assertions.assertEquals(100000, cache.size());
+        for (int i = 1; i <= 100000; i++) {
+            int slot = cache.find(length, Integer.toString(i));
+            Assertions.assertEquals(i, cache.getNumber(slot));
+            Assertions.assertSame(length, cache.getRange(slot));
+        }
+        // the same value property and XSD type share the node of a value
+        Assertions.assertEquals(7, cache.getNumber(cache.find(ratio, "7")));
+        Assertions.assertEquals(-1, cache.find(label, "7"));
+        Assertions.assertEquals(0, cache.getEvictions());
+
+        cache.clear();
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(-1, cache.find(length, "7"));
+    }
+
+    /**
+     * A number is found by the element it was parsed into, which tells
+     * numbers that are written differently apart, and never by its text.
+     */
+    @Test
+    public final void testFindNumbers() {
+        AttributeTable.Range length = range("IfcLengthMeasure", "double");
+        ValueList values = new ValueList.Builder().addDecimal(150, 2, false).addDecimal(15, 1, false)
+                .addReal(1.5, "1.5E0").addDecimal(150, 2, false).addReal(1.5, "1.5E0").addInteger(7, null).build();
+        ValueNodeCache cache = new ValueNodeCache(0);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(-1, cache.find(length, values, i));
+            cache.put(i + 1, length);
+        }
+        Assertions.assertEquals(1, cache.getNumber(cache.find(length, values, 3)));
+        Assertions.assertEquals(3, cache.getNumber(cache.find(length, values, 4)));
+        Assertions.assertEquals(-1, cache.find(length, values, 5));
+        cache.put(4, length);
+        Assertions.assertEquals(-1, cache.find(length, "7"));
+        Assertions.assertEquals(-1, cache.find(length, "1.50"));
+        Assertions.assertEquals(4, cache.size());
+    }
+
+    @Test
+    public final void testCap() {
+        AttributeTable.Range length = range("IfcLengthMeasure", "double");
+        ValueNodeCache cache = new ValueNodeCache(4 * 1024);
+        cache.find(length, "hot");
+        cache.put(1, length);
+        for (int i = 2; i <= 100000; i++) {
+            if (cache.find(length, Integer.toString(i)) < 0)
+                cache.put(i, length);
+            // a value that is used all the time is never replaced
+            Assertions.assertEquals(1, cache.getNumber(cache.find(length, "hot")));
+        }
+        Assertions.assertTrue(cache.size() <= 4 * 1024 / 24, cache.size() + " nodes");
+        Assertions.assertEquals(100000 - cache.size(), cache.getEvictions());
+    }
+
+    /**
+     * With a small cap the conversion has more value nodes, but every
+     * attribute and list element still has the same value.
+     */
+    @Test
+    public final void testConversionWithCap() throws IOException {
+        File file = dir.resolve("model.ifc").toFile();
+        SyntheticIfcModel model = new SyntheticIfcModel("IFC4_ADD2_TC1", 3);
+        model.setTargetSize(256 * 1024);
+        model.write(file);
+
+        IfcSpfReader reader = new IfcSpfReader();
+        reader.setup(file.getPath());
+        Graph expected = reader.convert(file.getPath(), BASE_URI);
+        reader.setValueCacheSize(4 * 1024);
+        Graph actual = reader.convert(file.getPath(), BASE_URI);
+
+        Assertions.assertTrue(values(actual).size() > values(expected).size());
+        Assertions.assertEquals(expected.size() - values(expected).size() * 2, actual.size() - values(actual).size() * 2);
+        Assertions.assertEquals(valuesUsed(expected), valuesUsed(actual));
+    }
+
+    /**
+     * @return the literal of every value node
+     */
+    private static Map<Node, Node> values(Graph graph) {
+        Map<Node, Node> values = new HashMap<>();
+        graph.find().forEachRemaining(t -> {
+            if (t.getPredicate().getURI().startsWith(EXPRESS_NS + "has"))
+                Assertions.assertNull(values.put(t.getSubject(), t.getObject()), "Two values for " + t.getSubject());
+        });
+        return values;
+    }
+
+    /**
+     * @return the predicate and literal of every reference to a value node
+     */
+    private static List<String> valuesUsed(Graph graph) {
+        Map<Node, Node> values = values(graph);
+        List<String> used = new ArrayList<>();
+        for (Triple t : graph.find().toList()) {
+            Node value = values.get(t.getObject());
+            if (value != null)
+                used.add(t.getPredicate() + " " + value);
+        }
+        Collections.sort(used);
+        return used;
+    }
+
+    private static AttributeTable.Range range(String name, String xsdType) {
+        return new AttributeTable.Range(ResourceFactory.createResource("http://example.org/ifc#" + name), true, false,
+                false, false, xsdType, ResourceFactory.createProperty(EXPRESS_NS + "has"
+                + Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1)), null, Collections.emptyList());
+    }
+}
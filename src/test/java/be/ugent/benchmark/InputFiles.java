@@ -0,0 +1,74 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import be.ugent.SyntheticIfcModel;
+
+/**
+ * The models a benchmark runs on: the 3 MB office model, or all files of the
+ * conversion test corpus in one operation, or a synthetic IFC4 model of a
+ * number of megabytes, e.g. <code>synthetic-256</code>, which is generated in
+ * the target directory the first time. Any other value of the parameter is
+ * the path of a file. Paths are relative to the project directory, which
+ * is the working directory of the forked JVMs.
+ */
+@State(Scope.Benchmark)
+public class InputFiles {
+
+    static final String OFFICE = "src/test/resources/showfiles/nested/20160414office_model_CV2_fordesign.ifc";
+    static final String CORPUS = "src/test/resources/convertIFCFileToOutputTTL";
+
+    @Param({"office", "corpus"})
+    public String input;
+
+    List<String> files;
+
+    @Setup
+    public void setup() throws IOException {
+        files = new ArrayList<>();
+        if (input.equals("office")) {
+            files.add(OFFICE);
+        } else if (input.equals("corpus")) {
+            File[] corpus = new File(CORPUS).listFiles((dir, name) -> name.endsWith(".ifc"));
+            if (corpus == null)
+                throw new IllegalStateException("Run the benchmarks from the project directory, " + CORPUS + " was not found");
+            Arrays.sort(corpus);
+            for (File file : corpus)
+                files.add(file.getPath());
+        } else if (input.startsWith("synthetic-")) {
+            int megabytes = Integer.parseInt(input.substring("synthetic-".length()));
+            File file = new File("target", "synthetic-" + megabytes + "MB.ifc");
+            if (!file.exists()) {
+                SyntheticIfcModel model = new SyntheticIfcModel("IFC4_ADD2_TC1", 0);
+                model.setTargetSize((long) megabytes << 20);
+                model.write(file);
+            }
+            files.add(file.getPath());
+        } else {
+            files.add(input);
+        }
+    }
+}
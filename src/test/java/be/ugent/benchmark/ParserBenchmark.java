@@ -0,0 +1,117 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.ugent.IfcSpfParser;
+
+/**
+ * The parser stages of a conversion: reading the DATA section into the
+ * linemap, removing duplicates and checking the references.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ParserBenchmark {
+
+    /**
+     * Files that are parsed again before every invocation, for the stages
+     * that change the linemap.
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        List<IfcSpfParser> parsers;
+
+        @Setup(Level.Invocation)
+        public void parse(InputFiles input) throws IOException {
+            parsers = readModels(input);
+        }
+    }
+
+    /**
+     * Files that are parsed once, for the stages that only read the linemap.
+     */
+    @State(Scope.Thread)
+    public static class ParsedOnce {
+        List<IfcSpfParser> parsers;
+
+        @Setup(Level.Trial)
+        public void parse(InputFiles input) throws IOException {
+            parsers = readModels(input);
+        }
+    }
+
+    static List<IfcSpfParser> readModels(InputFiles input) throws IOException {
+        List<IfcSpfParser> parsers = new ArrayList<>();
+        for (String file : input.files) {
+            IfcSpfParser parser = new IfcSpfParser(new FileInputStream(file));
+            parser.readModel();
+            parsers.add(parser);
+        }
+        return parsers;
+    }
+
+    @Benchmark
+    public int readModel(InputFiles input, Counters counters) throws IOException {
+        int size = 0;
+        for (String file : input.files) {
+            IfcSpfParser parser = new IfcSpfParser(new FileInputStream(file));
+            parser.readModel();
+            size += parser.getLinemap().size();
+        }
+        counters.entities += size;
+        return size;
+    }
+
+    @Benchmark
+    public int resolveDuplicates(Parsed parsed, Counters counters) throws IOException {
+        int redirects = 0;
+        for (IfcSpfParser parser : parsed.parsers) {
+            counters.entities += parser.getLinemap().size();
+            parser.resolveDuplicates();
+            redirects += parser.getLinemap().getRedirectCount();
+        }
+        return redirects;
+    }
+
+    @Benchmark
+    public boolean mapEntries(ParsedOnce parsed, Counters counters) throws IOException {
+        boolean mapped = true;
+        for (IfcSpfParser parser : parsed.parsers) {
+            mapped &= parser.mapEntries();
+            counters.entities += parser.getLinemap().size();
+        }
+        return mapped;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.ugent.benchmark;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.thrift.StreamRDF2Thrift;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import be.ugent.IfcSpfReader;
+import be.ugent.NTriplesChannelWriter;
+import be.ugent.RDFWriter;
+
+/**
+ * Complete conversions into each kind of output of the RDFWriter. The
+ * schemas are loaded before the measurement, so the time spent on emitting
+ * the triples is the difference with {@link ParserBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class RDFWriterBenchmark {
+
+    private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/";
+
+    @Param({"true", "false"})
+    public boolean removeDuplicates;
+
+    private List<IfcSpfReader> readers;
+    private List<String> files;
+
+    @Setup
+    public void setup(InputFiles input) throws IOException {
+        files = input.files;
+        readers = new ArrayList<>();
+        for (String file : files) {
+            IfcSpfReader reader = new IfcSpfReader();
+            reader.setRemoveDuplicates(removeDuplicates);
+            reader.setup(file);
+            readers.add(reader);
+        }
+    }
+
+    /**
+     * Runs a conversion of every file and counts the triples it writes.
+     */
+    private void convert(Counters counters, Sink sink) {
+        for (int i = 0; i < files.size(); i++) {
+            readers.get(i).convert(files.get(i), BASE_URI, writer -> {
+                try {
+                    sink.write(writer);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                counters.triples += writer.getTripleCount();
+            });
+        }
+    }
+
+    @Benchmark
+    public void parseModelToOutputStream(Counters counters) {
+        convert(counters, writer -> writer.parseModelToOutputStream(countBytes(counters)));
+    }
+
+    /**
+     * Writes N-Triples with the {@link NTriplesChannelWriter}, to compare its
+     * bytes/s with the Turtle output.
+     */
+    @Benchmark
+    public void parseModelToNTriples(Counters counters) {
+        convert(counters, writer -> {
+            NTriplesChannelWriter out = new NTriplesChannelWriter(Channels.newChannel(OutputStream.nullOutputStream()),
+                    null);
+            writer.parseModelToStreamRdf(out);
+            counters.bytes += out.getBytesWritten();
+        });
+    }
+
+    /**
+     * Writes RDF Thrift, to compare its size and bytes/s with the Turtle
+     * output.
+     */
+    @Benchmark
+    public void parseModelToThrift(Counters counters) {
+        convert(counters, writer -> {
+            StreamRDF2Thrift out = new StreamRDF2Thrift(countBytes(counters), true);
+            writer.parseModelToStreamRdf(out);
+        });
+    }
+
+    @Benchmark
+    public void parseModelToGraph(Counters counters, Blackhole blackhole) {
+        convert(counters, writer -> {
+            Graph graph = GraphFactory.createGraphMem();
+            writer.parseModelToGraph(graph);
+            blackhole.consume(graph);
+        });
+    }
+
+    @Benchmark
+    public void parseModelToStreamRdf(Counters counters, Blackhole blackhole) {
+        convert(counters, writer -> writer.parseModelToStreamRdf(new StreamRDFBase() {
+            @Override
+            public void triple(org.apache.jena.graph.Triple triple) {
+                blackhole.consume(triple);
+            }
+        }));
+    }
+
+    private interface Sink {
+        void write(RDFWriter writer) throws IOException;
+    }
+
+    private static OutputStream countBytes(Counters counters) {
+        return new FilterOutputStream(OutputStream.nullOutputStream()) {
+            @Override
+            public void write(int b) {
+                counters.bytes++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                counters.bytes += len;
+            }
+        };
+    }
+}